@@ -1,4 +1,5 @@
 import org.gradle.plugin.compatibility.compatibility
+import java.util.jar.JarFile
 
 plugins {
     id("java-gradle-plugin")
@@ -38,11 +39,26 @@ tasks.compileJava {
     options.release = 8
 }
 
+// classes with faster implementations on Java 9+, packaged as a multi-release JAR on top of the Java 8 classes
+val java9: SourceSet by sourceSets.creating {
+    java.setSrcDirs(listOf("src/main/java9"))
+}
+
+tasks.named<JavaCompile>(java9.compileJavaTaskName) {
+    options.release = 9
+}
+
 tasks.jar { enabled = false }
 
 tasks.shadowJar {
     // required by the plugin-publish-plugin
     archiveClassifier = ""
+    into("META-INF/versions/9") {
+        from(java9.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
 }
 
 tasks.withType<Jar>().configureEach {
@@ -84,6 +100,153 @@ tasks.withType<Test>().configureEach {
     dependsOn(tasks.named("shadowJar"))
 }
 
+// runs the tests of the multi-release classes against their Java 9 implementations
+val testJava9 by tasks.registering(Test::class) {
+    description = "Runs the tests of the multi-release classes against their Java 9 implementations."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = java9.output + sourceSets.test.get().runtimeClasspath
+    systemProperty("javaPlatform.java9", "true")
+    filter {
+        includeTestsMatching("com.gradle.JavaPlatformTest")
+    }
+}
+
+// verifies that the plugin JAR replaces the Java 8 classes with their Java 9 implementations when running on Java 9+
+val verifyMultiReleaseJar by tasks.registering {
+    description = "Verifies that the plugin JAR is a multi-release JAR containing the Java 9 implementations."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    val pluginJar = tasks.shadowJar.flatMap { it.archiveFile }
+    inputs.file(pluginJar)
+    doLast {
+        JarFile(pluginJar.get().asFile).use { jar ->
+            check(jar.manifest.mainAttributes.getValue("Multi-Release") == "true") {
+                "${jar.name} does not have the Multi-Release manifest attribute"
+            }
+            check(jar.getEntry("META-INF/versions/9/com/gradle/JavaPlatform.class") != null) {
+                "${jar.name} does not contain the Java 9 implementation of JavaPlatform"
+            }
+        }
+    }
+}
+
+tasks.check {
+    dependsOn(testJava9, verifyMultiReleaseJar)
+}
+
+// JMH benchmarks of the helpers that run in every build, with the main classes and the Gradle API on the classpath
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath + sourceSets.main.get().compileClasspath
+}
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+val jmhResults = layout.buildDirectory.file("reports/jmh/results.csv")
+val jmhBaseline = layout.projectDirectory.file("src/jmh/baseline.csv")
+
+// runs the benchmarks matching the regular expression given by -Pjmh.include, or all benchmarks
+val runJmh by tasks.registering(JavaExec::class) {
+    description = "Runs the JMH benchmarks."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    outputs.file(jmhResults)
+    outputs.upToDateWhen { false }
+    val results = jmhResults
+    val include = providers.gradleProperty("jmh.include")
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf("-rf", "csv", "-rff", results.get().asFile.absolutePath) + include.map { listOf(it) }.getOrElse(emptyList())
+    })
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+}
+
+// fails if a benchmark is slower than in the baseline by more than -Pjmh.threshold percent, 10 by default
+val compareJmhBaseline by tasks.registering(JavaExec::class) {
+    description = "Compares the results of the JMH benchmarks with the stored baseline."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.gradle.BenchmarkBaseline"
+    mustRunAfter(runJmh)
+    val baseline = jmhBaseline
+    val results = jmhResults
+    val threshold = providers.gradleProperty("jmh.threshold").orElse("10")
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(baseline.asFile.absolutePath, results.get().asFile.absolutePath, threshold.get())
+    })
+}
+
+// stores the results of the last benchmark run as the new baseline
+val updateJmhBaseline by tasks.registering(Copy::class) {
+    description = "Stores the results of the last run of the JMH benchmarks as the baseline."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    mustRunAfter(runJmh)
+    from(jmhResults)
+    into(jmhBaseline.asFile.parentFile)
+    rename(".*", jmhBaseline.asFile.name)
+}
+
+// a stub of the Develocity Gradle plugin, running on every Java version supported by the plugin
+val develocityStub: SourceSet by sourceSets.creating
+
+tasks.named<JavaCompile>(develocityStub.compileJavaTaskName) {
+    options.release = 8
+}
+
+// an end-to-end benchmark of the configuration overhead of the plugin, running builds with TestKit against the stub
+val overheadBenchmark: SourceSet by sourceSets.creating
+
+dependencies {
+    "develocityStubCompileOnly"(gradleApi())
+    "overheadBenchmarkImplementation"(gradleTestKit())
+}
+
+val develocityStubJar by tasks.registering(Jar::class) {
+    archiveClassifier = "develocity-stub"
+    from(develocityStub.output)
+}
+
+// measures the Gradle versions given by -Pbenchmark.gradleVersions, each with the newest long-term support Java version it supports
+val runOverheadBenchmark by tasks.registering(JavaExec::class) {
+    description = "Measures the configuration overhead of the plugin across Gradle versions."
+    group = LifecycleBasePlugin.VERIFICATION_GROUP
+    classpath = overheadBenchmark.runtimeClasspath
+    mainClass = "com.gradle.ConfigurationOverheadBenchmark"
+    dependsOn(tasks.shadowJar, develocityStubJar)
+    val report = layout.buildDirectory.file("reports/overhead-benchmark/results.json")
+    outputs.file(report)
+    outputs.upToDateWhen { false }
+    val pluginJar = tasks.shadowJar.flatMap { it.archiveFile }
+    val stubJar = develocityStubJar.flatMap { it.archiveFile }
+    val gradleVersions = providers.gradleProperty("benchmark.gradleVersions").orElse("4.10.3,5.6.4,6.9.4,7.6.4,8.14.3,9.1.0")
+    val settings = listOf("samples", "warmups", "subprojects", "gradleDistributions").associateWith { providers.gradleProperty("benchmark.$it") }
+    val javaHomes = listOf(8, 11, 17, 21).associateWith { version ->
+        javaToolchains.launcherFor { languageVersion = JavaLanguageVersion.of(version) }.map { it.metadata.installationPath.asFile.absolutePath }
+    }
+    // only the toolchains of the requested Gradle versions are resolved, as in TargetVersion.requiredJavaVersion()
+    val javaVersions = gradleVersions.map { versions ->
+        versions.split(",").map { version ->
+            val parts = version.trim().split(".", "-")
+            val major = parts[0].toInt()
+            val minor = parts.getOrNull(1)?.toInt() ?: 0
+            val isAtLeast = { requiredMajor: Int, requiredMinor: Int -> major > requiredMajor || major == requiredMajor && minor >= requiredMinor }
+            if (isAtLeast(8, 5)) 21 else if (isAtLeast(7, 3)) 17 else if (isAtLeast(6, 0)) 11 else 8
+        }.toSet()
+    }
+    jvmArgumentProviders.add(CommandLineArgumentProvider {
+        listOf(
+            "-Dbenchmark.pluginJar=${pluginJar.get().asFile.absolutePath}",
+            "-Dbenchmark.stubJar=${stubJar.get().asFile.absolutePath}",
+            "-Dbenchmark.gradleVersions=${gradleVersions.get()}",
+            "-Dbenchmark.report=${report.get().asFile.absolutePath}"
+        ) + settings.filterValues { it.isPresent }.map { (name, value) -> "-Dbenchmark.$name=${value.get()}" } +
+            javaHomes.filterKeys { it in javaVersions.get() }.map { (version, home) -> "-Dbenchmark.javaHome.$version=${home.get()}" }
+    })
+}
+
 /*
 The rest of the build logic in this file is only required for publishing to the Gradle Plugin Portal.
 When using this project as a template for your own plugin to publish internally, you should delete all code following this comment.
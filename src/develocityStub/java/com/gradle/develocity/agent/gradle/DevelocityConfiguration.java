@@ -0,0 +1,25 @@
+package com.gradle.develocity.agent.gradle;
+
+import com.gradle.develocity.agent.gradle.scan.BuildScanConfiguration;
+import org.gradle.api.Action;
+import org.gradle.api.provider.Property;
+
+/**
+ * The part of the configuration API of the Develocity Gradle plugin that is used by the Common Custom User Data Gradle
+ * plugin.
+ */
+public interface DevelocityConfiguration {
+
+    Property<String> getServer();
+
+    Property<String> getProjectId();
+
+    Property<Boolean> getAllowUntrustedServer();
+
+    Property<String> getAccessKey();
+
+    BuildScanConfiguration getBuildScan();
+
+    void buildScan(Action<? super BuildScanConfiguration> action);
+
+}
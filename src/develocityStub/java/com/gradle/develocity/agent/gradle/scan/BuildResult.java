@@ -0,0 +1,9 @@
+package com.gradle.develocity.agent.gradle.scan;
+
+import java.util.List;
+
+public interface BuildResult {
+
+    List<Throwable> getFailures();
+
+}
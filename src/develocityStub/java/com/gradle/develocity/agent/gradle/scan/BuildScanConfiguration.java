@@ -0,0 +1,28 @@
+package com.gradle.develocity.agent.gradle.scan;
+
+import org.gradle.api.Action;
+import org.gradle.api.provider.Property;
+
+/**
+ * The part of the build scan API of the Develocity Gradle plugin that is used by the Common Custom User Data Gradle
+ * plugin.
+ */
+public interface BuildScanConfiguration {
+
+    void background(Action<? super BuildScanConfiguration> action);
+
+    void tag(String tag);
+
+    void value(String name, String value);
+
+    void link(String name, String url);
+
+    void buildFinished(Action<? super BuildResult> action);
+
+    Property<Boolean> getUploadInBackground();
+
+    Property<String> getTermsOfUseUrl();
+
+    Property<String> getTermsOfUseAgree();
+
+}
@@ -0,0 +1,7 @@
+package com.gradle.scan.plugin;
+
+public interface BuildResult {
+
+    Throwable getFailure();
+
+}
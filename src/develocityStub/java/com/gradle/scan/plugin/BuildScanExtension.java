@@ -0,0 +1,28 @@
+package com.gradle.scan.plugin;
+
+import org.gradle.api.Action;
+
+/**
+ * The part of the API of the build scan plugin 1.x that is used by the Common Custom User Data Gradle plugin.
+ */
+public interface BuildScanExtension {
+
+    void background(Action<? super BuildScanExtension> action);
+
+    void tag(String tag);
+
+    void value(String name, String value);
+
+    void link(String name, String url);
+
+    void buildFinished(Action<? super BuildResult> action);
+
+    String getServer();
+
+    void setServer(String server);
+
+    boolean isAllowUntrustedServer();
+
+    void setAllowUntrustedServer(boolean allowUntrustedServer);
+
+}
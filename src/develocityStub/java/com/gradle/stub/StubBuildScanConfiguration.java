@@ -0,0 +1,70 @@
+package com.gradle.stub;
+
+import com.gradle.develocity.agent.gradle.scan.BuildResult;
+import com.gradle.develocity.agent.gradle.scan.BuildScanConfiguration;
+import org.gradle.api.Action;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the build scan entries in memory. Background actions run immediately on the calling thread, build finished
+ * actions are kept but never run, as they are not part of the configuration of the build.
+ */
+class StubBuildScanConfiguration implements BuildScanConfiguration {
+
+    private final List<String> entries = new ArrayList<>();
+    private final List<Action<? super BuildResult>> buildFinishedActions = new ArrayList<>();
+    private final Property<Boolean> uploadInBackground;
+    private final Property<String> termsOfUseUrl;
+    private final Property<String> termsOfUseAgree;
+
+    StubBuildScanConfiguration(ObjectFactory objects) {
+        this.uploadInBackground = objects.property(Boolean.class);
+        this.termsOfUseUrl = objects.property(String.class);
+        this.termsOfUseAgree = objects.property(String.class);
+    }
+
+    @Override
+    public void background(Action<? super BuildScanConfiguration> action) {
+        action.execute(this);
+    }
+
+    @Override
+    public synchronized void tag(String tag) {
+        entries.add(tag);
+    }
+
+    @Override
+    public synchronized void value(String name, String value) {
+        entries.add(name + '=' + value);
+    }
+
+    @Override
+    public synchronized void link(String name, String url) {
+        entries.add(name + '=' + url);
+    }
+
+    @Override
+    public synchronized void buildFinished(Action<? super BuildResult> action) {
+        buildFinishedActions.add(action);
+    }
+
+    @Override
+    public Property<Boolean> getUploadInBackground() {
+        return uploadInBackground;
+    }
+
+    @Override
+    public Property<String> getTermsOfUseUrl() {
+        return termsOfUseUrl;
+    }
+
+    @Override
+    public Property<String> getTermsOfUseAgree() {
+        return termsOfUseAgree;
+    }
+
+}
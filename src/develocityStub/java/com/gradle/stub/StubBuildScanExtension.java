@@ -0,0 +1,62 @@
+package com.gradle.stub;
+
+import com.gradle.scan.plugin.BuildResult;
+import com.gradle.scan.plugin.BuildScanExtension;
+import org.gradle.api.Action;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class StubBuildScanExtension implements BuildScanExtension {
+
+    private final List<String> entries = new ArrayList<>();
+    private final List<Action<? super BuildResult>> buildFinishedActions = new ArrayList<>();
+    private String server;
+    private boolean allowUntrustedServer;
+
+    @Override
+    public void background(Action<? super BuildScanExtension> action) {
+        action.execute(this);
+    }
+
+    @Override
+    public synchronized void tag(String tag) {
+        entries.add(tag);
+    }
+
+    @Override
+    public synchronized void value(String name, String value) {
+        entries.add(name + '=' + value);
+    }
+
+    @Override
+    public synchronized void link(String name, String url) {
+        entries.add(name + '=' + url);
+    }
+
+    @Override
+    public synchronized void buildFinished(Action<? super BuildResult> action) {
+        buildFinishedActions.add(action);
+    }
+
+    @Override
+    public String getServer() {
+        return server;
+    }
+
+    @Override
+    public void setServer(String server) {
+        this.server = server;
+    }
+
+    @Override
+    public boolean isAllowUntrustedServer() {
+        return allowUntrustedServer;
+    }
+
+    @Override
+    public void setAllowUntrustedServer(boolean allowUntrustedServer) {
+        this.allowUntrustedServer = allowUntrustedServer;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.gradle.stub;
+
+import com.gradle.scan.plugin.BuildScanExtension;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+/**
+ * Stands in for the build scan plugin 1.x in benchmarks with Gradle 4, the same way as {@link StubDevelocityPlugin}.
+ */
+public class StubBuildScanPlugin implements Plugin<Project> {
+
+    @Override
+    public void apply(Project project) {
+        project.getExtensions().create(BuildScanExtension.class, "buildScan", StubBuildScanExtension.class);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.gradle.stub;
+
+import com.gradle.develocity.agent.gradle.DevelocityConfiguration;
+import com.gradle.develocity.agent.gradle.scan.BuildScanConfiguration;
+import org.gradle.api.Action;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
+
+import javax.inject.Inject;
+
+public class StubDevelocityConfiguration implements DevelocityConfiguration {
+
+    private final Property<String> server;
+    private final Property<String> projectId;
+    private final Property<Boolean> allowUntrustedServer;
+    private final Property<String> accessKey;
+    private final StubBuildScanConfiguration buildScan;
+
+    @Inject
+    public StubDevelocityConfiguration(ObjectFactory objects) {
+        this.server = objects.property(String.class);
+        this.projectId = objects.property(String.class);
+        this.allowUntrustedServer = objects.property(Boolean.class);
+        this.accessKey = objects.property(String.class);
+        this.buildScan = new StubBuildScanConfiguration(objects);
+    }
+
+    @Override
+    public Property<String> getServer() {
+        return server;
+    }
+
+    @Override
+    public Property<String> getProjectId() {
+        return projectId;
+    }
+
+    @Override
+    public Property<Boolean> getAllowUntrustedServer() {
+        return allowUntrustedServer;
+    }
+
+    @Override
+    public Property<String> getAccessKey() {
+        return accessKey;
+    }
+
+    @Override
+    public BuildScanConfiguration getBuildScan() {
+        return buildScan;
+    }
+
+    @Override
+    public void buildScan(Action<? super BuildScanConfiguration> action) {
+        action.execute(buildScan);
+    }
+
+}
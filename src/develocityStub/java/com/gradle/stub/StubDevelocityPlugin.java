@@ -0,0 +1,18 @@
+package com.gradle.stub;
+
+import com.gradle.develocity.agent.gradle.DevelocityConfiguration;
+import org.gradle.api.Plugin;
+import org.gradle.api.plugins.ExtensionAware;
+
+/**
+ * Stands in for the Develocity Gradle plugin in benchmarks, providing its configuration without doing any work and
+ * without network access. Applies to settings, or to the root project before Gradle 6.
+ */
+public class StubDevelocityPlugin implements Plugin<Object> {
+
+    @Override
+    public void apply(Object target) {
+        ((ExtensionAware) target).getExtensions().create(DevelocityConfiguration.class, "develocity", StubDevelocityConfiguration.class);
+    }
+
+}
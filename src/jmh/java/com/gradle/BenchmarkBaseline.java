@@ -0,0 +1,159 @@
+package com.gradle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the results of a benchmark run with a stored baseline, both in the CSV format written by JMH, and fails if a
+ * benchmark has become slower by more than a threshold.
+ * <p>
+ * A change only counts as a regression if it also exceeds the combined error of both measurements, so that noise on a
+ * busy machine is not reported. Benchmarks that are missing from the baseline are listed, but never fail.
+ * <p>
+ * Usage: <code>BenchmarkBaseline &lt;baseline.csv&gt; &lt;results.csv&gt; &lt;threshold percent&gt;</code>
+ */
+public final class BenchmarkBaseline {
+
+    private BenchmarkBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path baselineFile = Paths.get(args[0]);
+        Path resultsFile = Paths.get(args[1]);
+        double threshold = Double.parseDouble(args[2]) / 100;
+        if (!Files.isRegularFile(baselineFile)) {
+            System.err.println("No baseline at " + baselineFile + ", store one with the updateJmhBaseline task");
+            System.exit(2);
+        }
+        if (!Files.isRegularFile(resultsFile)) {
+            System.err.println("No benchmark results at " + resultsFile + ", run the benchmarks with the runJmh task");
+            System.exit(2);
+        }
+
+        Map<String, Score> baseline = read(baselineFile);
+        Map<String, Score> results = read(resultsFile);
+        int regressions = 0;
+        for (Map.Entry<String, Score> result : results.entrySet()) {
+            Score current = result.getValue();
+            Score previous = baseline.get(result.getKey());
+            if (previous == null) {
+                System.out.printf(Locale.ROOT, "%-100s %14s %14.3f %-8s new%n", result.getKey(), "", current.score, current.unit);
+                continue;
+            }
+            double change = (current.score - previous.score) / previous.score;
+            // a higher throughput is better, all other modes measure time
+            double slowdown = current.higherIsBetter ? -change : change;
+            boolean significant = Math.abs(current.score - previous.score) > current.error + previous.error;
+            boolean regression = slowdown > threshold && significant;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-100s %14.3f %14.3f %-8s %+7.1f%%%s%n", result.getKey(), previous.score, current.score, current.unit, change * 100, regression ? "  REGRESSION" : "");
+        }
+
+        if (regressions > 0) {
+            System.err.printf(Locale.ROOT, "%d benchmarks are slower than the baseline by more than %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the scores of a JMH CSV result file, by benchmark name, mode and parameters.
+     */
+    static Map<String, Score> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        List<String> header = parseLine(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        // the error column is named after the confidence level
+        int error = -1;
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).startsWith("Score Error")) {
+                error = i;
+            }
+        }
+
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> fields = parseLine(line);
+            StringBuilder key = new StringBuilder(fields.get(benchmark)).append(" (").append(fields.get(mode));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty()) {
+                    key.append(", ").append(header.get(i).substring("Param: ".length())).append('=').append(fields.get(i));
+                }
+            }
+            key.append(')');
+            scores.put(key.toString(), new Score(
+                parseNumber(fields.get(score)),
+                error >= 0 ? parseNumber(fields.get(error)) : 0,
+                fields.get(unit),
+                fields.get(mode).equals("thrpt")
+            ));
+        }
+        return scores;
+    }
+
+    private static double parseNumber(String value) {
+        // the error of a single measurement is not a number, JMH writes numbers in the default locale of the JVM
+        double number = Double.parseDouble(value.replace(',', '.'));
+        return Double.isNaN(number) ? 0 : number;
+    }
+
+    private static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static final class Score {
+
+        final double score;
+        final double error;
+        final String unit;
+        final boolean higherIsBetter;
+
+        Score(double score, double error, String unit, boolean higherIsBetter) {
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+    }
+
+}
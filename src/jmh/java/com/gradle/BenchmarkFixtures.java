@@ -0,0 +1,67 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.gradle.api.provider.Provider;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Stand-ins for the Develocity and Gradle types the benchmarked code depends on, doing as little work as possible so
+ * that they do not dominate the measurements.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * A Develocity configuration with the given server, whose build scan discards all entries.
+     */
+    static DevelocityAdapter develocity(String server) {
+        BuildScanAdapter buildScan = proxy(BuildScanAdapter.class, (method, args) -> null);
+        return proxy(DevelocityAdapter.class, (method, args) -> {
+            switch (method) {
+                case "getBuildScan":
+                    return buildScan;
+                case "getServer":
+                    return server;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    /**
+     * A provider of the given value, or a provider without a value if it is null.
+     */
+    @SuppressWarnings("unchecked")
+    static Provider<String> provider(String value) {
+        return proxy(Provider.class, (method, args) -> {
+            switch (method) {
+                case "isPresent":
+                    return value != null;
+                case "get":
+                    if (value == null) {
+                        throw new IllegalStateException("Provider has no value");
+                    }
+                    return value;
+                case "getOrNull":
+                    return value;
+                case "getOrElse":
+                    return value != null ? value : args[0];
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> handler.handle(method.getName(), args)));
+    }
+
+}
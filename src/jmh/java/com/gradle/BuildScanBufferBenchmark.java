@@ -0,0 +1,61 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the construction of search links, from collecting the values to rendering the links when the buffer is
+ * flushed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildScanBufferBenchmark {
+
+    @Param({"1", "4", "64"})
+    public int valueCount;
+
+    @Param({"plain", "reserved-characters"})
+    public String values;
+
+    private DevelocityAdapter develocity;
+    private BuildScanBuffer.Limits limits;
+    private Map<String, String> searchValues;
+
+    @Setup
+    public void setUp() {
+        develocity = BenchmarkFixtures.develocity("https://ge.example.com");
+        limits = new BuildScanBuffer.Limits(BuildScanBuffer.Limits.DEFAULT_MAX_VALUES, BuildScanBuffer.Limits.DEFAULT_MAX_VALUE_LENGTH);
+        searchValues = new LinkedHashMap<>();
+        for (int i = 0; i < valueCount; i++) {
+            String value = values.equals("plain") ? "value" + i : "feature/\u00fcber&more=" + i + "#?, ";
+            searchValues.put("CI value " + i, value);
+        }
+    }
+
+    @Benchmark
+    public BuildScanBuffer addSearchLinkAndFlush() {
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity, limits);
+        buffer.addSearchLink("CI pipeline", searchValues);
+        buffer.flush();
+        return buffer;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.gradle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the detection of the CI environment, with the bundled providers and with a large registry of additional
+ * providers that share their detection variables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CiEnvironmentBenchmark {
+
+    private static final int ADDITIONAL_PROVIDERS = 1_000;
+    private static final int ADDITIONAL_DETECTION_VARIABLES = 50;
+
+    @Param({"bundled", "large-registry"})
+    public String registry;
+
+    private List<CiProvider> knownProviders;
+    private CiEnvironment ciEnvironment;
+
+    @Setup
+    public void setUp() {
+        knownProviders = new ArrayList<>(CiProviders.loadBundled());
+        if (registry.equals("large-registry")) {
+            Properties properties = new Properties();
+            for (int i = 0; i < ADDITIONAL_PROVIDERS; i++) {
+                properties.setProperty("custom" + i + ".name", "Custom CI " + i);
+                properties.setProperty("custom" + i + ".detect", "CUSTOM_CI_" + i % ADDITIONAL_DETECTION_VARIABLES);
+                properties.setProperty("custom" + i + ".value.CI build", "${CUSTOM_CI_BUILD_" + i + "}");
+            }
+            knownProviders.addAll(CiProvider.parse(properties));
+        }
+        ciEnvironment = read();
+    }
+
+    @Benchmark
+    public CiEnvironment read() {
+        // the provider factory is only used by Gradle versions that require configuration time providers
+        return CiEnvironment.read(null, knownProviders);
+    }
+
+    @Benchmark
+    public boolean isCi() {
+        return ciEnvironment.isCi();
+    }
+
+}
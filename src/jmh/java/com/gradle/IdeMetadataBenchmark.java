@@ -0,0 +1,82 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildResultAdapter;
+import org.gradle.api.Action;
+import org.gradle.api.provider.Provider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the decision tree that identifies the IDE a build runs in, for each branch of the tree. The command line
+ * branch checks every property before deciding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdeMetadataBenchmark {
+
+    @Param({"intellij-idea", "android-studio", "android-studio-legacy", "eclipse", "vs-code", "command-line"})
+    public String ide;
+
+    private Action<BuildResultAdapter> action;
+
+    @Setup
+    public void setUp() {
+        // all properties read by the action, with values set for the given IDE
+        Map<String, String> values = new HashMap<>();
+        switch (ide) {
+            case "intellij-idea":
+                values.put("idea.vendor.name", "JetBrains");
+                values.put("idea.version", "2025.2");
+                values.put("idea.sync.active", "true");
+                break;
+            case "android-studio":
+                values.put("idea.vendor.name", "Google");
+                values.put("android.studio.version", "2025.1.2 Patch 1");
+                break;
+            case "android-studio-legacy":
+                values.put("android.injected.invoked.from.ide", "true");
+                values.put("android.studio.version", "4.0");
+                break;
+            case "eclipse":
+                values.put("eclipse.buildId", "4.36.0.I20250528-1830");
+                break;
+            case "vs-code":
+                values.put("VSCODE_PID", "4242");
+                break;
+            case "command-line":
+                break;
+            default:
+                throw new IllegalArgumentException(ide);
+        }
+
+        Map<String, Provider<String>> props = new HashMap<>();
+        for (String name : new String[]{"idea.vendor.name", "idea.version", "android.injected.invoked.from.ide", "android.studio.version", "eclipse.buildId", "idea.sync.active", "VSCODE_PID", "VSCODE_INJECTION"}) {
+            props.put(name, BenchmarkFixtures.provider(values.get(name)));
+        }
+        action = CustomBuildScanEnhancements.captureIdeMetadataAction(BenchmarkFixtures.develocity("https://ge.example.com"),
+            new BuildScanBuffer.Limits(BuildScanBuffer.Limits.DEFAULT_MAX_VALUES, BuildScanBuffer.Limits.DEFAULT_MAX_VALUE_LENGTH), props);
+    }
+
+    @Benchmark
+    public void captureIde() {
+        action.execute(null);
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.gradle;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the outcomes of the tasks of a build, to summarize how effective the build cache was.
+ * <p>
+ * Tasks complete concurrently on the worker threads, so all counters are lock-free. The time saved by loading a task
+ * from the cache is estimated from the last time the same task was executed in this daemon.
+ */
+final class BuildCacheStats {
+
+    static final int MAX_KNOWN_DURATIONS = 10_000;
+
+    // the duration of the last execution of each task, by build root directory and task path
+    private static final Map<String, Long> lastExecutionMillis = new ConcurrentHashMap<>();
+
+    enum Outcome {
+        FROM_CACHE, UP_TO_DATE, EXECUTED, SKIPPED, FAILED
+    }
+
+    private final String buildId;
+    private final LongAdder fromCache = new LongAdder();
+    private final LongAdder upToDate = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder executionMillis = new LongAdder();
+    private final LongAdder savedMillis = new LongAdder();
+    private final LongAdder estimatedTasks = new LongAdder();
+
+    /**
+     * @param buildId identifies the build across invocations, for example its root directory.
+     */
+    BuildCacheStats(String buildId) {
+        this.buildId = buildId;
+    }
+
+    void record(String taskPath, Outcome outcome, long durationMillis) {
+        switch (outcome) {
+            case FROM_CACHE:
+                fromCache.increment();
+                Long lastExecution = lastExecutionMillis.get(key(taskPath));
+                if (lastExecution != null) {
+                    savedMillis.add(Math.max(0, lastExecution - durationMillis));
+                    estimatedTasks.increment();
+                }
+                break;
+            case UP_TO_DATE:
+                upToDate.increment();
+                break;
+            case EXECUTED:
+                executed.increment();
+                executionMillis.add(durationMillis);
+                rememberExecution(taskPath, durationMillis);
+                break;
+            case SKIPPED:
+                skipped.increment();
+                break;
+            case FAILED:
+                failed.increment();
+                break;
+        }
+    }
+
+    private void rememberExecution(String taskPath, long durationMillis) {
+        // the daemon runs builds of arbitrarily many projects, start over rather than growing without bound
+        if (lastExecutionMillis.size() >= MAX_KNOWN_DURATIONS) {
+            lastExecutionMillis.clear();
+        }
+        lastExecutionMillis.put(key(taskPath), durationMillis);
+    }
+
+    private String key(String taskPath) {
+        return buildId + taskPath;
+    }
+
+    long getFromCache() {
+        return fromCache.sum();
+    }
+
+    long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * The share of the tasks that did work, or loaded it from the cache, that loaded it from the cache. Executed tasks
+     * include tasks that are not cacheable, so this is a lower bound of the actual hit rate.
+     */
+    double getHitRate() {
+        long loaded = fromCache.sum();
+        long total = loaded + executed.sum();
+        return total == 0 ? 0 : (double) loaded / total;
+    }
+
+    String getTaskSummary() {
+        return fromCache.sum() + " from cache, " + upToDate.sum() + " up-to-date, " + executed.sum() + " executed, "
+            + skipped.sum() + " skipped, " + failed.sum() + " failed";
+    }
+
+    String getHitRateSummary() {
+        return String.format(Locale.ROOT, "%.0f%% of %d executed or loaded tasks", getHitRate() * 100, fromCache.sum() + executed.sum());
+    }
+
+    String getTimeSavedSummary() {
+        return formatMillis(savedMillis.sum()) + " estimated for " + estimatedTasks.sum() + " of " + fromCache.sum() + " tasks from cache";
+    }
+
+    /**
+     * Adds the summary values.
+     */
+    void publish(BuildScanBuffer buildScan) {
+        if (fromCache.sum() + upToDate.sum() + executed.sum() + skipped.sum() + failed.sum() == 0) {
+            return;
+        }
+        buildScan.value("Build cache tasks", getTaskSummary());
+        buildScan.value("Build cache hit rate", getHitRateSummary());
+        if (fromCache.sum() > 0) {
+            buildScan.value("Build cache time saved", getTimeSavedSummary());
+        }
+    }
+
+    private static String formatMillis(long millis) {
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000.0);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.gradle;
+
+import org.gradle.api.Task;
+import org.gradle.api.tasks.TaskState;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the {@link BuildCacheStats} of a build with a task execution listener, for Gradle versions prior to 6.1.
+ * <p>
+ * Task execution listeners are deprecated, but the build service based replacement is only available from Gradle 6.1.
+ * The listener type is referenced by its qualified name, as deprecation warnings on imports cannot be suppressed.
+ */
+@SuppressWarnings("deprecation")
+final class BuildCacheStatsListener implements org.gradle.api.execution.TaskExecutionListener {
+
+    private static final String FROM_CACHE = "FROM-CACHE";
+
+    private final BuildCacheStats stats;
+    private final Map<Task, Long> startTimes = new ConcurrentHashMap<>();
+
+    BuildCacheStatsListener(BuildCacheStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+        startTimes.put(task, System.currentTimeMillis());
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        Long start = startTimes.remove(task);
+        long duration = start != null ? System.currentTimeMillis() - start : 0;
+        stats.record(task.getPath(), outcome(state), duration);
+    }
+
+    private static BuildCacheStats.Outcome outcome(TaskState state) {
+        if (state.getFailure() != null) {
+            return BuildCacheStats.Outcome.FAILED;
+        }
+        if (FROM_CACHE.equals(state.getSkipMessage())) {
+            return BuildCacheStats.Outcome.FROM_CACHE;
+        }
+        if (state.getUpToDate()) {
+            return BuildCacheStats.Outcome.UP_TO_DATE;
+        }
+        return state.getSkipped() ? BuildCacheStats.Outcome.SKIPPED : BuildCacheStats.Outcome.EXECUTED;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Provider;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+
+import javax.inject.Inject;
+
+/**
+ * Subscribes the {@link BuildCacheStatsService} to task completion events. The listener registry can only be injected,
+ * so registering it is left to this plugin, which is applied to the build once the service has been registered.
+ */
+public class BuildCacheStatsPlugin implements Plugin<Gradle> {
+
+    private final BuildEventsListenerRegistry listenerRegistry;
+
+    @Inject
+    public BuildCacheStatsPlugin(BuildEventsListenerRegistry listenerRegistry) {
+        this.listenerRegistry = listenerRegistry;
+    }
+
+    @Override
+    public void apply(Gradle gradle) {
+        // returns the service registered by CustomBuildScanEnhancements
+        Provider<BuildCacheStatsService> service = gradle.getSharedServices().registerIfAbsent(BuildCacheStatsService.NAME, BuildCacheStatsService.class, spec -> {
+        });
+        listenerRegistry.onTaskCompletion(service);
+    }
+
+}
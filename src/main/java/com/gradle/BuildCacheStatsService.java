@@ -0,0 +1,55 @@
+package com.gradle;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+import org.gradle.tooling.events.OperationResult;
+import org.gradle.tooling.events.task.TaskFailureResult;
+import org.gradle.tooling.events.task.TaskFinishEvent;
+import org.gradle.tooling.events.task.TaskSkippedResult;
+import org.gradle.tooling.events.task.TaskSuccessResult;
+
+/**
+ * Collects the {@link BuildCacheStats} of a build from task completion events, available as of Gradle 6.1.
+ */
+public abstract class BuildCacheStatsService implements BuildService<BuildCacheStatsService.Params>, OperationCompletionListener {
+
+    static final String NAME = "ccudBuildCacheStats";
+
+    private final BuildCacheStats stats = new BuildCacheStats(getParameters().getBuildId().get());
+
+    public interface Params extends BuildServiceParameters {
+
+        Property<String> getBuildId();
+
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        if (event instanceof TaskFinishEvent) {
+            TaskFinishEvent taskEvent = (TaskFinishEvent) event;
+            OperationResult result = taskEvent.getResult();
+            stats.record(taskEvent.getDescriptor().getTaskPath(), outcome(result), result.getEndTime() - result.getStartTime());
+        }
+    }
+
+    private static BuildCacheStats.Outcome outcome(OperationResult result) {
+        if (result instanceof TaskSuccessResult) {
+            TaskSuccessResult success = (TaskSuccessResult) result;
+            return success.isFromCache() ? BuildCacheStats.Outcome.FROM_CACHE
+                : success.isUpToDate() ? BuildCacheStats.Outcome.UP_TO_DATE
+                : BuildCacheStats.Outcome.EXECUTED;
+        }
+        if (result instanceof TaskSkippedResult) {
+            return BuildCacheStats.Outcome.SKIPPED;
+        }
+        return result instanceof TaskFailureResult ? BuildCacheStats.Outcome.FAILED : BuildCacheStats.Outcome.SKIPPED;
+    }
+
+    BuildCacheStats getStats() {
+        return stats;
+    }
+
+}
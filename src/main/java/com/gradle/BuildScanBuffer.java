@@ -0,0 +1,156 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+import static com.gradle.Utils.appendIfMissing;
+import static com.gradle.Utils.urlEncode;
+
+/**
+ * Collects the tags, custom values and links captured by an action, and adds them to the build scan in one pass.
+ * <p>
+ * Entries that have already been collected are ignored, and the number and length of the custom values are bounded by
+ * {@link Limits}. Search links are only rendered when the buffer is flushed, so that the server URL is looked up once,
+ * at a time when it has been configured.
+ */
+final class BuildScanBuffer {
+
+    private static final Logger logger = Logging.getLogger(BuildScanBuffer.class);
+
+    private static final String TRUNCATION_MARKER = "...";
+
+    private final DevelocityAdapter develocity;
+    private final Limits limits;
+    private final Set<String> tags = new LinkedHashSet<>();
+    private final Set<Map.Entry<String, String>> values = new LinkedHashSet<>();
+    private final Set<Map.Entry<String, String>> links = new LinkedHashSet<>();
+    // the search parameters of each search link, by link name
+    private final Set<Map.Entry<String, String>> searchLinks = new LinkedHashSet<>();
+    private int droppedValues;
+
+    BuildScanBuffer(DevelocityAdapter develocity, Limits limits) {
+        this.develocity = develocity;
+        this.limits = limits;
+    }
+
+    void tag(String tag) {
+        tags.add(tag);
+    }
+
+    void value(String name, String value) {
+        Map.Entry<String, String> entry = entry(name, truncate(value));
+        if (values.contains(entry)) {
+            return;
+        }
+        if (values.size() >= limits.maxValues) {
+            droppedValues++;
+            return;
+        }
+        values.add(entry);
+    }
+
+    void link(String name, String url) {
+        links.add(entry(name, url));
+    }
+
+    void addCustomValueAndSearchLink(String name, String value) {
+        addCustomValueAndSearchLink(name, name, value);
+    }
+
+    void addCustomValueAndSearchLink(String linkLabel, String name, String value) {
+        value(name, value);
+        addSearchLink(linkLabel, name, value);
+    }
+
+    /**
+     * Adds a link to all build scans with the given custom values, with the parameters in a deterministic order.
+     */
+    void addSearchLink(String linkLabel, Map<String, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        // the parameters for a link querying multiple custom values look like:
+        // search.names=name1,name2&search.values=value1,value2
+        StringJoiner names = new StringJoiner(",");
+        StringJoiner searchValues = new StringJoiner(",");
+        new TreeMap<>(values).forEach((name, value) -> {
+            names.add(name);
+            searchValues.add(value);
+        });
+        addSearchLink(linkLabel, names.toString(), searchValues.toString());
+    }
+
+    private void addSearchLink(String linkLabel, String name, String value) {
+        searchLinks.add(entry(linkLabel + " build scans", "search.names=" + urlEncode(name) + "&search.values=" + urlEncode(value)));
+    }
+
+    /**
+     * Adds all collected entries to the build scan, and empties the buffer.
+     */
+    void flush() {
+        BuildScanAdapter buildScan = develocity.getBuildScan();
+        tags.forEach(buildScan::tag);
+        values.forEach(value -> buildScan.value(value.getKey(), value.getValue()));
+        links.forEach(link -> buildScan.link(link.getKey(), link.getValue()));
+
+        if (!searchLinks.isEmpty()) {
+            String server = develocity.getServer();
+            if (server != null) {
+                String prefix = appendIfMissing(server, '/') + "scans?";
+                String suffix = "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
+                searchLinks.forEach(link -> buildScan.link(link.getKey(), prefix + link.getValue() + suffix));
+            }
+        }
+
+        if (droppedValues > 0) {
+            logger.debug("Dropped {} custom values exceeding the limit of {} values", droppedValues, limits.maxValues);
+        }
+
+        tags.clear();
+        values.clear();
+        links.clear();
+        searchLinks.clear();
+        droppedValues = 0;
+    }
+
+    private String truncate(String value) {
+        if (value.length() <= limits.maxValueLength) {
+            return value;
+        }
+        int end = Math.max(0, limits.maxValueLength - TRUNCATION_MARKER.length());
+        return value.substring(0, end) + TRUNCATION_MARKER.substring(0, Math.min(TRUNCATION_MARKER.length(), limits.maxValueLength));
+    }
+
+    private static Map.Entry<String, String> entry(String key, String value) {
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+    }
+
+    /**
+     * The maximum number of custom values a buffer adds, and the length custom values are truncated to.
+     */
+    static final class Limits {
+
+        static final int DEFAULT_MAX_VALUES = 1000;
+        static final int DEFAULT_MAX_VALUE_LENGTH = 100_000;
+
+        private final int maxValues;
+        private final int maxValueLength;
+
+        Limits(int maxValues, int maxValueLength) {
+            this.maxValues = maxValues;
+            this.maxValueLength = maxValueLength;
+        }
+
+    }
+
+}
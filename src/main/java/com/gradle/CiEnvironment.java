@@ -0,0 +1,125 @@
+package com.gradle;
+
+import org.gradle.api.provider.ProviderFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.gradle.Utils.envVariable;
+import static com.gradle.Utils.sysProperty;
+
+/**
+ * An immutable snapshot of the CI providers detected for the build.
+ * <p>
+ * The environment is inspected once per build, in a single pass over the known providers, and the snapshot is shared by
+ * all capture actions. Only the presence of the detection variables is recorded, the variables that describe the CI
+ * build are read by the capture actions at execution time, so that they do not become configuration cache inputs.
+ */
+final class CiEnvironment {
+
+    private static final String GENERIC_CI = "CI";
+
+    private final List<CiProvider> detectedProviders;
+    private final boolean genericCi;
+
+    private CiEnvironment(List<CiProvider> detectedProviders, boolean genericCi) {
+        this.detectedProviders = Collections.unmodifiableList(detectedProviders);
+        this.genericCi = genericCi;
+    }
+
+    static CiEnvironment read(ProviderFactory providers, List<CiProvider> knownProviders) {
+        boolean genericCi = envVariable(GENERIC_CI, providers).isPresent() || sysProperty(GENERIC_CI, providers).isPresent();
+        return detect(knownProviders, name -> envVariable(name, providers).isPresent(), genericCi);
+    }
+
+    /**
+     * Detects the providers whose detection variable is set.
+     * @param isVariableSet tells whether an environment variable is set.
+     * @param genericCi whether the generic <code>CI</code> variable or system property is set.
+     */
+    static CiEnvironment detect(List<CiProvider> knownProviders, Predicate<String> isVariableSet, boolean genericCi) {
+        // several providers can share a variable, each variable is only looked up once
+        Map<String, Boolean> presentVariables = new HashMap<>();
+        List<CiProvider> detectedProviders = new ArrayList<>();
+        for (CiProvider provider : knownProviders) {
+            boolean detected = presentVariables.computeIfAbsent(provider.getDetectionVariable(), isVariableSet::test);
+            boolean excluded = provider.getExclusionVariable() != null
+                && presentVariables.computeIfAbsent(provider.getExclusionVariable(), isVariableSet::test);
+            if (detected && !excluded) {
+                detectedProviders.add(provider);
+            }
+        }
+        return new CiEnvironment(detectedProviders, genericCi);
+    }
+
+    boolean isCi() {
+        return genericCi || !detectedProviders.isEmpty();
+    }
+
+    /**
+     * Returns the detected providers, in the order in which they were given.
+     */
+    List<CiProvider> getDetectedProviders() {
+        return detectedProviders;
+    }
+
+    boolean isJenkins() {
+        return isDetected("jenkins");
+    }
+
+    boolean isHudson() {
+        return isDetected("hudson");
+    }
+
+    boolean isGitHubActions() {
+        return isDetected("github");
+    }
+
+    boolean isGitLab() {
+        return isDetected("gitlab");
+    }
+
+    boolean isAzurePipelines() {
+        return isDetected("azure");
+    }
+
+    boolean isBuildkite() {
+        return isDetected("buildkite");
+    }
+
+    /**
+     * Whether any of the detected providers reports a pull request build. The variables are read when called.
+     */
+    boolean isPullRequest(ProviderFactory providers) {
+        return isPullRequest(name -> envVariable(name, providers));
+    }
+
+    /**
+     * Whether any of the detected providers reports a pull request build.
+     * @param env looks up environment variables.
+     */
+    boolean isPullRequest(Function<String, Optional<String>> env) {
+        for (CiProvider provider : detectedProviders) {
+            if (provider.getPullRequest() != null && provider.getPullRequest().resolve(env).isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isDetected(String id) {
+        for (CiProvider provider : detectedProviders) {
+            if (provider.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
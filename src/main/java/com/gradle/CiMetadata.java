@@ -0,0 +1,154 @@
+package com.gradle;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Function;
+
+import static com.gradle.Utils.appendIfMissing;
+import static com.gradle.Utils.isNotEmpty;
+import static com.gradle.Utils.toPullRequestNumber;
+import static com.gradle.Utils.toWebRepoUri;
+import static com.gradle.Utils.urlEncode;
+
+/**
+ * Captures the metadata of the detected CI providers, as described by {@link CiProvider}, together with the metadata
+ * that cannot be described by environment variable templates.
+ */
+final class CiMetadata {
+
+    private CiMetadata() {
+    }
+
+    /**
+     * @param buildScan the buffer to add the metadata to.
+     * @param detectedProviders the providers detected for the build.
+     * @param env looks up environment variables.
+     * @param propertiesFiles reads a properties file, given its path relative to the root project directory.
+     */
+    static void capture(BuildScanBuffer buildScan, List<CiProvider> detectedProviders, Function<String, Optional<String>> env, Function<String, Properties> propertiesFiles) {
+        for (CiProvider provider : detectedProviders) {
+            buildScan.value("CI provider", provider.getName());
+            captureDescribedMetadata(buildScan, provider, env);
+
+            // metadata that cannot be described by environment variable templates
+            switch (provider.getId()) {
+                case "teamcity":
+                    captureTeamCityMetadata(buildScan, env, propertiesFiles);
+                    break;
+                case "github":
+                    captureGitHubPullRequest(buildScan, env);
+                    break;
+                case "buildkite":
+                    captureBuildkitePullRequest(buildScan, env);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void captureDescribedMetadata(BuildScanBuffer buildScan, CiProvider provider, Function<String, Optional<String>> env) {
+        boolean linkAdded = false;
+        for (Map.Entry<String, CiProvider.Template> link : provider.getLinks().entrySet()) {
+            Optional<String> url = link.getValue().resolve(env);
+            url.ifPresent(value -> buildScan.link(link.getKey(), value));
+            linkAdded |= url.isPresent();
+        }
+        if (!linkAdded) {
+            provider.getFallbackLinks().forEach((name, template) ->
+                template.resolve(env).ifPresent(url -> buildScan.link(name, url)));
+        }
+
+        Map<String, String> values = new HashMap<>();
+        provider.getValues().forEach((name, template) -> template.resolve(env).ifPresent(value -> {
+            values.put(name, value);
+            buildScan.value(name, value);
+        }));
+        provider.getSearchValues().forEach((name, template) -> template.resolve(env).ifPresent(value -> {
+            values.put(name, value);
+            buildScan.addCustomValueAndSearchLink(name, value);
+        }));
+        if (provider.getTag() != null) {
+            provider.getTag().resolve(env).ifPresent(buildScan::tag);
+        }
+
+        provider.getSearchLinks().forEach((linkName, valueNames) -> {
+            Map<String, String> params = new LinkedHashMap<>();
+            for (String valueName : valueNames) {
+                String value = values.get(CiProvider.stripOptional(valueName));
+                if (value != null) {
+                    params.put(CiProvider.stripOptional(valueName), value);
+                } else if (!CiProvider.isOptional(valueName)) {
+                    return;
+                }
+            }
+            buildScan.addSearchLink(linkName, params);
+        });
+    }
+
+    private static void captureTeamCityMetadata(BuildScanBuffer buildScan, Function<String, Optional<String>> env, Function<String, Properties> propertiesFiles) {
+        Optional<String> teamcityBuildPropertiesFile = env.apply("TEAMCITY_BUILD_PROPERTIES_FILE");
+        if (teamcityBuildPropertiesFile.isPresent()) {
+            Properties buildProperties = propertiesFiles.apply(teamcityBuildPropertiesFile.get());
+
+            String teamCityBuildId = buildProperties.getProperty("teamcity.build.id");
+            if (isNotEmpty(teamCityBuildId)) {
+                String teamcityConfigFile = buildProperties.getProperty("teamcity.configuration.properties.file");
+                if (isNotEmpty(teamcityConfigFile)) {
+                    Properties configProperties = propertiesFiles.apply(teamcityConfigFile);
+
+                    String teamCityServerUrl = configProperties.getProperty("teamcity.serverUrl");
+                    if (isNotEmpty(teamCityServerUrl)) {
+                        String buildUrl = appendIfMissing(teamCityServerUrl, '/') + "viewLog.html?buildId=" + urlEncode(teamCityBuildId);
+                        buildScan.link("TeamCity build", buildUrl);
+                    }
+                }
+            }
+
+            String teamCityBuildNumber = buildProperties.getProperty("build.number");
+            if (isNotEmpty(teamCityBuildNumber)) {
+                buildScan.value("CI build number", teamCityBuildNumber);
+            }
+            String teamCityBuildTypeId = buildProperties.getProperty("teamcity.buildType.id");
+            if (isNotEmpty(teamCityBuildTypeId)) {
+                buildScan.addCustomValueAndSearchLink("CI build config", teamCityBuildTypeId);
+            }
+            String teamCityAgentName = buildProperties.getProperty("agent.name");
+            if (isNotEmpty(teamCityAgentName)) {
+                buildScan.addCustomValueAndSearchLink("CI agent", teamCityAgentName);
+            }
+        }
+    }
+
+    private static void captureGitHubPullRequest(BuildScanBuffer buildScan, Function<String, Optional<String>> env) {
+        Optional<String> headRef = env.apply("GITHUB_HEAD_REF").filter(value -> !value.isEmpty());
+        Optional<String> serverUrl = env.apply("GITHUB_SERVER_URL");
+        Optional<String> gitRepository = env.apply("GITHUB_REPOSITORY");
+        Optional<String> refName = env.apply("GITHUB_REF_NAME");
+
+        boolean isPullRequestBuild = headRef.isPresent();
+        if (serverUrl.isPresent() && gitRepository.isPresent() && isPullRequestBuild && refName.isPresent()) {
+            toPullRequestNumber(refName.get()).ifPresent(pullRequestNumber -> {
+                String githubPullRequest = serverUrl.get() +
+                        "/" + gitRepository.get() +
+                        "/pull/" + pullRequestNumber;
+                buildScan.link("GitHub pull request", githubPullRequest);
+            });
+        }
+    }
+
+    private static void captureBuildkitePullRequest(BuildScanBuffer buildScan, Function<String, Optional<String>> env) {
+        Optional<String> buildkitePrRepo = env.apply("BUILDKITE_PULL_REQUEST_REPO");
+        Optional<String> buildkitePrNumber = env.apply("BUILDKITE_PULL_REQUEST");
+        if (buildkitePrRepo.isPresent() && buildkitePrNumber.isPresent()) {
+            String prNumber = buildkitePrNumber.get();
+            toWebRepoUri(buildkitePrRepo.get())
+                .ifPresent(s -> buildScan.link("PR source", s + "/pull/" + prNumber));
+        }
+    }
+
+}
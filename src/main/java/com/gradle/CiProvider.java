@@ -0,0 +1,216 @@
+package com.gradle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Describes how to detect a CI provider and which of its environment variables to capture.
+ * <p>
+ * Providers are described by properties prefixed with the id of the provider, see <code>ci-providers.properties</code>
+ * for the supported properties. Values can reference environment variables as <code>${NAME}</code> and are only
+ * captured if all referenced environment variables are set to a non-empty value.
+ */
+final class CiProvider {
+
+    private static final String OPTIONAL_SUFFIX = "?";
+
+    private final String id;
+    private final String name;
+    private final String detectionVariable;
+    private final String exclusionVariable;
+    private final Map<String, Template> links;
+    private final Map<String, Template> fallbackLinks;
+    private final Map<String, Template> values;
+    private final Map<String, Template> searchValues;
+    private final Template tag;
+    private final Template pullRequest;
+    private final Map<String, List<String>> searchLinks;
+
+    private CiProvider(String id, Map<String, String> properties) {
+        this.id = id;
+        this.name = required(id, properties, "name");
+        this.detectionVariable = required(id, properties, "detect");
+        this.exclusionVariable = properties.get("detectUnless");
+        this.links = templates(properties, "link.");
+        this.fallbackLinks = templates(properties, "fallbackLink.");
+        this.values = templates(properties, "value.");
+        this.searchValues = templates(properties, "searchValue.");
+        this.tag = properties.containsKey("tag") ? Template.parse(properties.get("tag")) : null;
+        this.pullRequest = properties.containsKey("pullRequest") ? Template.parse(properties.get("pullRequest")) : null;
+
+        Map<String, List<String>> searchLinks = new TreeMap<>();
+        properties.forEach((key, value) -> {
+            if (key.startsWith("searchLink.")) {
+                List<String> valueNames = Arrays.stream(value.split(",")).map(String::trim).collect(Collectors.toList());
+                searchLinks.put(key.substring("searchLink.".length()), Collections.unmodifiableList(valueNames));
+            }
+        });
+        this.searchLinks = Collections.unmodifiableMap(searchLinks);
+    }
+
+    /**
+     * Parses all providers described by the given properties, ordered by id.
+     * @throws IllegalArgumentException if a provider lacks a name or detection variable.
+     */
+    static List<CiProvider> parse(Properties properties) {
+        Map<String, Map<String, String>> propertiesById = new TreeMap<>();
+        for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+            int separator = key.indexOf('.');
+            if (separator > 0) {
+                propertiesById.computeIfAbsent(key.substring(0, separator), __ -> new LinkedHashMap<>())
+                    .put(key.substring(separator + 1), properties.getProperty(key));
+            }
+        }
+
+        List<CiProvider> providers = new ArrayList<>();
+        propertiesById.forEach((id, providerProperties) -> providers.add(new CiProvider(id, providerProperties)));
+        return providers;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getDetectionVariable() {
+        return detectionVariable;
+    }
+
+    /**
+     * Returns the environment variable whose presence rules out this provider, or null.
+     */
+    String getExclusionVariable() {
+        return exclusionVariable;
+    }
+
+    /**
+     * Returns the links to add, by link name. The fallback links are only added if none of these can be resolved.
+     */
+    Map<String, Template> getLinks() {
+        return links;
+    }
+
+    Map<String, Template> getFallbackLinks() {
+        return fallbackLinks;
+    }
+
+    Map<String, Template> getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the custom values to add together with a link to all build scans with the same value, by value name.
+     */
+    Map<String, Template> getSearchValues() {
+        return searchValues;
+    }
+
+    Template getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns a template that only resolves for pull request builds, or null.
+     */
+    Template getPullRequest() {
+        return pullRequest;
+    }
+
+    /**
+     * Returns the links to all build scans with the same values, by link name. Each link is only added if all of its
+     * values are present, except for those marked as optional.
+     */
+    Map<String, List<String>> getSearchLinks() {
+        return searchLinks;
+    }
+
+    static boolean isOptional(String valueName) {
+        return valueName.endsWith(OPTIONAL_SUFFIX);
+    }
+
+    static String stripOptional(String valueName) {
+        return isOptional(valueName) ? valueName.substring(0, valueName.length() - OPTIONAL_SUFFIX.length()) : valueName;
+    }
+
+    private static String required(String id, Map<String, String> properties, String key) {
+        String value = properties.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("CI provider '" + id + "' must define '" + id + "." + key + "'");
+        }
+        return value.trim();
+    }
+
+    private static Map<String, Template> templates(Map<String, String> properties, String prefix) {
+        Map<String, Template> templates = new TreeMap<>();
+        properties.forEach((key, value) -> {
+            if (key.startsWith(prefix)) {
+                templates.put(key.substring(prefix.length()), Template.parse(value));
+            }
+        });
+        return Collections.unmodifiableMap(templates);
+    }
+
+    /**
+     * A string referencing environment variables as <code>${NAME}</code>, split into its parts once when it is parsed.
+     */
+    static final class Template {
+
+        // the literal parts and the referenced variables alternate, starting and ending with a literal part
+        private final List<String> literals;
+        private final List<String> variables;
+
+        private Template(List<String> literals, List<String> variables) {
+            this.literals = literals;
+            this.variables = variables;
+        }
+
+        static Template parse(String template) {
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            int start = 0;
+            int reference;
+            while ((reference = template.indexOf("${", start)) >= 0) {
+                int end = template.indexOf('}', reference);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated variable reference in '" + template + "'");
+                }
+                literals.add(template.substring(start, reference));
+                variables.add(template.substring(reference + 2, end));
+                start = end + 1;
+            }
+            literals.add(template.substring(start));
+            return new Template(Collections.unmodifiableList(literals), Collections.unmodifiableList(variables));
+        }
+
+        /**
+         * Replaces all variable references with the values of the variables.
+         * @return the resolved string, or {@link Optional#empty()} if any of the variables is not set or empty.
+         */
+        Optional<String> resolve(Function<String, Optional<String>> variableValues) {
+            StringBuilder result = new StringBuilder(literals.get(0));
+            for (int i = 0; i < variables.size(); i++) {
+                Optional<String> value = variableValues.apply(variables.get(i)).filter(Utils::isNotEmpty);
+                if (!value.isPresent()) {
+                    return Optional.empty();
+                }
+                result.append(value.get()).append(literals.get(i + 1));
+            }
+            return Optional.of(result.toString());
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.gradle;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Loads the CI providers bundled with the plugin and those described by the user.
+ */
+final class CiProviders {
+
+    private static final Logger logger = Logging.getLogger(CiProviders.class);
+
+    private static final String BUNDLED_PROVIDERS = "ci-providers.properties";
+
+    private static volatile List<CiProvider> bundledProviders;
+
+    private CiProviders() {
+    }
+
+    /**
+     * Returns the bundled providers together with the providers described in the given file, if any. A provider
+     * described in the file replaces a bundled provider with the same id. If the file cannot be read or describes an
+     * invalid provider, only the bundled providers are returned.
+     * @param additionalProviders a properties file describing additional providers, or null.
+     * @param providerFactory the factory to read the file with, as a configuration cache input.
+     */
+    static List<CiProvider> load(File additionalProviders, ProviderFactory providerFactory) {
+        if (additionalProviders == null) {
+            return loadBundled();
+        }
+
+        Map<String, CiProvider> providers = new LinkedHashMap<>();
+        loadBundled().forEach(provider -> providers.put(provider.getId(), provider));
+        try (InputStream input = Overrides.readFile(additionalProviders, providerFactory)) {
+            CiProvider.parse(load(input)).forEach(provider -> providers.put(provider.getId(), provider));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Unable to read CI providers from {}, ignoring them", additionalProviders, e);
+            return loadBundled();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(providers.values()));
+    }
+
+    /**
+     * Returns the providers bundled with the plugin.
+     */
+    static List<CiProvider> loadBundled() {
+        List<CiProvider> providers = bundledProviders;
+        if (providers == null) {
+            try (InputStream input = CiProviders.class.getResourceAsStream(BUNDLED_PROVIDERS)) {
+                if (input == null) {
+                    throw new IOException("Missing resource " + BUNDLED_PROVIDERS);
+                }
+                providers = Collections.unmodifiableList(CiProvider.parse(load(input)));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read bundled CI providers", e);
+            }
+            bundledProviders = providers;
+        }
+        return providers;
+    }
+
+    private static Properties load(InputStream input) throws IOException {
+        Properties properties = new Properties();
+        properties.load(input);
+        return properties;
+    }
+
+}
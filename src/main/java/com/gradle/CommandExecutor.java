@@ -0,0 +1,323 @@
+package com.gradle;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Executes external commands with predictable latency and memory use.
+ * <p>
+ * Standard output and standard error are drained concurrently, so that a chatty process cannot block on a full pipe
+ * buffer, and only the first {@link #MAX_OUTPUT_BYTES} bytes of each stream are kept. Each command is bounded by a
+ * per-command timeout and all commands executed by the same instance share an overall deadline, after which no further
+ * commands are started. The wall-clock duration of every command is recorded.
+ */
+final class CommandExecutor {
+
+    private static final Logger logger = Logging.getLogger(CommandExecutor.class);
+
+    static final Duration DEFAULT_COMMAND_TIMEOUT = Duration.ofSeconds(10);
+    static final int MAX_OUTPUT_BYTES = 1024 * 1024;
+
+    private static final int MAX_ERROR_OUTPUT_BYTES = 16 * 1024;
+    private static final long STREAM_CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private static final ExecutorService streamReaders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "CCUD command output reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Duration commandTimeout;
+    private final long deadlineNanos;
+    private final List<Execution> executions = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param commandTimeout the maximum duration of a single command.
+     * @param overallTimeout the maximum duration of all commands executed by this instance, or null for no overall deadline.
+     */
+    CommandExecutor(Duration commandTimeout, Duration overallTimeout) {
+        this.commandTimeout = commandTimeout;
+        this.deadlineNanos = overallTimeout != null ? System.nanoTime() + overallTimeout.toNanos() : Long.MAX_VALUE;
+    }
+
+    static CommandExecutor withDefaultTimeout() {
+        return new CommandExecutor(DEFAULT_COMMAND_TIMEOUT, null);
+    }
+
+    /**
+     * Executes a command and returns the standard output as a string.
+     * <p>
+     * Only the first {@link #MAX_OUTPUT_BYTES} bytes of the output are returned, without any indication that the rest
+     * was cut off. Callers that parse the output as a whole, rather than only capturing it, must use
+     * {@link #execute(File, String...)} and check {@link Execution#isTruncated()} instead.
+     * @param dir the working directory of the subprocess, or null if the subprocess should inherit the working directory of the current process.
+     * @param args array containing the command to call and its arguments.
+     * @return the possibly truncated standard output of the command, or null if the command could not be started, failed, or timed out.
+     */
+    String execAndGetStdOut(File dir, String... args) {
+        Execution execution = execute(dir, args);
+        return execution.isSuccessful() ? trimAtEnd(execution.getStdOut()) : null;
+    }
+
+    /**
+     * Executes a command and returns whether it completed successfully.
+     */
+    boolean execAndCheckSuccess(File dir, String... args) {
+        return execute(dir, args).isSuccessful();
+    }
+
+    Execution execute(File dir, String... args) {
+        return execute(dir, input -> BoundedOutput.drain(input, MAX_OUTPUT_BYTES), args);
+    }
+
+    /**
+     * Executes a command and passes each line of its standard output to the given consumer as soon as it is read,
+     * without retaining the output. The consumer is called from a different thread than the calling thread.
+     */
+    Execution executeAndStreamLines(File dir, Consumer<String> stdOutLines, String... args) {
+        return executeAndStreamLinesWhile(dir, line -> {
+            stdOutLines.accept(line);
+            return true;
+        }, args);
+    }
+
+    /**
+     * Executes a command and passes each line of its standard output to the given predicate, stopping the command as
+     * soon as the predicate returns false. A stopped command has the outcome {@link Execution.Outcome#STOPPED}.
+     */
+    Execution executeAndStreamLinesWhile(File dir, Predicate<String> stdOutLines, String... args) {
+        return execute(dir, input -> BoundedOutput.stream(input, stdOutLines), args);
+    }
+
+    private Execution execute(File dir, OutputDrainer stdOutDrainer, String... args) {
+        long startNanos = System.nanoTime();
+        long timeoutNanos = Math.min(commandTimeout.toNanos(), deadlineNanos - startNanos);
+        if (timeoutNanos <= 0) {
+            return record(new Execution(args, Execution.Outcome.NOT_STARTED, -1, "", false, 0));
+        }
+
+        Process process;
+        try {
+            process = new ProcessBuilder(args).directory(dir).start();
+        } catch (IOException e) {
+            return record(new Execution(args, Execution.Outcome.NOT_STARTED, -1, "", false, System.nanoTime() - startNanos));
+        }
+
+        try {
+            process.getOutputStream().close();
+            Future<BoundedOutput> stdOut = streamReaders.submit(() -> {
+                BoundedOutput output = stdOutDrainer.drain(process.getInputStream());
+                if (output == BoundedOutput.STOPPED) {
+                    JavaPlatform.destroyForcibly(process);
+                }
+                return output;
+            });
+            Future<BoundedOutput> stdErr = streamReaders.submit(() -> BoundedOutput.drain(process.getErrorStream(), MAX_ERROR_OUTPUT_BYTES));
+
+            boolean finished = process.waitFor(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (!finished) {
+                JavaPlatform.destroyForcibly(process);
+            }
+
+            BoundedOutput output = awaitOutput(stdOut);
+            BoundedOutput error = awaitOutput(stdErr);
+            long durationNanos = System.nanoTime() - startNanos;
+            if (!finished) {
+                return record(new Execution(args, Execution.Outcome.TIMED_OUT, -1, output != null ? output.toString() : "", output != null && output.truncated, durationNanos));
+            }
+
+            if (output == BoundedOutput.STOPPED) {
+                return record(new Execution(args, Execution.Outcome.STOPPED, -1, "", false, durationNanos));
+            }
+
+            if (output == null || error == null) {
+                logger.debug("Command {} exited without closing its output", Arrays.toString(args));
+                return record(new Execution(args, Execution.Outcome.FAILED, -1, "", false, durationNanos));
+            }
+
+            int exitCode = process.exitValue();
+            if (exitCode != 0 && !error.isEmpty()) {
+                logger.debug("Command {} exited with {}: {}", Arrays.toString(args), exitCode, error);
+            }
+            return record(new Execution(args, Execution.Outcome.COMPLETED, exitCode, output.toString(), output.truncated, durationNanos));
+        } catch (IOException e) {
+            return record(new Execution(args, Execution.Outcome.FAILED, -1, "", false, System.nanoTime() - startNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return record(new Execution(args, Execution.Outcome.TIMED_OUT, -1, "", false, System.nanoTime() - startNanos));
+        } finally {
+            JavaPlatform.destroyForcibly(process);
+        }
+    }
+
+    /**
+     * Returns all commands executed so far, in order of completion.
+     */
+    List<Execution> getExecutions() {
+        synchronized (executions) {
+            return new ArrayList<>(executions);
+        }
+    }
+
+    private Execution record(Execution execution) {
+        executions.add(execution);
+        logger.debug("Command {} {} in {}ms", Arrays.toString(execution.args), execution.outcome, execution.getDuration().toMillis());
+        return execution;
+    }
+
+    /**
+     * Returns the output of a stream, or null if it could not be read completely.
+     */
+    private static BoundedOutput awaitOutput(Future<BoundedOutput> output) throws InterruptedException {
+        try {
+            // the streams are closed once the process has exited, unless a child process inherited them
+            return output.get(STREAM_CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            output.cancel(true);
+            return null;
+        }
+    }
+
+    private static String trimAtEnd(String str) {
+        return ('x' + str).trim().substring(1);
+    }
+
+    private interface OutputDrainer {
+
+        BoundedOutput drain(InputStream input) throws IOException;
+
+    }
+
+    static final class Execution {
+
+        enum Outcome {
+            NOT_STARTED,
+            TIMED_OUT,
+            STOPPED,
+            // the output could not be read completely, e.g. because a child process kept the streams open
+            FAILED,
+            COMPLETED
+        }
+
+        private final String[] args;
+        private final Outcome outcome;
+        private final int exitCode;
+        private final String stdOut;
+        private final boolean truncated;
+        private final long durationNanos;
+
+        private Execution(String[] args, Outcome outcome, int exitCode, String stdOut, boolean truncated, long durationNanos) {
+            this.args = args;
+            this.outcome = outcome;
+            this.exitCode = exitCode;
+            this.stdOut = stdOut;
+            this.truncated = truncated;
+            this.durationNanos = durationNanos;
+        }
+
+        boolean isSuccessful() {
+            return outcome == Outcome.COMPLETED && exitCode == 0;
+        }
+
+        List<String> getArgs() {
+            return Collections.unmodifiableList(Arrays.asList(args));
+        }
+
+        Outcome getOutcome() {
+            return outcome;
+        }
+
+        int getExitCode() {
+            return exitCode;
+        }
+
+        String getStdOut() {
+            return stdOut;
+        }
+
+        boolean isTruncated() {
+            return truncated;
+        }
+
+        Duration getDuration() {
+            return Duration.ofNanos(durationNanos);
+        }
+
+    }
+
+    private static final class BoundedOutput {
+
+        private static final BoundedOutput EMPTY = new BoundedOutput(new byte[0], false);
+        private static final BoundedOutput STOPPED = new BoundedOutput(new byte[0], true);
+
+        private final byte[] bytes;
+        private final boolean truncated;
+
+        private BoundedOutput(byte[] bytes, boolean truncated) {
+            this.bytes = bytes;
+            this.truncated = truncated;
+        }
+
+        private static BoundedOutput drain(InputStream input, int maxBytes) throws IOException {
+            ByteArrayOutputStream kept = new ByteArrayOutputStream();
+            boolean truncated = false;
+            byte[] buffer = new byte[8192];
+            int n;
+            try (InputStream in = input) {
+                while ((n = in.read(buffer)) != -1) {
+                    // keep reading past the limit, so that the process does not block on a full pipe
+                    int keep = Math.min(n, maxBytes - kept.size());
+                    if (keep > 0) {
+                        kept.write(buffer, 0, keep);
+                    }
+                    truncated |= keep < n;
+                }
+            }
+            return new BoundedOutput(kept.toByteArray(), truncated);
+        }
+
+        private static BoundedOutput stream(InputStream input, Predicate<String> lines) throws IOException {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charset.defaultCharset()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!lines.test(line)) {
+                        return STOPPED;
+                    }
+                }
+            }
+            return EMPTY;
+        }
+
+        private boolean isEmpty() {
+            return bytes.length == 0;
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, Charset.defaultCharset());
+        }
+
+    }
+
+}
@@ -18,7 +18,6 @@ import org.gradle.api.provider.ProviderFactory;
 import org.gradle.caching.configuration.BuildCacheConfiguration;
 
 import javax.inject.Inject;
-import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.gradle.Utils.isGradle4OrNewer;
@@ -63,13 +62,15 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
     }
 
     private static void applySettingsPlugin(DevelocityAdapter develocity, ProviderFactory providers, Settings settings) {
+        long start = System.nanoTime();
+        PluginOverhead overhead = PluginOverhead.create(providers);
         CustomDevelocityConfig customDevelocityConfig = new CustomDevelocityConfig();
 
         customDevelocityConfig.configureDevelocity(develocity);
 
         BuildScanAdapter buildScan = develocity.getBuildScan();
         customDevelocityConfig.configureBuildScanPublishing(buildScan);
-        CustomBuildScanEnhancements buildScanEnhancements = new CustomBuildScanEnhancements(develocity, providers, settings.getGradle(), settings.getRootDir());
+        CustomBuildScanEnhancements buildScanEnhancements = new CustomBuildScanEnhancements(develocity, providers, settings.getGradle(), settings.getRootDir(), overhead);
         buildScanEnhancements.apply();
 
         BuildCacheConfiguration buildCache = settings.getBuildCache();
@@ -79,11 +80,26 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
         // configuration changes applied in this block will override earlier configuration settings,
         // including those set in the settings.gradle(.kts)
         Action<Settings> settingsAction = __ -> {
-            Overrides overrides = new Overrides(providers);
+            long overridesStart = System.nanoTime();
+            Overrides overrides = new Overrides(providers, settings.getRootDir());
             overrides.configureDevelocity(develocity);
             overrides.configureBuildCache(buildCacheAdapter);
+            LocalBuildCachePlacement.fromSettings(providers).ifPresent(placement -> placement.configure(buildCacheAdapter.getLocal(), develocity.getBuildScan()));
+            LocalBuildCachePruner.configure(buildCacheAdapter.getLocal(), develocity.getBuildScan(), providers, settings.getRootDir(), settings.getGradle().getGradleUserHomeDir());
+            if (buildCacheAdapter.getRemote() != null) {
+                // an explicit push override wins over the push policy
+                if (!overrides.value(Overrides.REMOTE_CACHE_PUSH).isPresent()) {
+                    RemoteBuildCachePushPolicy.fromSettings(providers).ifPresent(policy -> policy.configure(buildCacheAdapter.getRemote(), develocity.getBuildScan(), buildScanEnhancements.getCiEnvironment(), providers, settings.getRootDir()));
+                }
+                RemoteBuildCacheProbe.fromSettings(providers, settings.getGradle().getGradleUserHomeDir()).ifPresent(probe -> probe.configure(buildCacheAdapter.getRemote(), develocity));
+            }
+            overhead.record(PluginOverhead.Phase.OVERRIDES, overridesStart);
         };
 
+        // registered last, so that the report runs after all other build finished actions
+        buildScan.buildFinished(overhead.reportAction(develocity));
+        overhead.record(PluginOverhead.Phase.SETTINGS_PLUGIN, start);
+
         // it is possible that the settings have already been evaluated by now, in which case
         // a settingsEvaluated callback would not fire anymore
         if (settingsHaveBeenEvaluated()) {
@@ -140,13 +156,15 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
     }
 
     private void applyProjectPlugin(Project project, DevelocityAdapter develocity) {
+        long start = System.nanoTime();
+        PluginOverhead overhead = PluginOverhead.create(providers);
         CustomDevelocityConfig customDevelocityConfig = new CustomDevelocityConfig();
 
         customDevelocityConfig.configureDevelocity(develocity);
 
         BuildScanAdapter buildScan = develocity.getBuildScan();
         customDevelocityConfig.configureBuildScanPublishing(buildScan);
-        CustomBuildScanEnhancements buildScanEnhancements = new CustomBuildScanEnhancements(develocity, providers, project.getGradle(), project.getRootDir());
+        CustomBuildScanEnhancements buildScanEnhancements = new CustomBuildScanEnhancements(develocity, providers, project.getGradle(), project.getRootDir(), overhead);
         buildScanEnhancements.apply();
 
         // Build cache configuration cannot be accessed from a project plugin
@@ -154,9 +172,15 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
         // configuration changes applied within this block will override earlier configuration settings,
         // including those set in the root project's build.gradle(.kts)
         project.afterEvaluate(___ -> {
-            Overrides overrides = new Overrides(providers);
+            long overridesStart = System.nanoTime();
+            Overrides overrides = new Overrides(providers, project.getRootDir());
             overrides.configureDevelocity(develocity);
+            overhead.record(PluginOverhead.Phase.OVERRIDES, overridesStart);
         });
+
+        // registered last, so that the report runs after all other build finished actions
+        buildScan.buildFinished(overhead.reportAction(develocity));
+        overhead.record(PluginOverhead.Phase.SETTINGS_PLUGIN, start);
     }
 
     private static void ensureRootProject(Project project) {
@@ -166,9 +190,7 @@ public class CommonCustomUserDataGradlePlugin implements Plugin<Object> {
     }
 
     private static boolean settingsHaveBeenEvaluated() {
-        return Arrays.stream(Thread.currentThread().getStackTrace())
-            .map(StackTraceElement::getMethodName)
-            .anyMatch(s -> s.contains("settingsEvaluated"));
+        return JavaPlatform.isOnStack("settingsEvaluated");
     }
 
 }
@@ -11,37 +11,23 @@ import org.gradle.api.provider.ProviderFactory;
 
 import java.io.File;
 import java.net.URI;
-import java.util.AbstractMap;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static com.gradle.CiUtils.isAzurePipelines;
-import static com.gradle.CiUtils.isBamboo;
-import static com.gradle.CiUtils.isBitrise;
-import static com.gradle.CiUtils.isBuildkite;
-import static com.gradle.CiUtils.isCi;
-import static com.gradle.CiUtils.isCircleCI;
-import static com.gradle.CiUtils.isGitHubActions;
-import static com.gradle.CiUtils.isGitLab;
-import static com.gradle.CiUtils.isGoCD;
-import static com.gradle.CiUtils.isHudson;
-import static com.gradle.CiUtils.isJenkins;
-import static com.gradle.CiUtils.isTeamCity;
-import static com.gradle.CiUtils.isTravis;
-import static com.gradle.Utils.appendIfMissing;
 import static com.gradle.Utils.envVariable;
-import static com.gradle.Utils.execAndCheckSuccess;
-import static com.gradle.Utils.execAndGetStdOut;
 import static com.gradle.Utils.isGradle43rNewer;
 import static com.gradle.Utils.isGradle56OrNewer;
 import static com.gradle.Utils.isGradle61OrNewer;
@@ -51,7 +37,6 @@ import static com.gradle.Utils.readPropertiesFile;
 import static com.gradle.Utils.redactUserInfo;
 import static com.gradle.Utils.sysProperty;
 import static com.gradle.Utils.toWebRepoUri;
-import static com.gradle.Utils.urlEncode;
 
 /**
  * Adds a standard set of useful tags, links and custom values to all build scans published.
@@ -69,28 +54,84 @@ final class CustomBuildScanEnhancements {
     private static final String ENV_VAR_VSCODE_PID = "VSCODE_PID";
     private static final String ENV_VAR_VSCODE_INJECTION = "VSCODE_INJECTION";
 
+    // system property to point to a file describing additional CI providers, see ci-providers.properties
+    static final String CI_PROVIDERS_FILE = "ccud.ci.providers.file";
+    // system property to opt into caching git metadata across builds in the Gradle user home
+    static final String GIT_METADATA_CACHE_ENABLED = "ccud.git.metadataCache.enabled";
+    // system property to opt into keeping git metadata in memory across the builds of a daemon
+    static final String GIT_DAEMON_CACHE_ENABLED = "ccud.git.daemonCache.enabled";
+    // system property to opt into tracking working tree changes in the daemon instead of rescanning it on every build
+    static final String GIT_STATUS_TRACKER_ENABLED = "ccud.git.statusTracker.enabled";
+    // system properties to opt into a summary of the git status whose size does not depend on the number of changes
+    static final String GIT_STATUS_SUMMARY_ENABLED = "ccud.git.statusSummary.enabled";
+    static final String GIT_STATUS_SUMMARY_MAX_PATHS = "ccud.git.statusSummary.maxPaths";
+    // system property to opt into capturing the git metadata of submodules and of the repositories of included builds
+    static final String GIT_MULTI_REPOSITORY_ENABLED = "ccud.git.multiRepository.enabled";
+    // system properties to opt into capturing the size of the changes of a pull request, counting at most the given number of files
+    static final String GIT_CHANGE_SET_ENABLED = "ccud.git.changeSet.enabled";
+    static final String GIT_CHANGE_SET_MAX_FILES = "ccud.git.changeSet.maxFiles";
+    // system properties to tune how long a single git command and all git commands of a build may take
+    static final String GIT_COMMAND_TIMEOUT = "ccud.git.commandTimeout";
+    static final String GIT_CAPTURE_TIMEOUT = "ccud.git.captureTimeout";
+    // system properties to bound the number and length of the custom values added by each capture step
+    static final String BUILD_SCAN_MAX_VALUES = "ccud.buildScan.maxValues";
+    static final String BUILD_SCAN_MAX_VALUE_LENGTH = "ccud.buildScan.maxValueLength";
+
+    // system property to capture how many tasks were loaded from the build cache and the estimated time saved
+    static final String BUILD_CACHE_STATS_ENABLED = "ccud.buildCache.stats.enabled";
+
     private final DevelocityAdapter develocity;
     private final BuildScanAdapter buildScan;
     private final ProviderFactory providers;
     private final Gradle gradle;
     private final File projectDir;
+    private final CiEnvironment ciEnvironment;
+    private final BuildScanBuffer.Limits limits;
+    private final PluginOverhead overhead;
 
-    CustomBuildScanEnhancements(DevelocityAdapter develocity, ProviderFactory providers, Gradle gradle, File projectDir) {
+    CustomBuildScanEnhancements(DevelocityAdapter develocity, ProviderFactory providers, Gradle gradle, File projectDir, PluginOverhead overhead) {
         this.develocity = develocity;
         this.buildScan = develocity.getBuildScan();
         this.providers = providers;
         this.gradle = gradle;
         this.projectDir = projectDir;
+        this.ciEnvironment = CiEnvironment.read(providers, CiProviders.load(getAdditionalCiProvidersFile(), providers));
+        this.limits = new BuildScanBuffer.Limits(
+            Overrides.sysPropertyOrEnvVariable(BUILD_SCAN_MAX_VALUES, providers).map(Integer::parseInt).orElse(BuildScanBuffer.Limits.DEFAULT_MAX_VALUES),
+            Overrides.sysPropertyOrEnvVariable(BUILD_SCAN_MAX_VALUE_LENGTH, providers).map(Integer::parseInt).orElse(BuildScanBuffer.Limits.DEFAULT_MAX_VALUE_LENGTH)
+        );
+        this.overhead = overhead;
+    }
+
+    private File getAdditionalCiProvidersFile() {
+        return Overrides.sysPropertyOrEnvVariable(CI_PROVIDERS_FILE, providers)
+            .map(File::new)
+            .map(file -> file.isAbsolute() ? file : new File(projectDir, file.getPath()))
+            .orElse(null);
+    }
+
+    CiEnvironment getCiEnvironment() {
+        return ciEnvironment;
     }
 
     // Apply all build scan enhancements via custom tags, links, and values
     void apply() {
+        long start = System.nanoTime();
         captureOs();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_OS, start);
         captureIde();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_IDE, start);
         captureCiOrLocal();
         captureCiMetadata();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_CI, start);
         captureGitMetadata();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_GIT, start);
         captureAgentMetadata();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_AGENT, start);
+        captureBuildCacheStats();
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_BUILD_CACHE_STATS, start);
+        captureJvmTelemetry();
+        overhead.record(PluginOverhead.Phase.CAPTURE_JVM, start);
     }
 
     private void captureOs() {
@@ -98,7 +139,7 @@ final class CustomBuildScanEnhancements {
     }
 
     private void captureIde() {
-        if (!isCi(providers)) {
+        if (!ciEnvironment.isCi()) {
             // Prepare relevant properties for use at execution time
             Map<String, Provider<String>> ideProperties = new HashMap<>();
             ideProperties.put(SYSTEM_PROP_IDEA_VENDOR_NAME, systemPropertyProvider(SYSTEM_PROP_IDEA_VENDOR_NAME, providers));
@@ -111,40 +152,50 @@ final class CustomBuildScanEnhancements {
             ideProperties.put(ENV_VAR_VSCODE_INJECTION, environmentPropertyProvider(ENV_VAR_VSCODE_INJECTION, providers));
 
             // Process data at execution time to ensure property initialization
-            buildScan.buildFinished(new CaptureIdeMetadataAction(buildScan, ideProperties));
+            buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.IDE_ACTION, captureIdeMetadataAction(develocity, limits, ideProperties)));
         }
     }
 
+    /**
+     * Creates the action that tags the IDE the build runs in, given the IDE properties by name.
+     */
+    static Action<BuildResultAdapter> captureIdeMetadataAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, Map<String, Provider<String>> props) {
+        return new CaptureIdeMetadataAction(develocity, limits, props);
+    }
+
     private static final class CaptureIdeMetadataAction implements Action<BuildResultAdapter> {
 
-        private final BuildScanAdapter buildScan;
+        private final DevelocityAdapter develocity;
+        private final BuildScanBuffer.Limits limits;
         private final Map<String, Provider<String>> props;
 
-        private CaptureIdeMetadataAction(BuildScanAdapter buildScan, Map<String, Provider<String>> props) {
-            this.buildScan = buildScan;
+        private CaptureIdeMetadataAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, Map<String, Provider<String>> props) {
+            this.develocity = develocity;
+            this.limits = limits;
             this.props = props;
         }
 
         @Override
         public void execute(BuildResultAdapter buildResult) {
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
             if (props.get(SYSTEM_PROP_IDEA_VENDOR_NAME).isPresent()) {
                 String ideaVendorNameValue = props.get(SYSTEM_PROP_IDEA_VENDOR_NAME).get();
                 if ("Google".equals(ideaVendorNameValue)) {
                     // using androidStudioVersion instead of ideaVersion for compatibility reasons, those can be different (e.g. 2020.3.1 Patch 3 instead of 2020.3)
-                    tagIde("Android Studio", getOrEmpty(props.get(PROJECT_PROP_ANDROID_STUDIO_VERSION)));
+                    tagIde(buildScan, "Android Studio", getOrEmpty(props.get(PROJECT_PROP_ANDROID_STUDIO_VERSION)));
                 } else if ("JetBrains".equals(ideaVendorNameValue)) {
-                    tagIde("IntelliJ IDEA", getOrEmpty(props.get(SYSTEM_PROP_IDEA_VERSION)));
+                    tagIde(buildScan, "IntelliJ IDEA", getOrEmpty(props.get(SYSTEM_PROP_IDEA_VERSION)));
                 }
             } else if (props.get(PROJECT_PROP_ANDROID_INVOKED_FROM_IDE).isPresent()) {
                 // this case should be handled by the ideaVendorName condition but keeping it for compatibility reason (ideaVendorName started with 2020.1)
-                tagIde("Android Studio", getOrEmpty(props.get(PROJECT_PROP_ANDROID_STUDIO_VERSION)));
+                tagIde(buildScan, "Android Studio", getOrEmpty(props.get(PROJECT_PROP_ANDROID_STUDIO_VERSION)));
             } else if (props.get(SYSTEM_PROP_IDEA_VERSION).isPresent()) {
                 // this case should be handled by the ideaVendorName condition but keeping it for compatibility reason (ideaVendorName started with 2020.1)
-                tagIde("IntelliJ IDEA", props.get(SYSTEM_PROP_IDEA_VERSION).get());
+                tagIde(buildScan, "IntelliJ IDEA", props.get(SYSTEM_PROP_IDEA_VERSION).get());
             } else if (props.get(SYSTEM_PROP_ECLIPSE_BUILD_ID).isPresent()) {
-                tagIde("Eclipse", props.get(SYSTEM_PROP_ECLIPSE_BUILD_ID).get());
+                tagIde(buildScan, "Eclipse", props.get(SYSTEM_PROP_ECLIPSE_BUILD_ID).get());
             } else if (props.get(ENV_VAR_VSCODE_PID).isPresent() || props.get(ENV_VAR_VSCODE_INJECTION).isPresent()) {
-                tagIde("VS Code", "");
+                tagIde(buildScan, "VS Code", "");
             } else {
                 buildScan.tag("Cmd Line");
             }
@@ -152,6 +203,7 @@ final class CustomBuildScanEnhancements {
             if (props.get(SYSTEM_PROP_IDEA_SYNC_ACTIVE).isPresent()) {
                 buildScan.tag("IDE sync");
             }
+            buildScan.flush();
         }
 
         private String getOrEmpty(Provider<String> p) {
@@ -163,7 +215,7 @@ final class CustomBuildScanEnhancements {
             }
         }
 
-        private void tagIde(String ideLabel, String version) {
+        private static void tagIde(BuildScanBuffer buildScan, String ideLabel, String version) {
             buildScan.tag(ideLabel);
             if (!version.isEmpty()) {
                 buildScan.value(ideLabel + " version", version);
@@ -173,311 +225,206 @@ final class CustomBuildScanEnhancements {
     }
 
     private void captureCiOrLocal() {
-        buildScan.tag(isCi(providers) ? "CI" : "LOCAL");
+        buildScan.tag(ciEnvironment.isCi() ? "CI" : "LOCAL");
     }
 
     private void captureCiMetadata() {
-        if (isCi(providers)) {
+        if (ciEnvironment.isCi()) {
             // Prepare project directory for use at execution time
             Provider<Directory> projectDirectory = providers.provider(() -> gradle.getRootProject().getLayout().getProjectDirectory());
 
             // Process data at execution time so that CI metadata does not become a configuration cache input
-            buildScan.buildFinished(new CaptureCiMetadataAction(develocity, providers, projectDirectory));
+            buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.CI_ACTION, new CaptureCiMetadataAction(develocity, limits, providers, ciEnvironment, projectDirectory)));
         }
     }
 
     private static final class CaptureCiMetadataAction implements Action<BuildResultAdapter> {
 
         private final DevelocityAdapter develocity;
-        private final BuildScanAdapter buildScan;
+        private final BuildScanBuffer.Limits limits;
         private final ProviderFactory providers;
+        private final CiEnvironment ciEnvironment;
         private final Provider<Directory> projectDirectory;
 
-        private CaptureCiMetadataAction(DevelocityAdapter develocity, ProviderFactory providers, Provider<Directory> projectDirectory) {
+        private CaptureCiMetadataAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, ProviderFactory providers, CiEnvironment ciEnvironment, Provider<Directory> projectDirectory) {
             this.develocity = develocity;
-            this.buildScan = develocity.getBuildScan();
+            this.limits = limits;
             this.providers = providers;
+            this.ciEnvironment = ciEnvironment;
             this.projectDirectory = projectDirectory;
         }
 
         @Override
         public void execute(BuildResultAdapter buildResult) {
-            if (isJenkins(providers) || isHudson(providers)) {
-                String ciProvider = isJenkins(providers) ? "Jenkins" : "Hudson";
-                String controllerUrlEnvVar = isJenkins(providers) ? "JENKINS_URL" : "HUDSON_URL";
-
-                Optional<String> buildUrl = envVariable("BUILD_URL", providers);
-                Optional<String> buildNumber = envVariable("BUILD_NUMBER", providers);
-                Optional<String> nodeName = envVariable("NODE_NAME", providers);
-                Optional<String> jobName = envVariable("JOB_NAME", providers);
-                Optional<String> stageName = envVariable("STAGE_NAME", providers);
-                Optional<String> controllerUrl = envVariable(controllerUrlEnvVar, providers);
-
-                buildScan.value("CI provider", ciProvider);
-                buildUrl.ifPresent(url ->
-                    buildScan.link(isJenkins(providers) ? "Jenkins build" : "Hudson build", url));
-                buildNumber.ifPresent(value ->
-                    buildScan.value("CI build number", value));
-                nodeName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI node", value));
-                jobName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI job", value));
-                stageName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI stage", value));
-                controllerUrl.ifPresent(value ->
-                    buildScan.value("CI controller", value));
-
-                jobName.ifPresent(j -> buildNumber.ifPresent(b -> {
-                    Map<String, String> params = new LinkedHashMap<>();
-                    params.put("CI job", j);
-                    params.put("CI build number", b);
-                    addSearchLink(develocity, "CI pipeline", params);
-                }));
-            }
-
-            if (isTeamCity(providers)) {
-                buildScan.value("CI provider", "TeamCity");
-                Optional<String> teamcityBuildPropertiesFile = envVariable("TEAMCITY_BUILD_PROPERTIES_FILE", providers);
-                if (teamcityBuildPropertiesFile.isPresent()) {
-                    Properties buildProperties = readPropertiesFile(teamcityBuildPropertiesFile.get(), providers, projectDirectory.get());
-
-                    String teamCityBuildId = buildProperties.getProperty("teamcity.build.id");
-                    if (isNotEmpty(teamCityBuildId)) {
-                        String teamcityConfigFile = buildProperties.getProperty("teamcity.configuration.properties.file");
-                        if (isNotEmpty(teamcityConfigFile)) {
-                            Properties configProperties = readPropertiesFile(teamcityConfigFile, providers, projectDirectory.get());
-
-                            String teamCityServerUrl = configProperties.getProperty("teamcity.serverUrl");
-                            if (isNotEmpty(teamCityServerUrl)) {
-                                String buildUrl = appendIfMissing(teamCityServerUrl, '/') + "viewLog.html?buildId=" + urlEncode(teamCityBuildId);
-                                buildScan.link("TeamCity build", buildUrl);
-                            }
-                        }
-                    }
-
-                    String teamCityBuildNumber = buildProperties.getProperty("build.number");
-                    if (isNotEmpty(teamCityBuildNumber)) {
-                        buildScan.value("CI build number", teamCityBuildNumber);
-                    }
-                    String teamCityBuildTypeId = buildProperties.getProperty("teamcity.buildType.id");
-                    if (isNotEmpty(teamCityBuildTypeId)) {
-                        addCustomValueAndSearchLink(develocity, "CI build config", teamCityBuildTypeId);
-                    }
-                    String teamCityAgentName = buildProperties.getProperty("agent.name");
-                    if (isNotEmpty(teamCityAgentName)) {
-                        addCustomValueAndSearchLink(develocity, "CI agent", teamCityAgentName);
-                    }
-                }
-            }
-
-            if (isCircleCI(providers)) {
-                buildScan.value("CI provider", "CircleCI");
-                envVariable("CIRCLE_BUILD_URL", providers).ifPresent(url ->
-                    buildScan.link("CircleCI build", url));
-                envVariable("CIRCLE_BUILD_NUM", providers).ifPresent(value ->
-                    buildScan.value("CI build number", value));
-                envVariable("CIRCLE_JOB", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI job", value));
-                envVariable("CIRCLE_WORKFLOW_ID", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI workflow", value));
-            }
-
-            if (isBamboo(providers)) {
-                buildScan.value("CI provider", "Bamboo");
-                envVariable("bamboo_resultsUrl", providers).ifPresent(url ->
-                    buildScan.link("Bamboo build", url));
-                envVariable("bamboo_buildNumber", providers).ifPresent(value ->
-                    buildScan.value("CI build number", value));
-                envVariable("bamboo_planName", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI plan", value));
-                envVariable("bamboo_buildPlanName", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI build plan", value));
-                envVariable("bamboo_agentId", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI agent", value));
-            }
-
-            if (isGitHubActions(providers)) {
-                buildScan.value("CI provider", "GitHub Actions");
-
-                Optional<String> workflow = envVariable("GITHUB_WORKFLOW", providers);
-                Optional<String> jobId = envVariable("GITHUB_JOB", providers);
-                Optional<String> actionNameOrStepId = envVariable("GITHUB_ACTION", providers);
-                Optional<String> runId = envVariable("GITHUB_RUN_ID", providers);
-                Optional<String> runAttempt = envVariable("GITHUB_RUN_ATTEMPT", providers);
-                Optional<String> runNumber = envVariable("GITHUB_RUN_NUMBER", providers);
-                Optional<String> headRef = envVariable("GITHUB_HEAD_REF", providers).filter(value -> !value.isEmpty());
-                Optional<String> baseRef = envVariable("GITHUB_BASE_REF", providers).filter(value -> !value.isEmpty());
-                Optional<String> serverUrl = envVariable("GITHUB_SERVER_URL", providers);
-                Optional<String> gitRepository = envVariable("GITHUB_REPOSITORY", providers);
-                Optional<String> refName = envVariable("GITHUB_REF_NAME", providers);
-
-                workflow.ifPresent(value ->
-                        addCustomValueAndSearchLink(develocity, "CI workflow", value));
-                jobId.ifPresent(value ->
-                        addCustomValueAndSearchLink(develocity, "CI job", value));
-                actionNameOrStepId.ifPresent(value ->
-                        addCustomValueAndSearchLink(develocity, "CI step", value));
-
-                runId.ifPresent(value ->
-                        buildScan.value("CI run", value));
-                runAttempt.ifPresent(value ->
-                        buildScan.value("CI run attempt", value));
-                runNumber.ifPresent(value ->
-                        buildScan.value("CI run number", value));
-                headRef.ifPresent(value ->
-                        buildScan.value("PR branch", value));
-                baseRef.ifPresent(value ->
-                        buildScan.value("PR base branch", value));
-
-                if (serverUrl.isPresent() && gitRepository.isPresent() && runId.isPresent()) {
-                    StringBuilder githubActionsBuild = new StringBuilder(serverUrl.get())
-                            .append("/").append(gitRepository.get())
-                            .append("/actions/runs/").append(runId.get());
-                    runAttempt.ifPresent(value -> githubActionsBuild.append("/attempts/").append(value));
-                    buildScan.link("GitHub Actions build", githubActionsBuild.toString());
-                }
-
-                boolean isPullRequestBuild = headRef.isPresent();
-                if (serverUrl.isPresent() && gitRepository.isPresent() && isPullRequestBuild && refName.isPresent()) {
-                    Matcher matcher = Pattern.compile("^(\\d+)/merge$").matcher(refName.get());
-                    if (matcher.matches()) {
-                        String githubPullRequest = serverUrl.get() +
-                                "/" + gitRepository.get() +
-                                "/pull/" + matcher.group(1);
-                        buildScan.link("GitHub pull request", githubPullRequest);
-                    }
-                }
-
-                if (runId.isPresent()) {
-                    Map<String, String> params = new HashMap<>();
-                    params.put("CI run", runId.get());
-                    runAttempt.ifPresent(value -> params.put("CI run attempt", value));
-                    addSearchLink(develocity, "CI run", params);
-                }
-            }
-
-            if (isGitLab(providers)) {
-                buildScan.value("CI provider", "GitLab");
-                envVariable("CI_JOB_URL", providers).ifPresent(url ->
-                    buildScan.link("GitLab build", url));
-                envVariable("CI_PIPELINE_URL", providers).ifPresent(url ->
-                    buildScan.link("GitLab pipeline", url));
-                envVariable("CI_JOB_NAME", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI job", value));
-                envVariable("CI_JOB_STAGE", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI stage", value));
-            }
-
-            if (isTravis(providers)) {
-                buildScan.value("CI provider", "Travis");
-                envVariable("TRAVIS_BUILD_WEB_URL", providers).ifPresent(url ->
-                    buildScan.link("Travis build", url));
-                envVariable("TRAVIS_BUILD_NUMBER", providers).ifPresent(value ->
-                    buildScan.value("CI build number", value));
-                envVariable("TRAVIS_JOB_NAME", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI job", value));
-                envVariable("TRAVIS_EVENT_TYPE", providers).ifPresent(buildScan::tag);
-            }
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
+            CiMetadata.capture(buildScan, ciEnvironment.getDetectedProviders(), name -> envVariable(name, providers),
+                name -> readPropertiesFile(name, providers, projectDirectory.get()));
+            buildScan.flush();
+        }
 
-            if (isBitrise(providers)) {
-                buildScan.value("CI provider", "Bitrise");
-                envVariable("BITRISE_BUILD_URL", providers).ifPresent(url ->
-                    buildScan.link("Bitrise build", url));
-                envVariable("BITRISE_BUILD_NUMBER", providers).ifPresent(value ->
-                    buildScan.value("CI build number", value));
-            }
+    }
 
-            if (isGoCD(providers)) {
-                buildScan.value("CI provider", "GoCD");
-                Optional<String> pipelineName = envVariable("GO_PIPELINE_NAME", providers);
-                Optional<String> pipelineNumber = envVariable("GO_PIPELINE_COUNTER", providers);
-                Optional<String> stageName = envVariable("GO_STAGE_NAME", providers);
-                Optional<String> stageNumber = envVariable("GO_STAGE_COUNTER", providers);
-                Optional<String> jobName = envVariable("GO_JOB_NAME", providers);
-                Optional<String> goServerUrl = envVariable("GO_SERVER_URL", providers);
-                if (Stream.of(pipelineName, pipelineNumber, stageName, stageNumber, jobName, goServerUrl).allMatch(Optional::isPresent)) {
-                    //noinspection OptionalGetWithoutIsPresent
-                    String buildUrl = String.format("%s/tab/build/detail/%s/%s/%s/%s/%s",
-                        goServerUrl.get(), pipelineName.get(),
-                        pipelineNumber.get(), stageName.get(), stageNumber.get(), jobName.get());
-                    buildScan.link("GoCD build", buildUrl);
-                } else if (goServerUrl.isPresent()) {
-                    buildScan.link("GoCD", goServerUrl.get());
-                }
-                pipelineName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI pipeline", value));
-                jobName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI job", value));
-                stageName.ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI stage", value));
-            }
+    private void captureGitMetadata() {
+        GitCaptureSettings settings = new GitCaptureSettings(providers, gradle);
 
-            if (isAzurePipelines(providers)) {
-                buildScan.value("CI provider", "Azure Pipelines");
-                Optional<String> azureServerUrl = envVariable("SYSTEM_TEAMFOUNDATIONCOLLECTIONURI", providers);
-                Optional<String> azureProject = envVariable("SYSTEM_TEAMPROJECT", providers);
-                Optional<String> buildId = envVariable("BUILD_BUILDID", providers);
-                if (Stream.of(azureServerUrl, azureProject, buildId).allMatch(Optional::isPresent)) {
-                    String buildUrl = String.format("%s%s/_build/results?buildId=%s",
-                        azureServerUrl.get(), azureProject.get(), buildId.get());
-                    buildScan.link("Azure Pipelines build", buildUrl);
-                } else if (azureServerUrl.isPresent()) {
-                    buildScan.link("Azure Pipelines", azureServerUrl.get());
-                }
+        // Run expensive computation in background
+        Consumer<Map<String, File>> capture = includedBuilds -> buildScan.background(overhead.timed(PluginOverhead.Phase.GIT_ACTION, new CaptureGitMetadataAction(develocity, limits, providers, ciEnvironment, projectDir, settings, includedBuilds)));
 
-                buildId.ifPresent(value ->
-                    buildScan.value("CI build number", value));
-            }
+        boolean multiRepositoryEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_MULTI_REPOSITORY_ENABLED, providers).orElse(false);
+        if (!multiRepositoryEnabled) {
+            capture.accept(null);
+            return;
+        }
 
-            if (isBuildkite(providers)) {
-                buildScan.value("CI provider", "Buildkite");
-                envVariable("BUILDKITE_BUILD_URL", providers)
-                    .ifPresent(s -> buildScan.link("Buildkite build", s));
-                envVariable("BUILDKITE_COMMAND", providers).ifPresent(value ->
-                    addCustomValueAndSearchLink(develocity, "CI command", value));
-                envVariable("BUILDKITE_BUILD_ID", providers).ifPresent(value ->
-                    buildScan.value("CI build ID", value));
-
-                Optional<String> buildkitePrRepo = envVariable("BUILDKITE_PULL_REQUEST_REPO", providers);
-                Optional<String> buildkitePrNumber = envVariable("BUILDKITE_PULL_REQUEST", providers);
-                if (buildkitePrRepo.isPresent() && buildkitePrNumber.isPresent()) {
-                    String prNumber = buildkitePrNumber.get();
-                    toWebRepoUri(buildkitePrRepo.get())
-                        .ifPresent(s -> buildScan.link("PR source", s + "/pull/" + prNumber));
-                }
-            }
+        Optional<Map<String, File>> includedBuilds = getIncludedBuildDirs(gradle);
+        if (includedBuilds.isPresent()) {
+            capture.accept(includedBuilds.get());
+        } else {
+            // included builds are only known once the settings have been evaluated
+            gradle.projectsLoaded(g -> capture.accept(getIncludedBuildDirs(g).orElse(Collections.emptyMap())));
         }
+    }
 
+    private static Optional<Map<String, File>> getIncludedBuildDirs(Gradle gradle) {
+        try {
+            Map<String, File> includedBuildDirs = new HashMap<>();
+            gradle.getIncludedBuilds().forEach(build -> includedBuildDirs.put(build.getName(), build.getProjectDir()));
+            return Optional.of(includedBuildDirs);
+        } catch (IllegalStateException e) {
+            return Optional.empty();
+        }
     }
 
-    private void captureGitMetadata() {
-        // Run expensive computation in background
-        buildScan.background(new CaptureGitMetadataAction(develocity, providers, projectDir));
+    private static final class GitCaptureSettings {
+
+        private final GitMetadataCache metadataCache;
+        private final boolean daemonCacheEnabled;
+        private final boolean statusTrackerEnabled;
+        private final boolean statusSummaryEnabled;
+        private final int statusSummaryMaxPaths;
+        private final boolean changeSetEnabled;
+        private final int changeSetMaxFiles;
+        private final Duration commandTimeout;
+        private final Duration captureTimeout;
+
+        private GitCaptureSettings(ProviderFactory providers, Gradle gradle) {
+            boolean metadataCacheEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_METADATA_CACHE_ENABLED, providers).orElse(false);
+            this.metadataCache = metadataCacheEnabled ? new GitMetadataCache(new File(gradle.getGradleUserHomeDir(), "caches/common-custom-user-data/git-metadata")) : null;
+            this.daemonCacheEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_DAEMON_CACHE_ENABLED, providers).orElse(false);
+            this.statusTrackerEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_STATUS_TRACKER_ENABLED, providers).orElse(false);
+            this.statusSummaryEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_STATUS_SUMMARY_ENABLED, providers).orElse(false);
+            this.statusSummaryMaxPaths = Overrides.sysPropertyOrEnvVariable(GIT_STATUS_SUMMARY_MAX_PATHS, providers).map(Integer::parseInt).orElse(GitStatusSummary.DEFAULT_MAX_PATHS);
+            this.changeSetEnabled = Overrides.booleanSysPropertyOrEnvVariable(GIT_CHANGE_SET_ENABLED, providers).orElse(false);
+            this.changeSetMaxFiles = Overrides.sysPropertyOrEnvVariable(GIT_CHANGE_SET_MAX_FILES, providers).map(Integer::parseInt).orElse(GitChangeSet.DEFAULT_MAX_FILES);
+            this.commandTimeout = Overrides.durationSysPropertyOrEnvVariable(GIT_COMMAND_TIMEOUT, providers).orElse(CommandExecutor.DEFAULT_COMMAND_TIMEOUT);
+            this.captureTimeout = Overrides.durationSysPropertyOrEnvVariable(GIT_CAPTURE_TIMEOUT, providers).orElse(null);
+        }
+
     }
 
     private static final class CaptureGitMetadataAction implements Action<BuildScanAdapter> {
 
+        private static final int MAX_PARALLEL_REPOSITORY_READERS = 4;
+
+        // git metadata by repository directory, kept for as long as the daemon is alive
+        private static final DaemonCache<File, GitMetadata> daemonCache = new DaemonCache<>(GitMetadataCache.MAX_ENTRIES);
+
         private final DevelocityAdapter develocity;
         private final ProviderFactory providers;
+        private final CiEnvironment ciEnvironment;
         private final File projectDir;
+        private final BuildScanBuffer.Limits limits;
+        private final GitCaptureSettings settings;
+        // null if only the repository of the root project is captured
+        private final Map<String, File> includedBuilds;
 
-        private CaptureGitMetadataAction(DevelocityAdapter develocity, ProviderFactory providers, File projectDir) {
+        private CaptureGitMetadataAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, ProviderFactory providers, CiEnvironment ciEnvironment, File projectDir, GitCaptureSettings settings, Map<String, File> includedBuilds) {
             this.develocity = develocity;
+            this.limits = limits;
             this.providers = providers;
+            this.ciEnvironment = ciEnvironment;
             this.projectDir = projectDir;
+            this.settings = settings;
+            this.includedBuilds = includedBuilds;
         }
 
         @Override
-        public void execute(BuildScanAdapter buildScan) {
-            if (!isGitInstalled()) {
+        public void execute(BuildScanAdapter buildScanAdapter) {
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
+            try {
+                capture(buildScan);
+            } finally {
+                buildScan.flush();
+            }
+        }
+
+        private void capture(BuildScanBuffer buildScan) {
+            CommandExecutor executor = new CommandExecutor(settings.commandTimeout, settings.captureTimeout);
+            Map<String, File> repositories = includedBuilds != null && !isGitEnvironmentOverridden()
+                ? GitRepositories.find(projectDir, includedBuilds)
+                : Collections.emptyMap();
+            if (repositories.isEmpty()) {
+                captureRootRepository(executor, buildScan);
+                return;
+            }
+
+            // the additional repositories are read while the repository of the root project is captured
+            long deadlineNanos = System.nanoTime() + (settings.captureTimeout != null ? settings.captureTimeout : settings.commandTimeout).toNanos();
+            ExecutorService readers = Executors.newFixedThreadPool(Math.min(repositories.size(), MAX_PARALLEL_REPOSITORY_READERS), runnable -> {
+                Thread thread = new Thread(runnable, "CCUD git metadata reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                Map<String, Future<Optional<GitMetadata>>> gitMetadata = new LinkedHashMap<>();
+                repositories.forEach((name, dir) -> gitMetadata.put(name, readers.submit(() -> readGitMetadata(executor, dir))));
+
+                captureRootRepository(executor, buildScan);
+
+                for (Map.Entry<String, Future<Optional<GitMetadata>>> entry : gitMetadata.entrySet()) {
+                    awaitGitMetadata(entry.getValue(), deadlineNanos).ifPresent(git -> captureRepository(buildScan, entry.getKey(), git));
+                }
+            } finally {
+                readers.shutdownNow();
+            }
+        }
+
+        private static Optional<GitMetadata> awaitGitMetadata(Future<Optional<GitMetadata>> gitMetadata, long deadlineNanos) {
+            try {
+                return gitMetadata.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            } catch (ExecutionException | TimeoutException e) {
+                gitMetadata.cancel(true);
+                return Optional.empty();
+            }
+        }
+
+        private static void captureRepository(BuildScanBuffer buildScan, String name, GitMetadata git) {
+            String suffix = " (" + name + ")";
+            if (isNotEmpty(git.getRepositoryUrl())) {
+                redactUserInfo(git.getRepositoryUrl()).ifPresent(redactedGitRepo -> buildScan.value("Git repository" + suffix, redactedGitRepo));
+            }
+            if (isNotEmpty(git.getCommitId())) {
+                buildScan.value("Git commit id" + suffix, git.getCommitId());
+            }
+            if (isNotEmpty(git.getBranchName())) {
+                buildScan.value("Git branch" + suffix, git.getBranchName());
+            }
+        }
+
+        private void captureRootRepository(CommandExecutor executor, BuildScanBuffer buildScan) {
+            Optional<GitMetadata> gitMetadata = readGitMetadata(executor, projectDir);
+            if (!gitMetadata.isPresent()) {
                 return;
             }
 
-            String gitRepo = execAndGetStdOut(projectDir, "git", "config", "--get", "remote.origin.url");
-            String gitCommitId = execAndGetStdOut(projectDir, "git", "rev-parse", "--verify", "HEAD");
-            String gitCommitShortId = execAndGetStdOut(projectDir, "git", "rev-parse", "--short=8", "--verify", "HEAD");
-            String gitBranchName = getGitBranchName(projectDir, () -> execAndGetStdOut(projectDir, "git", "rev-parse", "--abbrev-ref", "HEAD"));
-            String gitStatus = execAndGetStdOut(projectDir, "git", "status", "--porcelain");
+            GitMetadata git = gitMetadata.get();
+            String gitRepo = git.getRepositoryUrl();
+            String gitCommitId = git.getCommitId();
+            String gitCommitShortId = git.getCommitShortId();
+            String gitBranchName = GitBranchName.detect(ciEnvironment, providers, executor, projectDir, git);
 
             if (isNotEmpty(gitRepo)) {
                 redactUserInfo(gitRepo).ifPresent(redactedGitRepo -> buildScan.value("Git repository", redactedGitRepo));
@@ -487,15 +434,38 @@ final class CustomBuildScanEnhancements {
             }
             if (isNotEmpty(gitCommitShortId)) {
                 // Ensure server URL is configured by deferring call at execution time
-                buildScan.buildFinished(result -> addCustomValueAndSearchLink(develocity, "Git commit id", "Git commit id short", gitCommitShortId));
+                develocity.getBuildScan().buildFinished(result -> {
+                    BuildScanBuffer searchLink = new BuildScanBuffer(develocity, limits);
+                    searchLink.addCustomValueAndSearchLink("Git commit id", "Git commit id short", gitCommitShortId);
+                    searchLink.flush();
+                });
             }
             if (isNotEmpty(gitBranchName)) {
                 buildScan.tag(gitBranchName);
                 buildScan.value("Git branch", gitBranchName);
             }
-            if (isNotEmpty(gitStatus)) {
-                buildScan.tag("Dirty");
-                buildScan.value("Git status", gitStatus);
+            if (settings.statusSummaryEnabled) {
+                GitStatusSummary gitStatusSummary = readGitStatusSummary(executor, git);
+                if (gitStatusSummary != null && gitStatusSummary.getTotal() > 0) {
+                    buildScan.tag("Dirty");
+                    buildScan.value("Git status", gitStatusSummary.getPaths());
+                    buildScan.value("Git status summary", gitStatusSummary.getCounts());
+                    buildScan.value("Git status hash", gitStatusSummary.getHash());
+                }
+            } else {
+                String gitStatus = readGitStatus(executor, git);
+                if (isNotEmpty(gitStatus)) {
+                    buildScan.tag("Dirty");
+                    buildScan.value("Git status", gitStatus);
+                }
+            }
+
+            if (settings.changeSetEnabled) {
+                readGitChangeSet(executor).ifPresent(changeSet -> {
+                    // the actual change is larger if counting stopped at the limit, its lines are not counted then
+                    buildScan.value("Git changed files", changeSet.getFiles() + (changeSet.isLimitReached() ? "+" : ""));
+                    changeSet.getLines().ifPresent(lines -> buildScan.value("Git changed lines", String.valueOf(lines)));
+                });
             }
 
             Optional<String> gitHubUrl = envVariable("GITHUB_SERVER_URL", providers);
@@ -514,60 +484,76 @@ final class CustomBuildScanEnhancements {
             }
         }
 
-        private boolean isGitInstalled() {
-            return execAndCheckSuccess("git", "--version");
+        private Optional<GitMetadata> readGitMetadata(CommandExecutor executor, File dir) {
+            if (isGitEnvironmentOverridden()) {
+                // the environment may add config files, so the remote repository URL is looked up with git as well
+                return GitCommandMetadataReader.read(executor, dir, true);
+            }
+
+            // read the metadata directly from the .git directory when possible to avoid forking several git processes
+            Optional<GitMetadata> gitMetadata = readGitMetadataDirectly(dir);
+            return gitMetadata.isPresent() ? gitMetadata : GitCommandMetadataReader.read(executor, dir);
         }
 
-        private String getGitBranchName(File projectDir, Supplier<String> gitCommand) {
-            if (isJenkins(providers) || isHudson(providers)) {
-                Optional<String> branchName = envVariable("BRANCH_NAME", providers);
-                if (branchName.isPresent()) {
-                    return branchName.get();
+        // only metadata read directly is cached, as the cache keys cannot detect changes of the layouts that need git
+        private Optional<GitMetadata> readGitMetadataDirectly(File dir) {
+            Supplier<Optional<GitMetadata>> reader = () -> GitMetadataReader.read(dir);
+            Supplier<Optional<GitMetadata>> cachingReader = settings.metadataCache != null ? () -> settings.metadataCache.computeIfAbsent(dir, reader) : reader;
+            if (settings.daemonCacheEnabled) {
+                Optional<String> key = GitMetadataCache.stateKey(dir);
+                if (key.isPresent()) {
+                    return Optional.ofNullable(daemonCache.computeIfAbsent(dir.getAbsoluteFile(), key.get(), () -> cachingReader.get().orElse(null)));
                 }
+            }
+            return cachingReader.get();
+        }
 
-                Optional<String> gitBranch = envVariable("GIT_BRANCH", providers);
-                if (gitBranch.isPresent()) {
-                    Optional<String> localBranch = getLocalBranch(projectDir, gitBranch.get());
-                    if (localBranch.isPresent()) {
-                        return localBranch.get();
-                    }
-                }
-            } else if (isGitLab(providers)) {
-                Optional<String> branch = envVariable("CI_COMMIT_REF_NAME", providers);
-                if (branch.isPresent()) {
-                    return branch.get();
+        private String readGitStatus(CommandExecutor executor, GitMetadata git) {
+            if (settings.statusTrackerEnabled && !isGitEnvironmentOverridden()) {
+                String gitStatus = GitStatusTracker.getStatus(executor, projectDir, git.getCommitId());
+                if (gitStatus != null) {
+                    return gitStatus;
                 }
-            } else if (isAzurePipelines(providers)) {
-                Optional<String> branch = envVariable("BUILD_SOURCEBRANCH", providers);
-                if (branch.isPresent()) {
-                    return branch.get();
-                }
-            } else if (isBuildkite(providers)) {
-                Optional<String> branch = envVariable("BUILDKITE_BRANCH", providers);
-                if (branch.isPresent()) {
-                    return branch.get();
-                }
-            } else if (isGitHubActions(providers)) {
-                Optional<String> branch = envVariable("GITHUB_REF_NAME", providers);
-                if (branch.isPresent()) {
-                    return branch.get();
+            }
+            return executor.execAndGetStdOut(projectDir, "git", "status", "--porcelain");
+        }
+
+        private GitStatusSummary readGitStatusSummary(CommandExecutor executor, GitMetadata git) {
+            if (settings.statusTrackerEnabled && !isGitEnvironmentOverridden()) {
+                // the tracker keeps the last status in memory anyway to serve unchanged working trees
+                String gitStatus = GitStatusTracker.getStatus(executor, projectDir, git.getCommitId());
+                if (gitStatus != null) {
+                    return GitStatusSummary.of(gitStatus, settings.statusSummaryMaxPaths);
                 }
             }
-            return gitCommand.get();
+
+            // streamed, so that the summary covers the complete output
+
+            GitStatusSummary summary = new GitStatusSummary(settings.statusSummaryMaxPaths);
+            CommandExecutor.Execution status = executor.executeAndStreamLines(projectDir, summary, "git", "status", "--porcelain");
+            return status.isSuccessful() ? summary : null;
         }
 
-        private static Optional<String> getLocalBranch(File projectDir, String remoteBranch) {
-            // This finds the longest matching remote name. This is because, for example, a local git clone could have
-            // two remotes named `origin` and `origin/two`. In this scenario, we would want a remote branch of
-            // `origin/two/main` to match to the `origin/two` remote, not to `origin`
-            Function<String, Optional<String>> findLongestMatchingRemote = remotes -> Arrays.stream(remotes.split("\\R"))
-                .filter(remote -> remoteBranch.startsWith(remote + "/"))
-                .max(Comparator.comparingInt(String::length));
+        private Optional<GitChangeSet> readGitChangeSet(CommandExecutor executor) {
+            // GitLab provides the merge-base of merge request pipelines
+            Optional<String> diffBase = envVariable("CI_MERGE_REQUEST_DIFF_BASE_SHA", providers).filter(Utils::isNotEmpty);
+            if (diffBase.isPresent()) {
+                return GitChangeSet.readSince(executor, projectDir, diffBase.get(), settings.changeSetMaxFiles);
+            }
+
+            // GitHub Actions sets the base ref to an empty string for events other than pull requests
+            Optional<String> baseBranch = Stream.of("GITHUB_BASE_REF", "CI_MERGE_REQUEST_TARGET_BRANCH_NAME")
+                .map(name -> envVariable(name, providers).filter(Utils::isNotEmpty))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+            return baseBranch.flatMap(branch -> GitChangeSet.read(executor, projectDir, branch, settings.changeSetMaxFiles));
+        }
 
-            return Optional.ofNullable(execAndGetStdOut(projectDir, "git", "remote"))
-                .filter(Utils::isNotEmpty)
-                .flatMap(findLongestMatchingRemote)
-                .map(remote -> remoteBranch.replaceFirst("^" + remote + "/", ""));
+        private boolean isGitEnvironmentOverridden() {
+            // the repository layout is controlled by the environment, leave its interpretation to git
+            return Stream.of("GIT_DIR", "GIT_COMMON_DIR", "GIT_WORK_TREE", "GIT_CONFIG", "GIT_CONFIG_COUNT")
+                .anyMatch(name -> envVariable(name, providers).isPresent());
         }
     }
 
@@ -575,17 +561,72 @@ final class CustomBuildScanEnhancements {
         Provider<String> androidStudioAgent = gradlePropertyProvider(PROJECT_PROP_ANDROID_STUDIO_AGENT, gradle, providers);
 
         // Process data at execution time so that agent metadata does not become a configuration cache input
-        buildScan.buildFinished(new CaptureAgentMetadataAction(buildScan, providers, androidStudioAgent));
+        buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.AGENT_ACTION, new CaptureAgentMetadataAction(develocity, limits, providers, androidStudioAgent)));
+    }
+
+    private void captureBuildCacheStats() {
+        if (!Overrides.booleanSysPropertyOrEnvVariable(BUILD_CACHE_STATS_ENABLED, providers).orElse(false)) {
+            return;
+        }
+
+        if (isGradle61OrNewer()) {
+            Provider<BuildCacheStatsService> service = gradle.getSharedServices().registerIfAbsent(BuildCacheStatsService.NAME, BuildCacheStatsService.class,
+                spec -> spec.getParameters().getBuildId().set(projectDir.getAbsolutePath()));
+            gradle.getPluginManager().apply(BuildCacheStatsPlugin.class);
+            buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.BUILD_CACHE_STATS_ACTION, new CaptureBuildCacheStatsAction(develocity, limits, service)));
+        } else {
+            captureBuildCacheStatsWithListener();
+        }
+    }
+
+    // task execution listeners are deprecated, but they are the only way to observe task outcomes prior to Gradle 6.1
+    @SuppressWarnings("deprecation")
+    private void captureBuildCacheStatsWithListener() {
+        BuildCacheStats stats = new BuildCacheStats(projectDir.getAbsolutePath());
+        gradle.getTaskGraph().addTaskExecutionListener(new BuildCacheStatsListener(stats));
+        buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.BUILD_CACHE_STATS_ACTION, result -> {
+            BuildScanBuffer buffer = new BuildScanBuffer(develocity, limits);
+            stats.publish(buffer);
+            buffer.flush();
+        }));
+    }
+
+    private void captureJvmTelemetry() {
+        JvmTelemetry.fromSettings(providers).ifPresent(telemetry ->
+            buildScan.buildFinished(overhead.timed(PluginOverhead.Phase.JVM_ACTION, telemetry.captureAction(develocity, limits))));
+    }
+
+    private static final class CaptureBuildCacheStatsAction implements Action<BuildResultAdapter> {
+
+        private final DevelocityAdapter develocity;
+        private final BuildScanBuffer.Limits limits;
+        private final Provider<BuildCacheStatsService> service;
+
+        private CaptureBuildCacheStatsAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, Provider<BuildCacheStatsService> service) {
+            this.develocity = develocity;
+            this.limits = limits;
+            this.service = service;
+        }
+
+        @Override
+        public void execute(BuildResultAdapter buildResult) {
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
+            service.get().getStats().publish(buildScan);
+            buildScan.flush();
+        }
+
     }
 
     private static final class CaptureAgentMetadataAction implements Action<BuildResultAdapter> {
 
-        private final BuildScanAdapter buildScan;
+        private final DevelocityAdapter develocity;
+        private final BuildScanBuffer.Limits limits;
         private final ProviderFactory providers;
         private final Provider<String> androidStudioAgent;
 
-        private CaptureAgentMetadataAction(BuildScanAdapter buildScan, ProviderFactory providers, Provider<String> androidStudioAgent) {
-            this.buildScan = buildScan;
+        private CaptureAgentMetadataAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, ProviderFactory providers, Provider<String> androidStudioAgent) {
+            this.develocity = develocity;
+            this.limits = limits;
             this.providers = providers;
             this.androidStudioAgent = androidStudioAgent;
         }
@@ -604,6 +645,8 @@ final class CustomBuildScanEnhancements {
             Optional<String> copilotAgent = envVariable("COPILOT_AGENT", providers);
             Optional<String> androidStudioAgentEnv = envVariable("ANDROID_STUDIO_AGENT", providers);
 
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
+
             claudeCode.ifPresent(env -> {
                 buildScan.tag("AI");
                 buildScan.value("AI agent", "Claude Code");
@@ -632,35 +675,7 @@ final class CustomBuildScanEnhancements {
                 buildScan.tag("AI");
                 buildScan.value("AI agent", "Gemini in Android Studio");
             }
-        }
-    }
-
-    private static void addCustomValueAndSearchLink(DevelocityAdapter develocity, String name, String value) {
-        develocity.getBuildScan().value(name, value);
-        addSearchLink(develocity, name, name, value);
-    }
-
-    private static void addCustomValueAndSearchLink(DevelocityAdapter develocity, String linkLabel, String name, String value) {
-        develocity.getBuildScan().value(name, value);
-        addSearchLink(develocity, linkLabel, name, value);
-    }
-
-    private static void addSearchLink(DevelocityAdapter develocity, String linkLabel, Map<String, String> values) {
-        // the parameters for a link querying multiple custom values look like:
-        // search.names=name1,name2&search.values=value1,value2
-        // this reduction groups all names and all values together in order to properly generate the query
-        values.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey()) // results in a deterministic order of link parameters
-            .reduce((a, b) -> new AbstractMap.SimpleEntry<>(a.getKey() + "," + b.getKey(), a.getValue() + "," + b.getValue()))
-            .ifPresent(x -> addSearchLink(develocity, linkLabel, x.getKey(), x.getValue()));
-    }
-
-    private static void addSearchLink(DevelocityAdapter develocity, String linkLabel, String name, String value) {
-        String searchParams = "search.names=" + urlEncode(name) + "&search.values=" + urlEncode(value);
-        String server = develocity.getServer();
-        if (server != null) {
-            String url = appendIfMissing(server, '/') + "scans?" + searchParams + "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
-            develocity.getBuildScan().link(linkLabel + " build scans", url);
+            buildScan.flush();
         }
     }
 
@@ -0,0 +1,78 @@
+package com.gradle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps values in memory for as long as the daemon is alive, so that warm builds do not need to compute them again.
+ * <p>
+ * Each value is stored together with the invalidation key it was computed for, and is computed again as soon as the
+ * key changes. The least recently used values are dropped once the cache holds more than its maximum number of values,
+ * and values that have not been used for a while are dropped so that they do not outlive a changed plugin classpath.
+ */
+final class DaemonCache<I, V> {
+
+    static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final Map<I, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    DaemonCache(int maxEntries) {
+        this(maxEntries, System::currentTimeMillis);
+    }
+
+    DaemonCache(int maxEntries, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the value cached for the given id if it was computed for the given invalidation key, computing and
+     * caching it otherwise. The value is computed outside of any lock, concurrent builds may compute it more than once.
+     * @param id the id of the value, for example the directory it describes.
+     * @param key the invalidation key, made up of everything the value depends on.
+     * @param computation computes the value, a null value is not cached.
+     */
+    V computeIfAbsent(I id, String key, Supplier<V> computation) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> now - entry.lastUsed > IDLE_TIMEOUT_MILLIS);
+            Entry<V> entry = entries.get(id);
+            if (entry != null && entry.key.equals(key)) {
+                entry.lastUsed = now;
+                return entry.value;
+            }
+        }
+
+        V value = computation.get();
+        if (value != null) {
+            synchronized (entries) {
+                entries.put(id, new Entry<>(key, value, now));
+                while (entries.size() > maxEntries) {
+                    entries.remove(entries.keySet().iterator().next());
+                }
+            }
+        }
+        return value;
+    }
+
+    private static final class Entry<V> {
+
+        private final String key;
+        private final V value;
+        private long lastUsed;
+
+        private Entry(String key, V value, long lastUsed) {
+            this.key = Objects.requireNonNull(key);
+            this.value = value;
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.gradle;
+
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.gradle.Utils.envVariable;
+
+/**
+ * Determines the name of the Git branch being built.
+ */
+final class GitBranchName {
+
+    private GitBranchName() {
+    }
+
+    /**
+     * Returns the branch being built, preferring the branch reported by the CI provider over the one checked out, as
+     * CI providers often check out a detached commit.
+     */
+    static String detect(CiEnvironment ciEnvironment, ProviderFactory providers, CommandExecutor executor, File projectDir, GitMetadata git) {
+        return detect(ciEnvironment, name -> envVariable(name, providers), executor, projectDir, git);
+    }
+
+    /**
+     * @param env looks up environment variables.
+     */
+    static String detect(CiEnvironment ciEnvironment, Function<String, Optional<String>> env, CommandExecutor executor, File projectDir, GitMetadata git) {
+        if (ciEnvironment.isJenkins() || ciEnvironment.isHudson()) {
+            Optional<String> branchName = env.apply("BRANCH_NAME");
+            if (branchName.isPresent()) {
+                return branchName.get();
+            }
+
+            Optional<String> gitBranch = env.apply("GIT_BRANCH");
+            if (gitBranch.isPresent()) {
+                Optional<String> localBranch = getLocalBranch(executor, projectDir, gitBranch.get(), git.getRemotes());
+                if (localBranch.isPresent()) {
+                    return localBranch.get();
+                }
+            }
+        } else if (ciEnvironment.isGitLab()) {
+            Optional<String> branch = env.apply("CI_COMMIT_REF_NAME");
+            if (branch.isPresent()) {
+                return branch.get();
+            }
+        } else if (ciEnvironment.isAzurePipelines()) {
+            Optional<String> branch = env.apply("BUILD_SOURCEBRANCH");
+            if (branch.isPresent()) {
+                return branch.get();
+            }
+        } else if (ciEnvironment.isBuildkite()) {
+            Optional<String> branch = env.apply("BUILDKITE_BRANCH");
+            if (branch.isPresent()) {
+                return branch.get();
+            }
+        } else if (ciEnvironment.isGitHubActions()) {
+            Optional<String> branch = env.apply("GITHUB_REF_NAME");
+            if (branch.isPresent()) {
+                return branch.get();
+            }
+        }
+        return git.getBranchName();
+    }
+
+    private static Optional<String> getLocalBranch(CommandExecutor executor, File projectDir, String remoteBranch, List<String> remotes) {
+        // This finds the longest matching remote name. This is because, for example, a local git clone could have
+        // two remotes named `origin` and `origin/two`. In this scenario, we would want a remote branch of
+        // `origin/two/main` to match to the `origin/two` remote, not to `origin`
+        Function<Stream<String>, Optional<String>> findLongestMatchingRemote = names -> names
+            .filter(remote -> remoteBranch.startsWith(remote + "/"))
+            .max(Comparator.comparingInt(String::length));
+
+        Optional<Stream<String>> remoteNames = remotes != null
+            ? Optional.of(remotes.stream())
+            : Optional.ofNullable(executor.execAndGetStdOut(projectDir, "git", "remote"))
+                .filter(Utils::isNotEmpty)
+                .map(output -> Arrays.stream(output.split("\\R")));
+
+        return remoteNames
+            .flatMap(findLongestMatchingRemote)
+            .map(remote -> remoteBranch.replaceFirst("^" + remote + "/", ""));
+    }
+
+}
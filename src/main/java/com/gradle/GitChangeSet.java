@@ -0,0 +1,132 @@
+package com.gradle;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The size of the changes of <code>HEAD</code> relative to its merge-base with the base branch of a pull request.
+ * <p>
+ * The changed files are first listed with <code>git diff --name-only</code>, which compares trees without diffing
+ * the contents of the files, and which is stopped as soon as it lists more than the configured maximum number of files.
+ * Only if the change is within that limit are the lines counted with <code>git diff --numstat</code>, so that the
+ * contents of at most the maximum number of files are diffed.
+ */
+final class GitChangeSet {
+
+    static final int DEFAULT_MAX_FILES = 1000;
+
+    private final int files;
+    private final Long lines;
+
+    private GitChangeSet(int files, Long lines) {
+        this.files = files;
+        this.lines = lines;
+    }
+
+    /**
+     * Counts the changes of <code>HEAD</code> relative to its merge-base with the given base branch.
+     * @param executor the executor to run git with.
+     * @param projectDir the working directory of the git processes.
+     * @param baseBranch the name of the base branch, looked up as a branch of <code>origin</code> first.
+     * @param maxFiles the number of changed files after which counting stops.
+     * @return the change set, or {@link Optional#empty()} if the merge-base cannot be determined, for example in a shallow clone.
+     */
+    static Optional<GitChangeSet> read(CommandExecutor executor, File projectDir, String baseBranch, int maxFiles) {
+        String mergeBase = executor.execAndGetStdOut(projectDir, "git", "merge-base", "HEAD", "refs/remotes/origin/" + baseBranch);
+        if (mergeBase == null) {
+            mergeBase = executor.execAndGetStdOut(projectDir, "git", "merge-base", "HEAD", baseBranch);
+        }
+        return mergeBase != null ? readSince(executor, projectDir, mergeBase, maxFiles) : Optional.empty();
+    }
+
+    /**
+     * Counts the changes of <code>HEAD</code> relative to the given commit.
+     */
+    static Optional<GitChangeSet> readSince(CommandExecutor executor, File projectDir, String baseCommit, int maxFiles) {
+        FileCounter fileCounter = new FileCounter(maxFiles);
+        CommandExecutor.Execution names = executor.executeAndStreamLinesWhile(projectDir, fileCounter, "git", "diff", "--name-only", "--no-renames", baseCommit, "HEAD");
+        if (!names.isSuccessful() && names.getOutcome() != CommandExecutor.Execution.Outcome.STOPPED) {
+            return Optional.empty();
+        }
+        if (fileCounter.limitReached) {
+            return Optional.of(new GitChangeSet(fileCounter.files, null));
+        }
+
+        LineCounter lineCounter = new LineCounter();
+        CommandExecutor.Execution diff = executor.executeAndStreamLines(projectDir, lineCounter, "git", "diff", "--numstat", "--no-renames", baseCommit, "HEAD");
+        if (!diff.isSuccessful()) {
+            return Optional.empty();
+        }
+        return Optional.of(new GitChangeSet(fileCounter.files, lineCounter.lines));
+    }
+
+    int getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of changed lines, which are not counted if the maximum number of files is reached.
+     */
+    Optional<Long> getLines() {
+        return Optional.ofNullable(lines);
+    }
+
+    /**
+     * Returns whether counting stopped at the maximum number of files, in which case the actual change is larger.
+     */
+    boolean isLimitReached() {
+        return lines == null;
+    }
+
+    private static final class FileCounter implements Predicate<String> {
+
+        private final int maxFiles;
+        private int files;
+        private boolean limitReached;
+
+        private FileCounter(int maxFiles) {
+            this.maxFiles = maxFiles;
+        }
+
+        @Override
+        public boolean test(String line) {
+            if (line.isEmpty()) {
+                return true;
+            }
+            if (files == maxFiles) {
+                // only a file beyond the maximum shows that the change is larger than counted
+                limitReached = true;
+                return false;
+            }
+            files++;
+            return true;
+        }
+
+    }
+
+    private static final class LineCounter implements Consumer<String> {
+
+        private long lines;
+
+        @Override
+        public void accept(String line) {
+            // each line consists of the added lines, the deleted lines and the path, binary files have no line counts
+            String[] columns = line.split("\t", 3);
+            if (columns.length == 3) {
+                lines += parseCount(columns[0]) + parseCount(columns[1]);
+            }
+        }
+
+        private static long parseCount(String count) {
+            try {
+                return Long.parseLong(count);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+    }
+
+}
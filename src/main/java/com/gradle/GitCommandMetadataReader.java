@@ -0,0 +1,88 @@
+package com.gradle;
+
+import com.gradle.GitMetadataReader.GitConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import static com.gradle.GitMetadataReader.SHORT_COMMIT_ID_LENGTH;
+
+/**
+ * Reads git metadata by invoking git, batching all ref lookups into a single <code>git rev-parse</code> process.
+ * <p>
+ * The remote repository URL is read from the config file of the git directory reported by git. Only if that config
+ * file cannot be parsed, or if the environment changes which config files git reads, a second git process is started
+ * to look up the URL.
+ */
+final class GitCommandMetadataReader {
+
+    // prints the git directory, the common git directory, the commit id and the abbreviated ref name of HEAD, one per line
+    static final String[] REV_PARSE_COMMAND = {"git", "rev-parse", "--git-dir", "--git-common-dir", "HEAD", "--abbrev-ref", "HEAD"};
+
+    private GitCommandMetadataReader() {
+    }
+
+    /**
+     * Reads the git metadata of the repository containing the given directory.
+     * @param executor the executor to run the git processes with.
+     * @param projectDir the working directory of the git processes.
+     * @return the git metadata, with null values for anything that could not be determined, or empty if git is not installed.
+     */
+    static Optional<GitMetadata> read(CommandExecutor executor, File projectDir) {
+        return read(executor, projectDir, false);
+    }
+
+    /**
+     * Reads the git metadata of the repository containing the given directory.
+     * @param executor the executor to run the git processes with.
+     * @param projectDir the working directory of the git processes.
+     * @param configFromGit whether to look up the remote repository URL with git instead of reading the config file,
+     * for example because <code>GIT_CONFIG_COUNT</code> or <code>GIT_CONFIG</code> is set.
+     * @return the git metadata, with null values for anything that could not be determined, or empty if git is not installed.
+     */
+    static Optional<GitMetadata> read(CommandExecutor executor, File projectDir, boolean configFromGit) {
+        CommandExecutor.Execution revParse = executor.execute(projectDir, REV_PARSE_COMMAND);
+        if (revParse.getOutcome() == CommandExecutor.Execution.Outcome.NOT_STARTED) {
+            return Optional.empty();
+        }
+        return Optional.of(parse(executor, projectDir, revParse.isSuccessful() ? revParse.getStdOut() : null, configFromGit));
+    }
+
+    /**
+     * Parses the output of {@link #REV_PARSE_COMMAND}.
+     * @param executor the executor to look up the remote repository URL with, if it is not read from the config file.
+     * @param projectDir the working directory the command was executed in, relative paths in the output are resolved against it.
+     * @param revParseOutput the standard output of the command, or null if the command failed.
+     * @param configFromGit whether to look up the remote repository URL with git instead of reading the config file.
+     */
+    static GitMetadata parse(CommandExecutor executor, File projectDir, String revParseOutput, boolean configFromGit) {
+        String[] lines = revParseOutput != null ? revParseOutput.split("\\R") : new String[0];
+        if (lines.length != 4) {
+            // no commit yet or not a git repository, the remote might still be configured
+            return new GitMetadata(readRepositoryUrlFromGit(executor, projectDir), null, null, null, null);
+        }
+
+        File gitDir = GitMetadataReader.resolve(projectDir, lines[0]);
+        File commonDir = GitMetadataReader.resolve(projectDir, lines[1]);
+        String commitId = lines[2].trim();
+        // the short id is derived from the full id, as 'git rev-parse --short' only accepts a single revision
+        String commitShortId = commitId.length() >= SHORT_COMMIT_ID_LENGTH ? commitId.substring(0, SHORT_COMMIT_ID_LENGTH) : null;
+        String branchName = lines[3].trim();
+        if (configFromGit) {
+            return new GitMetadata(readRepositoryUrlFromGit(executor, projectDir), commitId, commitShortId, branchName, null);
+        }
+
+        try {
+            GitConfig config = GitConfig.read(gitDir, commonDir);
+            return new GitMetadata(config.get("remote", "origin", "url"), commitId, commitShortId, branchName, config.getSubsections("remote"));
+        } catch (IOException | RuntimeException e) {
+            return new GitMetadata(readRepositoryUrlFromGit(executor, projectDir), commitId, commitShortId, branchName, null);
+        }
+    }
+
+    private static String readRepositoryUrlFromGit(CommandExecutor executor, File projectDir) {
+        return executor.execAndGetStdOut(projectDir, "git", "config", "--get", "remote.origin.url");
+    }
+
+}
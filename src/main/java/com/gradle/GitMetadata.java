@@ -0,0 +1,52 @@
+package com.gradle;
+
+import java.util.List;
+
+/**
+ * The git metadata captured for a build, independent of whether it was read directly from the <code>.git</code>
+ * directory or by invoking git.
+ */
+final class GitMetadata {
+
+    private final String repositoryUrl;
+    private final String commitId;
+    private final String commitShortId;
+    private final String branchName;
+    private final List<String> remotes;
+
+    /**
+     * @param repositoryUrl the value of <code>remote.origin.url</code>, or null if not configured
+     * @param commitId the full id of the <code>HEAD</code> commit, or null if there is no commit yet
+     * @param commitShortId the abbreviated id of the <code>HEAD</code> commit, or null if there is no commit yet
+     * @param branchName the abbreviated name of the <code>HEAD</code> ref, <code>HEAD</code> if detached, or null if there is no commit yet
+     * @param remotes the names of the configured remotes, or null if they have not been read
+     */
+    GitMetadata(String repositoryUrl, String commitId, String commitShortId, String branchName, List<String> remotes) {
+        this.repositoryUrl = repositoryUrl;
+        this.commitId = commitId;
+        this.commitShortId = commitShortId;
+        this.branchName = branchName;
+        this.remotes = remotes;
+    }
+
+    String getRepositoryUrl() {
+        return repositoryUrl;
+    }
+
+    String getCommitId() {
+        return commitId;
+    }
+
+    String getCommitShortId() {
+        return commitShortId;
+    }
+
+    String getBranchName() {
+        return branchName;
+    }
+
+    List<String> getRemotes() {
+        return remotes;
+    }
+
+}
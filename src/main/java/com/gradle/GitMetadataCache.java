@@ -0,0 +1,205 @@
+package com.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Caches git metadata on disk across builds and daemons.
+ * <p>
+ * Entries are keyed on the project directory and the modification time and size of the files that determine the git
+ * metadata, see {@link GitMetadataReader#stateFiles(File)}. Entries are written atomically, so that concurrent builds
+ * either see a complete entry or none at all, and the least recently used entries are evicted once the cache holds
+ * more than {@link #MAX_ENTRIES} entries.
+ */
+final class GitMetadataCache {
+
+    static final int MAX_ENTRIES = 256;
+
+    // state files modified this recently may still change without a visible change of their modification time
+    private static final long RACY_MODIFICATION_WINDOW_MILLIS = 2000;
+    private static final String ENTRY_SUFFIX = ".properties";
+
+    private final Path cacheDir;
+
+    GitMetadataCache(File cacheDir) {
+        this.cacheDir = cacheDir.toPath();
+    }
+
+    /**
+     * Returns the cached git metadata of the repository containing the given directory, reading and caching it if
+     * there is no up-to-date cache entry.
+     */
+    Optional<GitMetadata> computeIfAbsent(File projectDir, Supplier<Optional<GitMetadata>> reader) {
+        // compute the key before reading, so that a concurrent change is never cached under the new key
+        Optional<String> key = stateKey(projectDir);
+        if (!key.isPresent()) {
+            return reader.get();
+        }
+
+        Path entry = cacheDir.resolve(sha256(key.get()) + ENTRY_SUFFIX);
+        Optional<GitMetadata> cached = load(entry, key.get());
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        Optional<GitMetadata> metadata = reader.get();
+        metadata.ifPresent(m -> store(entry, key.get(), m));
+        return metadata;
+    }
+
+    /**
+     * Returns a key that changes whenever the git metadata of the repository containing the given directory may have
+     * changed, or {@link Optional#empty()} if the state files cannot be located or have been modified too recently.
+     */
+    static Optional<String> stateKey(File projectDir) {
+        return GitMetadataReader.stateFiles(projectDir).flatMap(files -> toKey(projectDir, files));
+    }
+
+    private static Optional<String> toKey(File projectDir, List<File> stateFiles) {
+        long now = System.currentTimeMillis();
+        StringBuilder key = new StringBuilder(projectDir.getAbsolutePath());
+        for (File file : stateFiles) {
+            long lastModified = file.lastModified();
+            if (now - lastModified < RACY_MODIFICATION_WINDOW_MILLIS) {
+                return Optional.empty();
+            }
+            key.append('\n').append(file.getAbsolutePath()).append(':').append(lastModified).append(':').append(file.length());
+        }
+        return Optional.of(key.toString());
+    }
+
+    private static Optional<GitMetadata> load(Path entry, String key) {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(entry)) {
+            properties.load(input);
+            // mark the entry as recently used
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        if (!key.equals(properties.getProperty("key"))) {
+            return Optional.empty();
+        }
+
+        List<String> remotes = new ArrayList<>();
+        for (int i = 0; properties.containsKey("remote." + i); i++) {
+            remotes.add(properties.getProperty("remote." + i));
+        }
+        return Optional.of(new GitMetadata(
+            properties.getProperty("repositoryUrl"),
+            properties.getProperty("commitId"),
+            properties.getProperty("commitShortId"),
+            properties.getProperty("branchName"),
+            properties.containsKey("remotes") ? remotes : null
+        ));
+    }
+
+    private void store(Path entry, String key, GitMetadata metadata) {
+        Properties properties = new Properties();
+        properties.setProperty("key", key);
+        setIfNotNull(properties, "repositoryUrl", metadata.getRepositoryUrl());
+        setIfNotNull(properties, "commitId", metadata.getCommitId());
+        setIfNotNull(properties, "commitShortId", metadata.getCommitShortId());
+        setIfNotNull(properties, "branchName", metadata.getBranchName());
+        if (metadata.getRemotes() != null) {
+            properties.setProperty("remotes", String.valueOf(metadata.getRemotes().size()));
+            for (int i = 0; i < metadata.getRemotes().size(); i++) {
+                properties.setProperty("remote." + i, metadata.getRemotes().get(i));
+            }
+        }
+
+        Path tempFile = null;
+        try {
+            Files.createDirectories(cacheDir);
+            tempFile = Files.createTempFile(cacheDir, "entry", ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, null);
+            }
+            move(tempFile, entry);
+            evictLeastRecentlyUsed();
+        } catch (IOException e) {
+            // caching is best effort
+        } finally {
+            deleteIfExists(tempFile);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void evictLeastRecentlyUsed() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir, "*" + ENTRY_SUFFIX)) {
+            stream.forEach(entries::add);
+        }
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(GitMetadataCache::lastModified));
+        entries.subList(0, entries.size() - MAX_ENTRIES).forEach(GitMetadataCache::deleteIfExists);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            // entries evicted concurrently by another build sort first
+            return 0;
+        }
+    }
+
+    private static void deleteIfExists(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // cleaned up on a later eviction
+        }
+    }
+
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,426 @@
+package com.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads git metadata directly from the <code>.git</code> directory, without forking any git processes.
+ * <p>
+ * Supports <code>.git</code> directories as well as <code>.git</code> files pointing to the actual git directory, as
+ * created for worktrees and submodules. Refs are resolved from loose ref files and from <code>packed-refs</code>. If a
+ * repository layout is encountered that cannot be parsed reliably, for example the reftable ref storage or config
+ * files with include directives, {@link Optional#empty()} is returned and the caller is expected to fall back to
+ * invoking git.
+ */
+final class GitMetadataReader {
+
+    static final int SHORT_COMMIT_ID_LENGTH = 8;
+
+    private static final String SYMBOLIC_REF_PREFIX = "ref: ";
+    private static final String GIT_DIR_PREFIX = "gitdir: ";
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+    private static final int MAX_SYMBOLIC_REF_DEPTH = 5;
+
+    private final File workTree;
+    private final File gitDir;
+    private final File commonDir;
+    private Map<String, String> packedRefs;
+
+    private GitMetadataReader(File workTree, File gitDir, File commonDir) {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+    }
+
+    /**
+     * Reads the git metadata of the repository containing the given directory.
+     * @param projectDir the directory to start searching for the <code>.git</code> directory from.
+     * @return the git metadata, or {@link Optional#empty()} if no repository was found or its layout is not supported.
+     */
+    static Optional<GitMetadata> read(File projectDir) {
+        try {
+            Optional<GitMetadataReader> reader = locate(projectDir);
+            return reader.isPresent() ? Optional.of(reader.get().read()) : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the files whose content determines the git metadata of the repository containing the given directory:
+     * <code>HEAD</code>, the loose ref it points to, <code>packed-refs</code> and the config files. Files that do not
+     * exist yet are included as well, as their creation changes the metadata.
+     * <p>
+     * The layouts that {@link #read(File)} does not support are not supported here either, as changes to them are not
+     * reflected in these files, for example commits with the reftable ref storage or edits of included config files.
+     * @param projectDir the directory to start searching for the <code>.git</code> directory from.
+     * @return the state files, or {@link Optional#empty()} if no repository was found or its layout is not supported.
+     */
+    static Optional<List<File>> stateFiles(File projectDir) {
+        try {
+            Optional<GitMetadataReader> reader = locate(projectDir);
+            return reader.isPresent() ? Optional.of(reader.get().stateFiles()) : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Locates the repository containing the given directory by searching for a <code>.git</code> directory or file.
+     * @return the reader for the repository, or {@link Optional#empty()} if no repository was found.
+     * @throws IOException if a repository was found but its layout is not supported.
+     */
+    static Optional<GitMetadataReader> locate(File projectDir) throws IOException {
+        for (File dir = projectDir.getAbsoluteFile(); dir != null; dir = dir.getParentFile()) {
+            File dotGit = new File(dir, ".git");
+            if (dotGit.isDirectory()) {
+                return Optional.of(fromGitDir(dir, dotGit));
+            } else if (dotGit.isFile()) {
+                // worktrees and submodules use a .git file that points to the actual git directory
+                String content = readFirstLine(dotGit);
+                if (!content.startsWith(GIT_DIR_PREFIX)) {
+                    throw new IOException("Unsupported .git file: " + dotGit);
+                }
+                return Optional.of(fromGitDir(dir, resolve(dir, content.substring(GIT_DIR_PREFIX.length()))));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static GitMetadataReader fromGitDir(File workTree, File gitDir) throws IOException {
+        if (!new File(gitDir, "HEAD").isFile()) {
+            throw new IOException("Not a git directory: " + gitDir);
+        }
+
+        // linked worktrees share refs and config with the main repository via the common directory
+        File commonDirFile = new File(gitDir, "commondir");
+        File commonDir = commonDirFile.isFile() ? resolve(gitDir, readFirstLine(commonDirFile)) : gitDir;
+        return new GitMetadataReader(workTree, gitDir, commonDir);
+    }
+
+    File getWorkTree() {
+        return workTree;
+    }
+
+    File getGitDir() {
+        return gitDir;
+    }
+
+    File getCommonDir() {
+        return commonDir;
+    }
+
+    private GitMetadata read() throws IOException {
+        GitConfig config = readSupportedConfig();
+
+        String head = readFirstLine(new File(gitDir, "HEAD"));
+        String commitId;
+        String branchName;
+        if (head.startsWith(SYMBOLIC_REF_PREFIX)) {
+            String refName = headBranchRef(head);
+            commitId = resolveRef(refName, 0);
+            // like 'git rev-parse --abbrev-ref HEAD', there is no branch name before the first commit
+            branchName = commitId != null ? abbreviateBranchRef(refName) : null;
+        } else if (isObjectId(head)) {
+            commitId = head;
+            branchName = "HEAD";
+        } else {
+            throw new IOException("Unsupported HEAD: " + head);
+        }
+
+        String commitShortId = commitId != null ? commitId.substring(0, SHORT_COMMIT_ID_LENGTH) : null;
+        return new GitMetadata(config.get("remote", "origin", "url"), commitId, commitShortId, branchName, config.getSubsections("remote"));
+    }
+
+    private List<File> stateFiles() throws IOException {
+        readSupportedConfig();
+
+        List<File> files = new ArrayList<>();
+        File head = new File(gitDir, "HEAD");
+        files.add(head);
+
+        String headContent = readFirstLine(head);
+        if (headContent.startsWith(SYMBOLIC_REF_PREFIX)) {
+            String refName = headBranchRef(headContent);
+            File worktreeRef = new File(gitDir, refName);
+            files.add(worktreeRef.isFile() ? worktreeRef : new File(commonDir, refName));
+        } else if (!isObjectId(headContent)) {
+            throw new IOException("Unsupported HEAD: " + headContent);
+        }
+
+        files.add(new File(commonDir, "packed-refs"));
+        files.add(new File(commonDir, "config"));
+        if (!gitDir.equals(commonDir)) {
+            files.add(new File(gitDir, "config.worktree"));
+        }
+        return files;
+    }
+
+    /**
+     * Reads the config, which also rejects include directives.
+     * @throws IOException if the config or the ref storage it configures is not supported.
+     */
+    private GitConfig readSupportedConfig() throws IOException {
+        GitConfig config = GitConfig.read(gitDir, commonDir);
+        if (config.get("extensions", null, "refStorage") != null) {
+            throw new IOException("Unsupported ref storage: " + config.get("extensions", null, "refStorage"));
+        }
+        return config;
+    }
+
+    private static String headBranchRef(String head) throws IOException {
+        String refName = head.substring(SYMBOLIC_REF_PREFIX.length()).trim();
+        if (!refName.startsWith(BRANCH_REF_PREFIX)) {
+            throw new IOException("Unsupported HEAD ref: " + refName);
+        }
+        return refName;
+    }
+
+    /**
+     * Resolves a ref to a commit id.
+     * @return the commit id, or null if the ref does not exist yet.
+     */
+    private String resolveRef(String refName, int depth) throws IOException {
+        if (depth > MAX_SYMBOLIC_REF_DEPTH) {
+            throw new IOException("Too many levels of symbolic refs: " + refName);
+        }
+
+        String looseRef = readLooseRef(refName);
+        if (looseRef == null) {
+            return readPackedRefs().get(refName);
+        } else if (looseRef.startsWith(SYMBOLIC_REF_PREFIX)) {
+            return resolveRef(looseRef.substring(SYMBOLIC_REF_PREFIX.length()).trim(), depth + 1);
+        } else if (isObjectId(looseRef)) {
+            return looseRef;
+        } else {
+            throw new IOException("Unsupported ref " + refName + ": " + looseRef);
+        }
+    }
+
+    private String readLooseRef(String refName) throws IOException {
+        // per-worktree refs live in the git directory, all other refs in the common directory
+        for (File dir : new File[]{gitDir, commonDir}) {
+            File refFile = new File(dir, refName);
+            if (refFile.isFile()) {
+                return readFirstLine(refFile);
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> readPackedRefs() throws IOException {
+        if (packedRefs != null) {
+            return packedRefs;
+        }
+
+        packedRefs = new LinkedHashMap<>();
+        File packedRefsFile = new File(commonDir, "packed-refs");
+        if (packedRefsFile.isFile()) {
+            for (String line : Files.readAllLines(packedRefsFile.toPath(), StandardCharsets.UTF_8)) {
+                // skip the header and the peeled values of annotated tags
+                if (line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    packedRefs.put(line.substring(separator + 1).trim(), line.substring(0, separator));
+                }
+            }
+        }
+        return packedRefs;
+    }
+
+    private String abbreviateBranchRef(String refName) throws IOException {
+        // like 'git rev-parse --abbrev-ref', keep the 'heads/' prefix if the short name is ambiguous
+        String shortName = refName.substring(BRANCH_REF_PREFIX.length());
+        boolean ambiguous = refExists("refs/" + shortName) || refExists("refs/tags/" + shortName);
+        return ambiguous ? "heads/" + shortName : shortName;
+    }
+
+    private boolean refExists(String refName) throws IOException {
+        return readLooseRef(refName) != null || readPackedRefs().containsKey(refName);
+    }
+
+    private static boolean isObjectId(String value) {
+        // SHA-1 or SHA-256 object ids
+        if (value.length() != 40 && value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Empty file: " + file);
+        }
+        return lines.get(0).trim();
+    }
+
+    static File resolve(File baseDir, String path) {
+        File file = new File(path.trim());
+        return file.isAbsolute() ? file : new File(baseDir, path.trim());
+    }
+
+    /**
+     * A minimal reader for a single git config file. Include directives are not evaluated, instead an
+     * {@link IOException} is thrown so that the caller can fall back to invoking git.
+     */
+    static final class GitConfig {
+
+        private final Map<String, List<String>> values;
+        private final Map<String, Set<String>> subsections;
+
+        private GitConfig(Map<String, List<String>> values, Map<String, Set<String>> subsections) {
+            this.values = values;
+            this.subsections = subsections;
+        }
+
+        /**
+         * Reads the repository config, including the worktree specific config of linked worktrees.
+         */
+        static GitConfig read(File gitDir, File commonDir) throws IOException {
+            GitConfig config = parse(new File(commonDir, "config"));
+            File worktreeConfig = new File(gitDir, "config.worktree");
+            if (!gitDir.equals(commonDir) && worktreeConfig.isFile()) {
+                config = config.merge(parse(worktreeConfig));
+            }
+            return config;
+        }
+
+        static GitConfig parse(File configFile) throws IOException {
+            Map<String, List<String>> values = new LinkedHashMap<>();
+            Map<String, Set<String>> subsections = new LinkedHashMap<>();
+            if (!configFile.isFile()) {
+                return new GitConfig(values, subsections);
+            }
+
+            String section = null;
+            List<String> lines = Files.readAllLines(configFile.toPath(), StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                while (line.endsWith("\\") && !line.endsWith("\\\\") && i + 1 < lines.size()) {
+                    line = line.substring(0, line.length() - 1) + lines.get(++i);
+                }
+
+                if (line.startsWith("[")) {
+                    int end = line.indexOf(']');
+                    if (end < 0) {
+                        throw new IOException("Unsupported section header: " + line);
+                    }
+                    section = parseSectionHeader(line.substring(1, end).trim());
+                    if (section.equals("include") || section.startsWith("includeif.")) {
+                        throw new IOException("Unsupported include directive: " + line);
+                    }
+                    int subsectionStart = section.indexOf('.');
+                    if (subsectionStart > 0) {
+                        subsections.computeIfAbsent(section.substring(0, subsectionStart), k -> new LinkedHashSet<>()).add(section.substring(subsectionStart + 1));
+                    }
+                    // a key-value pair may follow the section header on the same line
+                    line = line.substring(end + 1).trim();
+                }
+
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                    continue;
+                } else if (section == null) {
+                    throw new IOException("Key outside of a section: " + line);
+                }
+
+                int separator = line.indexOf('=');
+                String key = (separator < 0 ? line : line.substring(0, separator)).trim().toLowerCase();
+                // a key without a value is a boolean true
+                String value = separator < 0 ? "true" : parseValue(line.substring(separator + 1));
+                values.computeIfAbsent(section + "." + key, k -> new ArrayList<>()).add(value);
+            }
+            return new GitConfig(values, subsections);
+        }
+
+        /**
+         * Returns the last value of the given key, like <code>git config --get</code>.
+         */
+        String get(String section, String subsection, String key) {
+            String name = section.toLowerCase() + (subsection != null ? "." + subsection : "") + "." + key.toLowerCase();
+            List<String> keyValues = values.get(name);
+            return keyValues != null ? keyValues.get(keyValues.size() - 1) : null;
+        }
+
+        List<String> getSubsections(String section) {
+            Set<String> names = subsections.get(section.toLowerCase());
+            return names != null ? Collections.unmodifiableList(new ArrayList<>(names)) : Collections.emptyList();
+        }
+
+        private GitConfig merge(GitConfig other) {
+            Map<String, List<String>> mergedValues = new LinkedHashMap<>();
+            values.forEach((k, v) -> mergedValues.put(k, new ArrayList<>(v)));
+            other.values.forEach((k, v) -> mergedValues.computeIfAbsent(k, __ -> new ArrayList<>()).addAll(v));
+            Map<String, Set<String>> mergedSubsections = new LinkedHashMap<>();
+            subsections.forEach((k, v) -> mergedSubsections.put(k, new LinkedHashSet<>(v)));
+            other.subsections.forEach((k, v) -> mergedSubsections.computeIfAbsent(k, __ -> new LinkedHashSet<>()).addAll(v));
+            return new GitConfig(mergedValues, mergedSubsections);
+        }
+
+        private static String parseSectionHeader(String header) throws IOException {
+            int quote = header.indexOf('"');
+            if (quote < 0) {
+                // the deprecated [section.subsection] syntax has a case-insensitive subsection
+                return header.toLowerCase();
+            } else if (quote == header.length() - 1 || !header.endsWith("\"")) {
+                throw new IOException("Unsupported section header: " + header);
+            }
+
+            StringBuilder name = new StringBuilder(header.substring(0, quote).trim().toLowerCase()).append('.');
+            for (int i = quote + 1; i < header.length() - 1; i++) {
+                char c = header.charAt(i);
+                name.append(c == '\\' && i + 1 < header.length() - 1 ? header.charAt(++i) : c);
+            }
+            return name.toString();
+        }
+
+        private static String parseValue(String raw) {
+            StringBuilder value = new StringBuilder();
+            String trimmed = raw.trim();
+            boolean quoted = false;
+            int unquotedWhitespaceStart = -1;
+            for (int i = 0; i < trimmed.length(); i++) {
+                char c = trimmed.charAt(i);
+                if (c == '"') {
+                    quoted = !quoted;
+                    unquotedWhitespaceStart = -1;
+                } else if (!quoted && (c == '#' || c == ';')) {
+                    break;
+                } else if (c == '\\' && i + 1 < trimmed.length()) {
+                    char escaped = trimmed.charAt(++i);
+                    value.append(escaped == 'n' ? '\n' : escaped == 't' ? '\t' : escaped == 'b' ? '\b' : escaped);
+                    unquotedWhitespaceStart = -1;
+                } else {
+                    if (quoted || !Character.isWhitespace(c)) {
+                        unquotedWhitespaceStart = -1;
+                    } else if (unquotedWhitespaceStart < 0) {
+                        unquotedWhitespaceStart = value.length();
+                    }
+                    value.append(c);
+                }
+            }
+            // whitespace before a trailing comment is not part of the value
+            return unquotedWhitespaceStart >= 0 ? value.substring(0, unquotedWhitespaceStart) : value.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.gradle;
+
+import com.gradle.GitMetadataReader.GitConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Finds the git repositories of a build besides the one containing the root project, namely the submodules of that
+ * repository and the repositories containing included builds.
+ */
+final class GitRepositories {
+
+    private GitRepositories() {
+    }
+
+    /**
+     * Returns the additional repositories of a build, each identified by a name that is unique within the build. A
+     * submodule is named after its path relative to the root of the repository, an included build after its build
+     * name. Repositories are ordered by name, submodules first, and each repository is only returned once.
+     * @param rootDir the root directory of the build.
+     * @param includedBuilds the root directories of the included builds, by build name.
+     * @return a directory within each additional repository, by repository name.
+     */
+    static Map<String, File> find(File rootDir, Map<String, File> includedBuilds) {
+        Set<File> workTrees = new HashSet<>();
+        Optional<File> rootWorkTree = workTree(rootDir);
+        rootWorkTree.ifPresent(workTrees::add);
+
+        Map<String, File> repositories = new LinkedHashMap<>();
+        rootWorkTree.ifPresent(workTree -> findSubmodules(workTree).forEach((path, dir) -> {
+            if (workTree(dir).filter(workTrees::add).isPresent()) {
+                repositories.put(path, dir);
+            }
+        }));
+        new TreeMap<>(includedBuilds).forEach((name, dir) -> {
+            if (!repositories.containsKey(name) && workTree(dir).filter(workTrees::add).isPresent()) {
+                repositories.put(name, dir);
+            }
+        });
+        return repositories;
+    }
+
+    private static Map<String, File> findSubmodules(File workTree) {
+        Map<String, File> submodules = new TreeMap<>();
+        try {
+            GitConfig gitModules = GitConfig.parse(new File(workTree, ".gitmodules"));
+            for (String name : gitModules.getSubsections("submodule")) {
+                String path = gitModules.get("submodule", name, "path");
+                // submodules that are not checked out have no .git file
+                if (path != null && new File(new File(workTree, path), ".git").exists()) {
+                    submodules.put(path, new File(workTree, path));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // submodules are only captured if they can be found
+        }
+        return submodules;
+    }
+
+    private static Optional<File> workTree(File dir) {
+        try {
+            return GitMetadataReader.locate(dir).map(repository -> repository.getWorkTree().getAbsoluteFile());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+}
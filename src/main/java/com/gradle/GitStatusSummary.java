@@ -0,0 +1,115 @@
+package com.gradle;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A summary of the output of <code>git status --porcelain</code> whose size does not depend on the number of changes.
+ * <p>
+ * The summary is built line by line, so that the full output never needs to be held in memory. It keeps the number of
+ * changes per type, the first status lines, and a hash of all status lines. Git lists the changes ordered by path, so
+ * the same set of changes always results in the same hash.
+ */
+final class GitStatusSummary implements Consumer<String> {
+
+    static final int DEFAULT_MAX_PATHS = 20;
+
+    private static final int HASH_LENGTH = 16;
+
+    private final int maxPaths;
+    private final MessageDigest digest;
+    private final List<String> paths = new ArrayList<>();
+    private int modified;
+    private int added;
+    private int deleted;
+    private int untracked;
+
+    GitStatusSummary(int maxPaths) {
+        this.maxPaths = maxPaths;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static GitStatusSummary of(String status, int maxPaths) {
+        GitStatusSummary summary = new GitStatusSummary(maxPaths);
+        for (String line : status.split("\\R")) {
+            summary.accept(line);
+        }
+        return summary;
+    }
+
+    /**
+     * Adds a line of <code>git status --porcelain</code> output to the summary.
+     */
+    @Override
+    public void accept(String line) {
+        // each line consists of the two status characters, a space, and the path
+        if (line.length() < 4) {
+            return;
+        }
+
+        char index = line.charAt(0);
+        char workTree = line.charAt(1);
+        if (index == '?' && workTree == '?') {
+            untracked++;
+        } else if (index == 'D' || workTree == 'D') {
+            deleted++;
+        } else if (index == 'A' || workTree == 'A') {
+            added++;
+        } else {
+            modified++;
+        }
+
+        digest.update(line.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+        if (paths.size() < maxPaths) {
+            paths.add(line);
+        }
+    }
+
+    int getTotal() {
+        return modified + added + deleted + untracked;
+    }
+
+    /**
+     * Returns the number of changes per type, for example <code>2 modified, 1 added, 0 deleted, 5 untracked</code>.
+     */
+    String getCounts() {
+        return modified + " modified, " + added + " added, " + deleted + " deleted, " + untracked + " untracked";
+    }
+
+    /**
+     * Returns the first status lines, followed by the number of omitted lines if there are more changes.
+     */
+    String getPaths() {
+        StringBuilder result = new StringBuilder(String.join("\n", paths));
+        int omitted = getTotal() - paths.size();
+        if (omitted > 0) {
+            result.append(result.length() > 0 ? "\n" : "").append("... and ").append(omitted).append(" more");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the first hex digits of the SHA-256 hash of all status lines.
+     */
+    String getHash() {
+        StringBuilder hex = new StringBuilder();
+        try {
+            for (byte b : ((MessageDigest) digest.clone()).digest()) {
+                hex.append(String.format("%02x", b));
+            }
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+        return hex.substring(0, HASH_LENGTH);
+    }
+
+}
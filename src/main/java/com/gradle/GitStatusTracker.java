@@ -0,0 +1,387 @@
+package com.gradle;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tracks changes to a git working tree for as long as the daemon is alive, so that <code>git status</code> only needs
+ * to rescan the working tree if something has changed since the previous build.
+ * <p>
+ * The working tree is watched with a {@link WatchService}, skipping the <code>.git</code> directory and everything
+ * ignored by git. Changes to the index, to <code>HEAD</code>, and to the exclude files outside of the working tree are
+ * detected by comparing them with their state at the last scan. Whenever the watch service cannot be set up, overflows,
+ * or stops working, the tracker is discarded and the next build falls back to a full scan.
+ * <p>
+ * Events are delivered asynchronously, so a file saved just before the build may not have been reported yet. Before
+ * the last status is reused, a cookie file is created in the git directory and the events are processed until the
+ * event of the cookie has arrived, which the watch service delivers after the events of all earlier changes.
+ */
+final class GitStatusTracker {
+
+    private static final Logger logger = Logging.getLogger(GitStatusTracker.class);
+
+    // trackers that are not used for this long are closed, so that they do not outlive a changed plugin classpath
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long COOKIE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String IGNORED_PREFIX = "!! ";
+
+    private static final Map<Path, GitStatusTracker> trackers = new ConcurrentHashMap<>();
+    private static final Set<Path> unsupportedWorkTrees = ConcurrentHashMap.newKeySet();
+
+    private final Path workTree;
+    private final Path gitDir;
+    private final Path commonDir;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Set<Path> ignoredPaths = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final String cookiePrefix = "ccud-status-cookie-" + UUID.randomUUID() + "-";
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    // guarded by this
+    private long lastCookie;
+    private long processedCookie;
+
+    private String lastStatus;
+    private String lastHeadCommitId;
+    private String lastState;
+    private Path excludesFile;
+
+    private GitStatusTracker(Path workTree, Path gitDir, Path commonDir, WatchService watchService) {
+        this.workTree = workTree;
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.watchService = watchService;
+    }
+
+    /**
+     * Returns the output of <code>git status --porcelain</code> for the repository containing the given directory,
+     * rescanning the working tree only if it has changed since the previous invocation.
+     * @param executor the executor to run git with.
+     * @param projectDir the directory to find the repository from.
+     * @param headCommitId the current commit id of <code>HEAD</code>.
+     * @return the status, or null if the working tree cannot be tracked or git failed, in which case the caller runs
+     * <code>git status</code> itself.
+     */
+    static String getStatus(CommandExecutor executor, File projectDir, String headCommitId) {
+        Optional<GitMetadataReader> repository;
+        try {
+            repository = GitMetadataReader.locate(projectDir);
+        } catch (IOException e) {
+            repository = Optional.empty();
+        }
+        if (!repository.isPresent()) {
+            return null;
+        }
+
+        Path workTree = repository.get().getWorkTree().toPath();
+        Path gitDir = repository.get().getGitDir().toPath();
+        Path commonDir = repository.get().getCommonDir().toPath();
+        GitStatusTracker tracker = unsupportedWorkTrees.contains(workTree) ? null : trackers.computeIfAbsent(workTree, __ -> create(workTree, gitDir, commonDir));
+        return tracker != null ? tracker.getStatus(executor, headCommitId) : null;
+    }
+
+    private static GitStatusTracker create(Path workTree, Path gitDir, Path commonDir) {
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            // a polling watch service would rescan the working tree periodically, which is more expensive than git status
+            if (watchService.getClass().getSimpleName().contains("Polling")) {
+                watchService.close();
+                unsupportedWorkTrees.add(workTree);
+                return null;
+            }
+
+            GitStatusTracker tracker = new GitStatusTracker(workTree, gitDir, commonDir, watchService);
+            Thread thread = new Thread(tracker::processEvents, "CCUD git status tracker");
+            thread.setDaemon(true);
+            thread.start();
+            return tracker;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to track changes to {}", workTree, e);
+            unsupportedWorkTrees.add(workTree);
+            return null;
+        }
+    }
+
+    private synchronized String getStatus(CommandExecutor executor, String headCommitId) {
+        lastUsed = System.currentTimeMillis();
+        boolean unchanged = lastStatus != null
+            && Objects.equals(headCommitId, lastHeadCommitId)
+            && Objects.equals(readState(), lastState)
+            && awaitPendingEvents()
+            && !changed.get();
+        if (unchanged) {
+            return lastStatus;
+        }
+
+        // reset before scanning, so that changes made during the scan are picked up by the next build
+        boolean firstScan = watchedDirs.isEmpty();
+        changed.set(false);
+        CommandExecutor.Execution execution = executor.execute(workTree.toFile(), "git", "status", "--porcelain", "--ignored");
+        if (!execution.isSuccessful()) {
+            changed.set(true);
+            lastStatus = null;
+            return null;
+        }
+        if (execution.isTruncated()) {
+            // the ignored paths are incomplete, so the working tree cannot be watched without them
+            logger.debug("Too many paths to track changes to {}", workTree);
+            unsupportedWorkTrees.add(workTree);
+            discard();
+            return null;
+        }
+
+        Set<Path> previouslyIgnoredPaths = new HashSet<>(ignoredPaths);
+        StringBuilder status = new StringBuilder();
+        ignoredPaths.clear();
+        for (String line : execution.getStdOut().split("\\R")) {
+            if (line.startsWith(IGNORED_PREFIX)) {
+                ignoredPaths.add(workTree.resolve(unquote(line.substring(IGNORED_PREFIX.length()))).normalize());
+            } else if (!line.isEmpty()) {
+                status.append(status.length() > 0 ? "\n" : "").append(line);
+            }
+        }
+        lastStatus = status.toString();
+        lastHeadCommitId = headCommitId;
+        excludesFile = readExcludesFile(executor);
+        lastState = readState();
+
+        if (firstScan) {
+            // the working tree is only watched once the ignored paths are known, changes made in between cause a rescan
+            register(workTree);
+            registerCookies();
+            changed.set(true);
+        } else {
+            unregisterIgnored();
+            // directories that are no longer ignored were not watched, changes made to them before now cause a rescan
+            previouslyIgnoredPaths.stream()
+                .filter(path -> !isIgnored(path) && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                .forEach(path -> {
+                    register(path);
+                    changed.set(true);
+                });
+        }
+        return lastStatus;
+    }
+
+    private void processEvents() {
+        try {
+            while (!closed.get()) {
+                if (System.currentTimeMillis() - lastUsed > IDLE_TIMEOUT_MILLIS) {
+                    discard();
+                    return;
+                }
+
+                WatchKey key = watchService.poll(1, TimeUnit.MINUTES);
+                synchronized (this) {
+                    // a key signalled again while being processed is queued behind later keys, so all queued keys are
+                    // processed before a cookie is acknowledged
+                    for (; key != null && !closed.get(); key = watchService.poll()) {
+                        process(key);
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            discard();
+        } catch (RuntimeException e) {
+            logger.debug("Stopped tracking changes to {}", workTree, e);
+            discard();
+        }
+    }
+
+    private void process(WatchKey key) {
+        Path dir = watchedDirs.get(key);
+        if (dir == null) {
+            // the directory has been unregistered since it became ignored
+            key.cancel();
+            return;
+        }
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, so nothing is known about the state of the working tree anymore
+                discard();
+                return;
+            }
+
+            Path path = dir.resolve((Path) event.context());
+            if (dir.equals(gitDir)) {
+                // the git directory is only watched for cookies, changes to the index and HEAD are detected separately
+                String name = path.getFileName().toString();
+                if (name.startsWith(cookiePrefix)) {
+                    processedCookie = Math.max(processedCookie, Long.parseLong(name.substring(cookiePrefix.length())));
+                }
+                continue;
+            }
+            if (isIgnored(path)) {
+                continue;
+            }
+            changed.set(true);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                register(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    /**
+     * Waits until the events of all changes made before this call have been processed.
+     * @return whether the events have been processed in time.
+     */
+    private boolean awaitPendingEvents() {
+        long cookie = ++lastCookie;
+        Path cookieFile = gitDir.resolve(cookiePrefix + cookie);
+        try {
+            Files.createFile(cookieFile);
+            long deadline = System.nanoTime() + COOKIE_TIMEOUT_NANOS;
+            long remaining = COOKIE_TIMEOUT_NANOS;
+            while (processedCookie < cookie && !closed.get() && remaining > 0) {
+                // releases the lock, so that the events can be processed meanwhile
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            return processedCookie >= cookie;
+        } catch (IOException e) {
+            logger.debug("Unable to create {}", cookieFile, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(cookieFile);
+            } catch (IOException ignored) {
+                // a leftover cookie is harmless, it is not part of the working tree
+            }
+        }
+    }
+
+    private void registerCookies() {
+        try {
+            WatchKey key = gitDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            watchedDirs.put(key, gitDir);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Unable to track changes to {}", workTree, e);
+            unsupportedWorkTrees.add(workTree);
+            discard();
+        }
+    }
+
+    private void register(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+                    if (path.equals(gitDir) || path.getFileName() != null && path.getFileName().toString().equals(".git") || isIgnored(path)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirs.put(key, path);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // deleted while walking, which is reported as an event
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            // for example, the limit of watches per user has been reached
+            logger.debug("Unable to track changes to {}", workTree, e);
+            unsupportedWorkTrees.add(workTree);
+            discard();
+        }
+    }
+
+    private void unregisterIgnored() {
+        watchedDirs.entrySet().removeIf(entry -> {
+            if (isIgnored(entry.getValue())) {
+                entry.getKey().cancel();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private boolean isIgnored(Path path) {
+        for (Path p = path; p != null && p.startsWith(workTree) && !p.equals(workTree); p = p.getParent()) {
+            if (ignoredPaths.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String readState() {
+        return readState(gitDir.resolve("index")) + "," + readState(commonDir.resolve("info").resolve("exclude")) + "," + readState(excludesFile);
+    }
+
+    private static String readState(Path file) {
+        if (file == null) {
+            return "";
+        }
+        File f = file.toFile();
+        return f.lastModified() + ":" + f.length();
+    }
+
+    private Path readExcludesFile(CommandExecutor executor) {
+        String configured = executor.execAndGetStdOut(workTree.toFile(), "git", "config", "--path", "--get", "core.excludesFile");
+        if (configured != null && !configured.isEmpty()) {
+            return workTree.resolve(configured);
+        }
+
+        // the default location, which git reads if core.excludesFile is not set
+        String configHome = System.getenv("XDG_CONFIG_HOME");
+        Path configDir = configHome != null && !configHome.isEmpty() ? Paths.get(configHome) : Paths.get(System.getProperty("user.home"), ".config");
+        return configDir.resolve("git").resolve("ignore");
+    }
+
+    private void discard() {
+        changed.set(true);
+        if (closed.compareAndSet(false, true)) {
+            trackers.remove(workTree, this);
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static String unquote(String path) {
+        // git quotes paths containing special characters, the trailing slash marks directories
+        String unquoted = path.startsWith("\"") && path.endsWith("\"") ? path.substring(1, path.length() - 1) : path;
+        return unquoted.endsWith("/") ? unquoted.substring(0, unquoted.length() - 1) : unquoted;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.gradle;
+
+import org.gradle.api.provider.Provider;
+import org.gradle.util.GradleVersion;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The capabilities of the Gradle version the plugin runs with.
+ * <p>
+ * The plugin classes are loaded by a class loader specific to a Gradle version, so the capabilities are determined
+ * once, when this class is initialized, instead of parsing and comparing versions on every check.
+ */
+final class GradleCompatibility {
+
+    static final boolean GRADLE_4_0 = isCurrentNewerThan("4.0");
+    static final boolean GRADLE_4_3 = isCurrentNewerThan("4.3");
+    static final boolean GRADLE_5_0 = isCurrentNewerThan("5.0");
+    static final boolean GRADLE_5_6 = isCurrentNewerThan("5.6");
+    static final boolean GRADLE_6_0 = isCurrentNewerThan("6.0");
+    static final boolean GRADLE_6_1 = isCurrentNewerThan("6.1");
+    static final boolean GRADLE_6_2 = isCurrentNewerThan("6.2");
+    static final boolean GRADLE_6_5 = isCurrentNewerThan("6.5");
+    static final boolean GRADLE_7_4 = isCurrentNewerThan("7.4");
+    static final boolean GRADLE_9_0 = isCurrentNewerThan("9.0");
+
+    /**
+     * Whether environment variables and system properties read at configuration time must be obtained through
+     * providers marked with <code>forUseAtConfigurationTime</code> to be tracked as configuration cache inputs. Later
+     * Gradle versions track direct reads.
+     */
+    static final boolean REQUIRES_CONFIGURATION_TIME_PROVIDERS = GRADLE_6_5 && !GRADLE_7_4;
+
+    // only resolved where needed, the method was removed in Gradle 9
+    private static final MethodHandle FOR_USE_AT_CONFIGURATION_TIME = REQUIRES_CONFIGURATION_TIME_PROVIDERS ? findForUseAtConfigurationTime() : null;
+
+    private GradleCompatibility() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Provider<T> forUseAtConfigurationTime(Provider<T> provider) {
+        if (FOR_USE_AT_CONFIGURATION_TIME == null) {
+            return provider;
+        }
+        try {
+            return (Provider<T>) FOR_USE_AT_CONFIGURATION_TIME.invoke(provider);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to invoke forUseAtConfigurationTime", e);
+        }
+    }
+
+    private static MethodHandle findForUseAtConfigurationTime() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Provider.class, "forUseAtConfigurationTime", MethodType.methodType(Provider.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("Failed to look up forUseAtConfigurationTime", e);
+        }
+    }
+
+    private static boolean isCurrentNewerThan(String version) {
+        return GradleVersion.current().compareTo(GradleVersion.version(version)) >= 0;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.gradle;
+
+import java.util.Arrays;
+
+/**
+ * Operations with a faster implementation on newer Java versions.
+ * <p>
+ * This is the Java 8 implementation. The plugin JAR is a multi-release JAR that replaces this class with the
+ * implementation in <code>src/main/java9</code> when running on Java 9 or newer, both implementations must provide
+ * the same methods.
+ */
+final class JavaPlatform {
+
+    private JavaPlatform() {
+    }
+
+    /**
+     * Returns whether a method whose name contains the given string is on the stack of the current thread.
+     */
+    static boolean isOnStack(String methodName) {
+        return Arrays.stream(Thread.currentThread().getStackTrace())
+            .map(StackTraceElement::getMethodName)
+            .anyMatch(s -> s.contains(methodName));
+    }
+
+    /**
+     * Forcibly destroys the given process.
+     */
+    static void destroyForcibly(Process process) {
+        process.destroyForcibly();
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildResultAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.gradle.api.Action;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.RuntimeMXBean;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Captures the garbage collection time, peak heap usage and JIT compilation time of the daemon during the build, to
+ * make an undersized heap visible.
+ * <p>
+ * The MXBeans are looked up once per class loader. The counters are read when the build is configured and when it has
+ * finished. When the configuration cache is reused, the counters read at configuration time belong to an earlier build,
+ * and the build is measured from the end of the previous build in the same daemon instead.
+ */
+final class JvmTelemetry {
+
+    static final String ENABLED = "ccud.jvm.telemetry.enabled";
+    // the share of the build time spent in garbage collection above which the build is tagged
+    static final String GC_PRESSURE_THRESHOLD = "ccud.jvm.gcPressureThreshold";
+
+    static final double DEFAULT_GC_PRESSURE_THRESHOLD = 0.1;
+
+    static final String GC_PRESSURE_TAG = "GC pressure";
+
+    // the counters at the end of the last build of this daemon
+    private static final AtomicReference<Snapshot> lastBuildEnd = new AtomicReference<>();
+
+    private final double gcPressureThreshold;
+
+    JvmTelemetry(double gcPressureThreshold) {
+        this.gcPressureThreshold = gcPressureThreshold;
+    }
+
+    static Optional<JvmTelemetry> fromSettings(ProviderFactory providers) {
+        if (!Overrides.booleanSysPropertyOrEnvVariable(ENABLED, providers).orElse(false)) {
+            return Optional.empty();
+        }
+        return Optional.of(new JvmTelemetry(Overrides.sysPropertyOrEnvVariable(GC_PRESSURE_THRESHOLD, providers).map(Double::parseDouble).orElse(DEFAULT_GC_PRESSURE_THRESHOLD)));
+    }
+
+    /**
+     * Reads the counters at the start of the build, and returns an action that publishes how they changed by its end.
+     */
+    Action<BuildResultAdapter> captureAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits) {
+        Snapshot start = Snapshot.take();
+        MXBeans.resetPeakHeapUsage();
+        return new CaptureJvmTelemetryAction(develocity, limits, gcPressureThreshold, start);
+    }
+
+    /**
+     * Adds the values describing the JVM between the two snapshots, and tags the build if it spent more than the
+     * threshold share of its time in garbage collection.
+     */
+    void publish(Snapshot start, Snapshot end, BuildScanBuffer buildScan) {
+        long wallMillis = end.wallMillis - start.wallMillis;
+        long gcCount = end.gcCount - start.gcCount;
+        long gcMillis = end.gcMillis - start.gcMillis;
+        double gcShare = wallMillis > 0 ? (double) gcMillis / wallMillis : 0;
+
+        buildScan.value("JVM GC", String.format(Locale.ROOT, "%d collections, %s (%.0f%% of %s)", gcCount, formatMillis(gcMillis), gcShare * 100, formatMillis(wallMillis)));
+        if (!end.gcAlgorithm.isEmpty()) {
+            buildScan.value("JVM GC algorithm", end.gcAlgorithm);
+        }
+        if (end.maxHeapBytes > 0) {
+            buildScan.value("JVM max heap", formatBytes(end.maxHeapBytes));
+            buildScan.value("JVM peak heap", String.format(Locale.ROOT, "%.0f%% of max heap (%s)", 100.0 * end.peakHeapBytes / end.maxHeapBytes, formatBytes(end.peakHeapBytes)));
+        }
+        if (end.compilationMillis >= 0 && start.compilationMillis >= 0) {
+            buildScan.value("JVM JIT compilation", end.compiler + ", " + formatMillis(end.compilationMillis - start.compilationMillis) + " during the build");
+        }
+        if (gcShare > gcPressureThreshold) {
+            buildScan.tag(GC_PRESSURE_TAG);
+        }
+    }
+
+    /**
+     * Returns the snapshot to measure the build from, given the one taken when it was configured.
+     */
+    static Snapshot buildStart(Snapshot configured, Snapshot lastBuildEnd) {
+        boolean configuredInThisJvm = configured.jvmId.equals(MXBeans.JVM_ID);
+        if (configuredInThisJvm && (lastBuildEnd == null || configured.wallMillis >= lastBuildEnd.wallMillis)) {
+            return configured;
+        }
+        // the configuration cache has been reused
+        return lastBuildEnd != null ? lastBuildEnd : Snapshot.jvmStart();
+    }
+
+    private static String formatMillis(long millis) {
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000.0);
+    }
+
+    private static String formatBytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f GiB", bytes / (1024.0 * 1024.0 * 1024.0));
+    }
+
+    /**
+     * The MXBeans of the JVM, looked up when first used.
+     */
+    private static final class MXBeans {
+
+        private static final List<GarbageCollectorMXBean> GARBAGE_COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+        private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+        private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+        // null if the JVM has no JIT compiler
+        private static final CompilationMXBean COMPILATION = ManagementFactory.getCompilationMXBean();
+        private static final RuntimeMXBean RUNTIME = ManagementFactory.getRuntimeMXBean();
+
+        private static final String JVM_ID = RUNTIME.getName() + "@" + RUNTIME.getStartTime();
+        private static final String GC_ALGORITHM = GARBAGE_COLLECTORS.stream().map(GarbageCollectorMXBean::getName).collect(Collectors.joining(", "));
+
+        private static void resetPeakHeapUsage() {
+            HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+    }
+
+    static final class Snapshot {
+
+        final String jvmId;
+        final long wallMillis;
+        final long gcCount;
+        final long gcMillis;
+        // -1 if not supported by the JVM
+        final long compilationMillis;
+        final String compiler;
+        final String gcAlgorithm;
+        final long peakHeapBytes;
+        final long maxHeapBytes;
+
+        Snapshot(String jvmId, long wallMillis, long gcCount, long gcMillis, long compilationMillis, String compiler, String gcAlgorithm, long peakHeapBytes, long maxHeapBytes) {
+            this.jvmId = jvmId;
+            this.wallMillis = wallMillis;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+            this.compilationMillis = compilationMillis;
+            this.compiler = compiler;
+            this.gcAlgorithm = gcAlgorithm;
+            this.peakHeapBytes = peakHeapBytes;
+            this.maxHeapBytes = maxHeapBytes;
+        }
+
+        static Snapshot take() {
+            long gcCount = 0;
+            long gcMillis = 0;
+            for (GarbageCollectorMXBean collector : MXBeans.GARBAGE_COLLECTORS) {
+                // -1 if not supported by the collector
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcMillis += Math.max(0, collector.getCollectionTime());
+            }
+            // the pools may peak at different times, so their sum is an upper bound of the peak of the heap
+            long peakHeapBytes = 0;
+            for (MemoryPoolMXBean pool : MXBeans.HEAP_POOLS) {
+                peakHeapBytes += pool.getPeakUsage().getUsed();
+            }
+            long maxHeapBytes = MXBeans.MEMORY.getHeapMemoryUsage().getMax();
+            CompilationMXBean compilation = MXBeans.COMPILATION;
+            boolean compilationTimeSupported = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+            return new Snapshot(
+                MXBeans.JVM_ID,
+                System.currentTimeMillis(),
+                gcCount,
+                gcMillis,
+                compilationTimeSupported ? compilation.getTotalCompilationTime() : -1,
+                compilation != null ? compilation.getName() : "",
+                MXBeans.GC_ALGORITHM,
+                Math.min(peakHeapBytes, maxHeapBytes > 0 ? maxHeapBytes : Long.MAX_VALUE),
+                maxHeapBytes > 0 ? maxHeapBytes : Runtime.getRuntime().maxMemory()
+            );
+        }
+
+        static Snapshot jvmStart() {
+            return new Snapshot(MXBeans.JVM_ID, MXBeans.RUNTIME.getStartTime(), 0, 0, 0, "", "", 0, 0);
+        }
+
+    }
+
+    private static final class CaptureJvmTelemetryAction implements Action<BuildResultAdapter> {
+
+        private final DevelocityAdapter develocity;
+        private final BuildScanBuffer.Limits limits;
+        private final double gcPressureThreshold;
+        private final Snapshot configured;
+
+        private CaptureJvmTelemetryAction(DevelocityAdapter develocity, BuildScanBuffer.Limits limits, double gcPressureThreshold, Snapshot configured) {
+            this.develocity = develocity;
+            this.limits = limits;
+            this.gcPressureThreshold = gcPressureThreshold;
+            this.configured = configured;
+        }
+
+        @Override
+        public void execute(BuildResultAdapter buildResult) {
+            Snapshot end = Snapshot.take();
+            MXBeans.resetPeakHeapUsage();
+            Snapshot start = buildStart(configured, lastBuildEnd.getAndSet(end));
+
+            BuildScanBuffer buildScan = new BuildScanBuffer(develocity, limits);
+            new JvmTelemetry(gcPressureThreshold).publish(start, end, buildScan);
+            buildScan.flush();
+        }
+
+    }
+
+}
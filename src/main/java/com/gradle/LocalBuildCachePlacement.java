@@ -0,0 +1,256 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.LocalBuildCacheAdapter;
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Places the local build cache in the fastest of a list of candidate directories, for example <code>/dev/shm</code> or
+ * a local scratch disk on CI agents whose Gradle user home is on a slow network disk.
+ * <p>
+ * A candidate is usable if it can be created, is writable and has enough free space. Memory backed filesystems are
+ * preferred over local ones, which are preferred over network filesystems. If the probe is enabled, the candidates are
+ * instead ranked by the time it takes to write, sync and read a small file. If no candidate is usable, the local build
+ * cache stays where it is.
+ */
+final class LocalBuildCachePlacement {
+
+    private static final Logger logger = Logging.getLogger(LocalBuildCachePlacement.class);
+
+    // comma-separated list of directories the local build cache can be placed in
+    static final String CANDIDATES = "ccud.localCache.candidates";
+
+    static final String PROBE_ENABLED = "ccud.localCache.probe.enabled";
+
+    static final String MIN_FREE_SPACE_MB = "ccud.localCache.minFreeSpaceMb";
+
+    static final long DEFAULT_MIN_FREE_SPACE_MB = 1024;
+
+    static final String CUSTOM_VALUE_NAME = "Local build cache placement";
+
+    private static final int PROBE_SIZE = 1024 * 1024;
+    private static final String PROBE_FILE_NAME = ".ccud-probe";
+
+    private static final Set<String> MEMORY_FILESYSTEMS = new HashSet<>(Arrays.asList("tmpfs", "ramfs"));
+    private static final Set<String> NETWORK_FILESYSTEMS = new HashSet<>(Arrays.asList(
+        "nfs", "nfs4", "cifs", "smb", "smb3", "smbfs", "9p", "ceph", "glusterfs", "fuse.sshfs", "fuse.glusterfs", "afs", "lustre"
+    ));
+
+    private final List<Path> candidates;
+    private final boolean probe;
+    private final long minFreeSpaceBytes;
+    private final MountTable mounts;
+
+    LocalBuildCachePlacement(List<Path> candidates, boolean probe, long minFreeSpaceBytes, MountTable mounts) {
+        this.candidates = candidates;
+        this.probe = probe;
+        this.minFreeSpaceBytes = minFreeSpaceBytes;
+        this.mounts = mounts;
+    }
+
+    static Optional<LocalBuildCachePlacement> fromSettings(ProviderFactory providers) {
+        return Overrides.sysPropertyOrEnvVariable(CANDIDATES, providers).map(candidates -> new LocalBuildCachePlacement(
+            Arrays.stream(candidates.split(",")).map(String::trim).filter(Utils::isNotEmpty).map(Paths::get).collect(Collectors.toList()),
+            Overrides.booleanSysPropertyOrEnvVariable(PROBE_ENABLED, providers).orElse(false),
+            Overrides.sysPropertyOrEnvVariable(MIN_FREE_SPACE_MB, providers).map(Long::parseLong).orElse(DEFAULT_MIN_FREE_SPACE_MB) * 1024 * 1024,
+            MountTable.read()
+        ));
+    }
+
+    /**
+     * Points the local build cache to the fastest usable candidate, unless its directory has been configured
+     * explicitly, and records the choice in the build scan.
+     */
+    void configure(LocalBuildCacheAdapter local, BuildScanAdapter buildScan) {
+        if (local.getDirectory() != null) {
+            logger.debug("Local build cache directory has been configured explicitly, not placing it in any of {}", candidates);
+            return;
+        }
+
+        Optional<Candidate> selected = select();
+        if (selected.isPresent()) {
+            local.setDirectory(selected.get().directory.toFile());
+            buildScan.value(CUSTOM_VALUE_NAME, selected.get().toString());
+        } else {
+            logger.info("None of the local build cache candidates {} is usable, keeping the default directory", candidates);
+            buildScan.value(CUSTOM_VALUE_NAME, "default");
+        }
+    }
+
+    Optional<Candidate> select() {
+        List<Candidate> usable = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            inspect(candidates.get(i), i).ifPresent(usable::add);
+        }
+
+        Comparator<Candidate> fastestFirst = probe
+            ? Comparator.comparingLong((Candidate c) -> c.probeNanos)
+            : Comparator.comparingInt((Candidate c) -> speedClass(c.filesystemType));
+        return usable.stream().min(fastestFirst.thenComparingInt(c -> c.order));
+    }
+
+    private Optional<Candidate> inspect(Path candidate, int order) {
+        try {
+            Path directory = Files.createDirectories(candidate).toRealPath();
+            if (!Files.isWritable(directory)) {
+                logger.debug("Local build cache candidate {} is not writable", candidate);
+                return Optional.empty();
+            }
+
+            FileStore store = Files.getFileStore(directory);
+            long usableSpace = store.getUsableSpace();
+            if (usableSpace < minFreeSpaceBytes) {
+                logger.debug("Local build cache candidate {} has only {} bytes of free space", candidate, usableSpace);
+                return Optional.empty();
+            }
+
+            String filesystemType = mounts.typeOf(directory).orElse(store.type());
+            long probeNanos = probe ? probe(directory) : 0;
+            return Optional.of(new Candidate(directory, filesystemType, probeNanos, order));
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Local build cache candidate {} is not usable", candidate, e);
+            return Optional.empty();
+        }
+    }
+
+    private static long probe(Path directory) throws IOException {
+        Path file = directory.resolve(PROBE_FILE_NAME);
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE);
+        long start = System.nanoTime();
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            buffer.clear();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read the whole file back
+                }
+            }
+            return System.nanoTime() - start;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int speedClass(String filesystemType) {
+        if (MEMORY_FILESYSTEMS.contains(filesystemType)) {
+            return 0;
+        }
+        return NETWORK_FILESYSTEMS.contains(filesystemType) ? 2 : 1;
+    }
+
+    static final class Candidate {
+
+        final Path directory;
+        final String filesystemType;
+        final long probeNanos;
+        final int order;
+
+        private Candidate(Path directory, String filesystemType, long probeNanos, int order) {
+            this.directory = directory;
+            this.filesystemType = filesystemType;
+            this.probeNanos = probeNanos;
+            this.order = order;
+        }
+
+        @Override
+        public String toString() {
+            return directory + " (" + filesystemType + ")";
+        }
+
+    }
+
+    /**
+     * The filesystem types of the mount points listed in <code>/proc/mounts</code>, empty on systems without it.
+     */
+    static final class MountTable {
+
+        private static final Path PROC_MOUNTS = Paths.get("/proc/mounts");
+
+        // mount point and filesystem type, longest mount point first
+        private final List<String[]> mounts;
+
+        private MountTable(List<String[]> mounts) {
+            this.mounts = mounts;
+        }
+
+        static MountTable read() {
+            try {
+                return Files.isReadable(PROC_MOUNTS) ? parse(Files.readAllLines(PROC_MOUNTS, StandardCharsets.UTF_8)) : parse(Collections.emptyList());
+            } catch (IOException e) {
+                logger.debug("Unable to read {}", PROC_MOUNTS, e);
+                return parse(Collections.emptyList());
+            }
+        }
+
+        static MountTable parse(List<String> lines) {
+            List<String[]> mounts = new ArrayList<>();
+            for (String line : lines) {
+                String[] fields = line.split(" ");
+                if (fields.length >= 3) {
+                    mounts.add(new String[]{unescape(fields[1]), fields[2]});
+                }
+            }
+            mounts.sort(Comparator.comparingInt((String[] m) -> m[0].length()).reversed());
+            return new MountTable(mounts);
+        }
+
+        Optional<String> typeOf(Path path) {
+            return mounts.stream()
+                .filter(m -> path.startsWith(Paths.get(m[0])))
+                .map(m -> m[1])
+                .findFirst();
+        }
+
+        // spaces, tabs, newlines and backslashes in mount points are escaped as octal numbers, e.g. \040
+        private static String unescape(String field) {
+            StringBuilder result = new StringBuilder(field.length());
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c == '\\' && i + 3 < field.length() && isOctal(field, i + 1)) {
+                    result.append((char) Integer.parseInt(field.substring(i + 1, i + 4), 8));
+                    i += 3;
+                } else {
+                    result.append(c);
+                }
+            }
+            return result.toString();
+        }
+
+        private static boolean isOctal(String field, int start) {
+            for (int i = start; i < start + 3; i++) {
+                if (field.charAt(i) < '0' || field.charAt(i) > '7') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.LocalBuildCacheAdapter;
+import com.gradle.develocity.agent.gradle.adapters.BuildResultAdapter;
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds the size and age of the entries of the local build cache, evicting the least recently used entries first.
+ * <p>
+ * As of Gradle 9.0, the retention of the local build cache can only be changed in an init script. Pruning runs on a low
+ * priority background thread after the build, at most once per {@link #PRUNE_INTERVAL}, and holds a lock in the cache
+ * directory so that only one daemon prunes the cache at a time. The result of the last pruning is recorded in the build
+ * scan of the next build.
+ */
+final class LocalBuildCachePruner {
+
+    private static final Logger logger = Logging.getLogger(LocalBuildCachePruner.class);
+
+    static final String MAX_SIZE_MB = "ccud.localCache.prune.maxSizeMb";
+    static final String MAX_AGE = "ccud.localCache.prune.maxAge";
+
+    static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    static final String CUSTOM_VALUE_NAME = "Local build cache pruning";
+
+    private static final String LOCK_FILE_NAME = ".ccud-prune.lock";
+    private static final String STATE_FILE_NAME = ".ccud-prune.properties";
+    // cache entries are named after their hexadecimal cache key, other files belong to Gradle
+    private static final int MIN_ENTRY_NAME_LENGTH = 32;
+
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final Duration maxAge;
+    private final LongSupplier clock;
+
+    /**
+     * @param maxSizeBytes the maximum total size of the entries, or a negative value for no bound.
+     * @param maxAge the maximum time since an entry has been used, or null for no bound.
+     */
+    LocalBuildCachePruner(File directory, long maxSizeBytes, Duration maxAge, LongSupplier clock) {
+        this.directory = directory.toPath();
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxAge = maxAge;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers pruning of the local build cache at the end of the build if a maximum size or age has been configured,
+     * and records the result of the previous pruning.
+     */
+    static void configure(LocalBuildCacheAdapter local, BuildScanAdapter buildScan, ProviderFactory providers, File rootDir, File gradleUserHome) {
+        Optional<Long> maxSizeMb = Overrides.sysPropertyOrEnvVariable(MAX_SIZE_MB, providers).map(Long::parseLong);
+        Optional<Duration> maxAge = Overrides.durationSysPropertyOrEnvVariable(MAX_AGE, providers);
+        if (!maxSizeMb.isPresent() && !maxAge.isPresent() || !local.isEnabled()) {
+            return;
+        }
+
+        File directory = resolveDirectory(local.getDirectory(), rootDir, gradleUserHome);
+        LocalBuildCachePruner pruner = new LocalBuildCachePruner(directory, maxSizeMb.map(mb -> mb * 1024 * 1024).orElse(-1L), maxAge.orElse(null), System::currentTimeMillis);
+        pruner.lastResult().ifPresent(result -> buildScan.value(CUSTOM_VALUE_NAME, result.toString()));
+        buildScan.buildFinished(new PruneAction(directory, pruner.maxSizeBytes, pruner.maxAge));
+    }
+
+    private static File resolveDirectory(Object directory, File rootDir, File gradleUserHome) {
+        if (directory == null) {
+            return new File(gradleUserHome, "caches/build-cache-1");
+        }
+        File file = directory instanceof File ? (File) directory : directory instanceof Path ? ((Path) directory).toFile() : new File(directory.toString());
+        return file.isAbsolute() ? file : new File(rootDir, file.getPath());
+    }
+
+    /**
+     * Prunes the cache unless it has been pruned recently or is being pruned by another process.
+     */
+    Optional<Result> pruneIfDue() {
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = tryLock(channel);
+            if (lock == null) {
+                logger.debug("Local build cache {} is being pruned by another build", directory);
+                return Optional.empty();
+            }
+            try {
+                Optional<Result> last = lastResult();
+                if (last.isPresent() && clock.getAsLong() - last.get().prunedAt < PRUNE_INTERVAL.toMillis()) {
+                    return Optional.empty();
+                }
+                Result result = prune();
+                storeResult(result);
+                return Optional.of(result);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to prune local build cache {}", directory, e);
+            return Optional.empty();
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another daemon thread of this process
+            return null;
+        }
+    }
+
+    Result prune() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, LocalBuildCachePruner::isEntry)) {
+            for (Path path : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        // Gradle marks entries as used by updating their modification time, access times may be disabled
+                        long lastUsed = Math.max(attributes.lastModifiedTime().toMillis(), attributes.lastAccessTime().toMillis());
+                        entries.add(new Entry(path, attributes.size(), lastUsed));
+                    }
+                } catch (IOException e) {
+                    // removed concurrently
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+
+        long totalBytes = entries.stream().mapToLong(e -> e.size).sum();
+        long oldestAllowed = maxAge != null ? clock.getAsLong() - maxAge.toMillis() : Long.MIN_VALUE;
+        long reclaimedBytes = 0;
+        int removedEntries = 0;
+        for (Entry entry : entries) {
+            boolean tooOld = entry.lastUsed < oldestAllowed;
+            boolean tooLarge = maxSizeBytes >= 0 && totalBytes - reclaimedBytes > maxSizeBytes;
+            if (!tooOld && !tooLarge) {
+                break;
+            }
+            if (delete(entry.path)) {
+                reclaimedBytes += entry.size;
+                removedEntries++;
+            }
+        }
+        return new Result(clock.getAsLong(), reclaimedBytes, removedEntries);
+    }
+
+    private static boolean isEntry(Path path) {
+        String name = path.getFileName().toString();
+        if (name.length() < MIN_ENTRY_NAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean delete(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // in use, for example on Windows
+            return false;
+        }
+    }
+
+    Optional<Result> lastResult() {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(directory.resolve(STATE_FILE_NAME))) {
+            properties.load(input);
+            return Optional.of(new Result(
+                Long.parseLong(properties.getProperty("prunedAt")),
+                Long.parseLong(properties.getProperty("reclaimedBytes")),
+                Integer.parseInt(properties.getProperty("removedEntries"))
+            ));
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void storeResult(Result result) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("prunedAt", String.valueOf(result.prunedAt));
+        properties.setProperty("reclaimedBytes", String.valueOf(result.reclaimedBytes));
+        properties.setProperty("removedEntries", String.valueOf(result.removedEntries));
+        Path tempFile = Files.createTempFile(directory, ".ccud-prune", ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, null);
+            }
+            Files.move(tempFile, directory.resolve(STATE_FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static final class Entry {
+
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        private Entry(Path path, long size, long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
+    static final class Result {
+
+        final long prunedAt;
+        final long reclaimedBytes;
+        final int removedEntries;
+
+        Result(long prunedAt, long reclaimedBytes, int removedEntries) {
+            this.prunedAt = prunedAt;
+            this.reclaimedBytes = reclaimedBytes;
+            this.removedEntries = removedEntries;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "reclaimed %.1f MiB from %d entries", reclaimedBytes / (1024.0 * 1024.0), removedEntries);
+        }
+
+    }
+
+    private static final class PruneAction implements Action<BuildResultAdapter> {
+
+        private final File directory;
+        private final long maxSizeBytes;
+        private final Duration maxAge;
+
+        private PruneAction(File directory, long maxSizeBytes, Duration maxAge) {
+            this.directory = directory;
+            this.maxSizeBytes = maxSizeBytes;
+            this.maxAge = maxAge;
+        }
+
+        @Override
+        public void execute(BuildResultAdapter buildResult) {
+            LocalBuildCachePruner pruner = new LocalBuildCachePruner(directory, maxSizeBytes, maxAge, System::currentTimeMillis);
+            Thread thread = new Thread(() -> pruner.pruneIfDue().ifPresent(result ->
+                logger.info("Pruned local build cache {}: {}", directory, result)), "ccud-local-build-cache-pruner");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+
+    }
+
+}
@@ -5,15 +5,33 @@ import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapte
 import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.RemoteBuildCacheAdapter;
 import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
 
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.provider.ProviderFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+
+import static com.gradle.Utils.isGradle61OrNewer;
 
 /**
  * Provide standardized Develocity configuration. By applying the plugin, these settings will automatically be applied.
+ * <p>
+ * Each override is resolved once, from the first of the following sources that defines it: a system property, an
+ * environment variable, or the overrides file given by {@link #OVERRIDES_FILE}.
  */
 final class Overrides {
 
@@ -42,15 +60,80 @@ final class Overrides {
     static final String REMOTE_CACHE_ENABLED = "gradle.cache.remote.enabled";
     static final String REMOTE_CACHE_PUSH = "gradle.cache.remote.push";
 
-    private final ProviderFactory providers;
+    // system property to point to a properties file providing the overrides above, for example on CI agents
+    static final String OVERRIDES_FILE = "ccud.overrides.file";
+
+    private static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(
+        DEVELOCITY_URL, GRADLE_ENTERPRISE_URL, DEVELOCITY_ALLOW_UNTRUSTED_SERVER, GRADLE_ENTERPRISE_ALLOW_UNTRUSTED_SERVER,
+        LOCAL_CACHE_DIRECTORY, LOCAL_CACHE_REMOVE_UNUSED_ENTRIES_AFTER_DAYS, LOCAL_CACHE_ENABLED, LOCAL_CACHE_PUSH,
+        REMOTE_CACHE_URL, REMOTE_CACHE_SERVER, REMOTE_CACHE_PATH, REMOTE_CACHE_ALLOW_UNTRUSTED_SERVER,
+        REMOTE_CACHE_ALLOW_INSECURE_PROTOCOL, REMOTE_CACHE_ENABLED, REMOTE_CACHE_PUSH
+    ));
+
+    private final Map<String, String> values;
+
+    /**
+     * @param rootDir the directory a relative path of the overrides file is resolved against.
+     */
+    Overrides(ProviderFactory providers, File rootDir) {
+        this.values = resolve(providers, rootDir);
+    }
+
+    private static Map<String, String> resolve(ProviderFactory providers, File rootDir) {
+        Properties overridesFile = loadOverridesFile(providers, rootDir);
+        Map<String, String> values = new HashMap<>();
+        for (String key : KEYS) {
+            Optional<String> value = sysPropertyOrEnvVariable(key, providers);
+            if (value.isPresent()) {
+                values.put(key, value.get());
+            } else if (overridesFile.containsKey(key)) {
+                values.put(key, overridesFile.getProperty(key));
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static Properties loadOverridesFile(ProviderFactory providers, File rootDir) {
+        Properties properties = new Properties();
+        Optional<File> file = sysPropertyOrEnvVariable(OVERRIDES_FILE, providers)
+            .map(File::new)
+            .map(f -> f.isAbsolute() ? f : new File(rootDir, f.getPath()));
+        if (!file.isPresent()) {
+            return properties;
+        }
+
+        try (InputStream input = readFile(file.get(), providers)) {
+            properties.load(input);
+        } catch (IOException e) {
+            logger.warn("Unable to read overrides from {}, ignoring them", file.get(), e);
+            return new Properties();
+        }
+        properties.stringPropertyNames().stream()
+            .filter(key -> !KEYS.contains(key))
+            .forEach(key -> logger.warn("Ignoring unknown override {} in {}", key, file.get()));
+        return properties;
+    }
 
-    Overrides(ProviderFactory providers) {
-        this.providers = providers;
+    /**
+     * Opens a file that configures the plugin. It is read through a provider where possible, so that changes to the
+     * file invalidate the configuration cache.
+     */
+    static InputStream readFile(File file, ProviderFactory providers) throws IOException {
+        if (isGradle61OrNewer()) {
+            RegularFile regularFile = () -> file;
+            byte[] content = GradleCompatibility.forUseAtConfigurationTime(providers.fileContents(regularFile).getAsBytes()).getOrNull();
+            if (content == null) {
+                throw new FileNotFoundException(file.getPath());
+            }
+            return new ByteArrayInputStream(content);
+        }
+        // the project plugin of Gradle 4 and 5, and the settings plugin of Gradle 6.0
+        return Files.newInputStream(file.toPath());
     }
 
     void configureDevelocity(DevelocityAdapter develocity) {
-        firstAvailableSysPropertyOrEnvVariable(providers, DEVELOCITY_URL, GRADLE_ENTERPRISE_URL).ifPresent(develocity::setServer);
-        firstAvailableBooleanSysPropertyOrEnvVariable(providers, DEVELOCITY_ALLOW_UNTRUSTED_SERVER, GRADLE_ENTERPRISE_ALLOW_UNTRUSTED_SERVER).ifPresent(develocity::setAllowUntrustedServer);
+        firstAvailable(DEVELOCITY_URL, GRADLE_ENTERPRISE_URL).ifPresent(develocity::setServer);
+        firstAvailable(DEVELOCITY_ALLOW_UNTRUSTED_SERVER, GRADLE_ENTERPRISE_ALLOW_UNTRUSTED_SERVER).map(Boolean::parseBoolean).ifPresent(develocity::setAllowUntrustedServer);
     }
 
     void configureBuildCache(BuildCacheConfigurationAdapter buildCache) {
@@ -63,54 +146,51 @@ final class Overrides {
     }
 
     private void configureLocalBuildCache(LocalBuildCacheAdapter local) {
-        sysPropertyOrEnvVariable(LOCAL_CACHE_DIRECTORY, providers).ifPresent(local::setDirectory);
-        durationSysPropertyOrEnvVariable(LOCAL_CACHE_REMOVE_UNUSED_ENTRIES_AFTER_DAYS, providers).ifPresent(v -> {
+        value(LOCAL_CACHE_DIRECTORY).ifPresent(local::setDirectory);
+        value(LOCAL_CACHE_REMOVE_UNUSED_ENTRIES_AFTER_DAYS).map(Duration::parse).ifPresent(v -> {
             if (!Utils.isGradle9OrNewer()) {
                 local.setRemoveUnusedEntriesAfterDays((int) v.toDays());
             } else {
-                logger.warn("{} override unsupported. As of Gradle 9.0, entry retention can only be changed in an init script", LOCAL_CACHE_REMOVE_UNUSED_ENTRIES_AFTER_DAYS);
+                logger.warn("{} override unsupported. As of Gradle 9.0, entry retention can only be changed in an init script, or bounded via {}", LOCAL_CACHE_REMOVE_UNUSED_ENTRIES_AFTER_DAYS, LocalBuildCachePruner.MAX_AGE);
             }
         });
-        booleanSysPropertyOrEnvVariable(LOCAL_CACHE_ENABLED, providers).ifPresent(local::setEnabled);
-        booleanSysPropertyOrEnvVariable(LOCAL_CACHE_PUSH, providers).ifPresent(local::setPush);
+        booleanValue(LOCAL_CACHE_ENABLED).ifPresent(local::setEnabled);
+        booleanValue(LOCAL_CACHE_PUSH).ifPresent(local::setPush);
     }
 
     private void configureRemoteBuildCache(RemoteBuildCacheAdapter remote) {
-        sysPropertyOrEnvVariable(REMOTE_CACHE_URL, providers).ifPresent(remote::setUrl);
-        sysPropertyOrEnvVariable(REMOTE_CACHE_SERVER, providers).ifPresent(remote::setServer);
-        sysPropertyOrEnvVariable(REMOTE_CACHE_PATH, providers).ifPresent(remote::setPath);
-        booleanSysPropertyOrEnvVariable(REMOTE_CACHE_ALLOW_UNTRUSTED_SERVER, providers).ifPresent(remote::setAllowUntrustedServer);
-        booleanSysPropertyOrEnvVariable(REMOTE_CACHE_ALLOW_INSECURE_PROTOCOL, providers).ifPresent(remote::setAllowInsecureProtocol);
-        booleanSysPropertyOrEnvVariable(REMOTE_CACHE_ENABLED, providers).ifPresent(remote::setEnabled);
-        booleanSysPropertyOrEnvVariable(REMOTE_CACHE_PUSH, providers).ifPresent(remote::setPush);
+        value(REMOTE_CACHE_URL).ifPresent(remote::setUrl);
+        value(REMOTE_CACHE_SERVER).ifPresent(remote::setServer);
+        value(REMOTE_CACHE_PATH).ifPresent(remote::setPath);
+        booleanValue(REMOTE_CACHE_ALLOW_UNTRUSTED_SERVER).ifPresent(remote::setAllowUntrustedServer);
+        booleanValue(REMOTE_CACHE_ALLOW_INSECURE_PROTOCOL).ifPresent(remote::setAllowInsecureProtocol);
+        booleanValue(REMOTE_CACHE_ENABLED).ifPresent(remote::setEnabled);
+        booleanValue(REMOTE_CACHE_PUSH).ifPresent(remote::setPush);
     }
 
-    static Optional<String> firstAvailableSysPropertyOrEnvVariable(ProviderFactory providers, String... sysPropertyNames) {
-        for (String sysPropertyName : sysPropertyNames) {
-            Optional<String> optValue = sysPropertyOrEnvVariable(sysPropertyName, providers);
-            if (optValue.isPresent()) {
-                return optValue;
-            }
-        }
-
-        return Optional.empty();
+    Optional<String> value(String key) {
+        return Optional.ofNullable(values.get(key));
     }
 
-    static Optional<String> sysPropertyOrEnvVariable(String sysPropertyName, ProviderFactory providers) {
-        return Utils.sysPropertyOrEnvVariable(sysPropertyName, toEnvVarName(sysPropertyName), providers);
+    Optional<Boolean> booleanValue(String key) {
+        return value(key).map(Boolean::parseBoolean);
     }
 
-    static Optional<Boolean> firstAvailableBooleanSysPropertyOrEnvVariable(ProviderFactory providers, String... sysPropertyNames) {
-        for (String sysPropertyName : sysPropertyNames) {
-            Optional<Boolean> optValue = booleanSysPropertyOrEnvVariable(sysPropertyName, providers);
-            if (optValue.isPresent()) {
-                return optValue;
+    private Optional<String> firstAvailable(String... keys) {
+        for (String key : keys) {
+            Optional<String> value = value(key);
+            if (value.isPresent()) {
+                return value;
             }
         }
 
         return Optional.empty();
     }
 
+    static Optional<String> sysPropertyOrEnvVariable(String sysPropertyName, ProviderFactory providers) {
+        return Utils.sysPropertyOrEnvVariable(sysPropertyName, toEnvVarName(sysPropertyName), providers);
+    }
+
     static Optional<Boolean> booleanSysPropertyOrEnvVariable(String sysPropertyName, ProviderFactory providers) {
         return Utils.booleanSysPropertyOrEnvVariable(sysPropertyName, toEnvVarName(sysPropertyName), providers);
     }
@@ -0,0 +1,183 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildResultAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the time the plugin itself spends configuring the build and capturing data, to make its cost visible.
+ * <p>
+ * Timings are accumulated per phase in a lock-free array, looked up by an id that is created when the build is
+ * configured. Actions that run at the end of the build only hold the id, so that they record into the same array even
+ * when they have been restored from the configuration cache. When the configuration cache is reused, the configuration
+ * phases do not run and are not reported.
+ */
+final class PluginOverhead {
+
+    private static final Logger logger = Logging.getLogger(PluginOverhead.class);
+
+    static final String ENABLED = "ccud.overhead.enabled";
+
+    static final String CUSTOM_VALUE_NAME = "CCUD overhead";
+
+    // timings of builds whose report has not run, for example because a background action finished late
+    private static final int MAX_PENDING_BUILDS = 64;
+    private static final Map<String, AtomicLongArray> timingsByBuild = new ConcurrentHashMap<>();
+
+    private static final PluginOverhead DISABLED = new PluginOverhead(null);
+
+    enum Phase {
+        SETTINGS_PLUGIN("plugin", false),
+        CAPTURE_OS("OS", true),
+        CAPTURE_IDE("IDE", true),
+        CAPTURE_CI("CI", true),
+        CAPTURE_GIT("Git", true),
+        CAPTURE_AGENT("agent", true),
+        CAPTURE_BUILD_CACHE_STATS("cache stats", true),
+        CAPTURE_JVM("JVM", true),
+        OVERRIDES("overrides", false),
+        IDE_ACTION("IDE at build end", false),
+        CI_ACTION("CI at build end", false),
+        GIT_ACTION("Git in background", false),
+        AGENT_ACTION("agent at build end", false),
+        BUILD_CACHE_STATS_ACTION("cache stats at build end", false),
+        JVM_ACTION("JVM at build end", false);
+
+        private final String label;
+        // nested phases are part of the time of an enclosing phase, and not added to the total
+        private final boolean nested;
+
+        Phase(String label, boolean nested) {
+            this.label = label;
+            this.nested = nested;
+        }
+    }
+
+    private final String buildId;
+
+    private PluginOverhead(String buildId) {
+        this.buildId = buildId;
+    }
+
+    static PluginOverhead create(ProviderFactory providers) {
+        return Overrides.booleanSysPropertyOrEnvVariable(ENABLED, providers).orElse(false) ? new PluginOverhead(UUID.randomUUID().toString()) : DISABLED;
+    }
+
+    /**
+     * Adds the time since the given {@link System#nanoTime()} to a phase.
+     * @return the current {@link System#nanoTime()}, to be passed as the start of the next phase.
+     */
+    long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        if (buildId != null) {
+            timings().addAndGet(phase.ordinal(), now - startNanos);
+        }
+        return now;
+    }
+
+    private AtomicLongArray timings() {
+        AtomicLongArray timings = timingsByBuild.get(buildId);
+        if (timings != null) {
+            return timings;
+        }
+        if (timingsByBuild.size() >= MAX_PENDING_BUILDS) {
+            timingsByBuild.clear();
+        }
+        return timingsByBuild.computeIfAbsent(buildId, __ -> new AtomicLongArray(Phase.values().length));
+    }
+
+    /**
+     * Wraps an action so that the time it takes is added to a phase.
+     */
+    <T> Action<T> timed(Phase phase, Action<T> action) {
+        return buildId != null ? new TimedAction<>(this, phase, action) : action;
+    }
+
+    /**
+     * Returns an action that reports the timings of the build, to be registered after all other actions.
+     */
+    Action<BuildResultAdapter> reportAction(DevelocityAdapter develocity) {
+        return new ReportAction(this, develocity);
+    }
+
+    private void report(DevelocityAdapter develocity) {
+        if (buildId == null) {
+            return;
+        }
+        AtomicLongArray timings = timingsByBuild.remove(buildId);
+        if (timings == null) {
+            return;
+        }
+
+        StringBuilder phases = new StringBuilder();
+        long totalNanos = 0;
+        for (Phase phase : Phase.values()) {
+            long nanos = timings.get(phase.ordinal());
+            if (nanos == 0) {
+                continue;
+            }
+            if (!phase.nested) {
+                totalNanos += nanos;
+            }
+            phases.append(phases.length() == 0 ? "" : ", ").append(phase.label).append(' ').append(formatNanos(nanos));
+        }
+        String summary = formatNanos(totalNanos) + " (" + phases + ")";
+        develocity.getBuildScan().value(CUSTOM_VALUE_NAME, summary);
+        logger.debug("{}: {}", CUSTOM_VALUE_NAME, summary);
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0);
+    }
+
+    private static final class TimedAction<T> implements Action<T> {
+
+        private final PluginOverhead overhead;
+        private final Phase phase;
+        private final Action<T> delegate;
+
+        private TimedAction(PluginOverhead overhead, Phase phase, Action<T> delegate) {
+            this.overhead = overhead;
+            this.phase = phase;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(T target) {
+            long start = System.nanoTime();
+            try {
+                delegate.execute(target);
+            } finally {
+                overhead.record(phase, start);
+            }
+        }
+
+    }
+
+    private static final class ReportAction implements Action<BuildResultAdapter> {
+
+        private final PluginOverhead overhead;
+        private final DevelocityAdapter develocity;
+
+        private ReportAction(PluginOverhead overhead, DevelocityAdapter develocity) {
+            this.overhead = overhead;
+            this.develocity = develocity;
+        }
+
+        @Override
+        public void execute(BuildResultAdapter buildResult) {
+            overhead.report(develocity);
+        }
+
+    }
+
+}
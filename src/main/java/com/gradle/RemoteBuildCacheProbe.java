@@ -0,0 +1,337 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.RemoteBuildCacheAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+import static com.gradle.Utils.appendIfMissing;
+
+/**
+ * Disables the remote build cache, or pushing to it, when it is too slow to be worth using, for example when working
+ * over a VPN.
+ * <p>
+ * The latency and throughput of the remote build cache are measured with a few requests within a strict time limit.
+ * The measurement is cached in the Gradle user home for a while, keyed on the remote build cache URL and the addresses
+ * of the network interfaces, so that it is taken again when the network changes. Failed measurements are not cached.
+ * <p>
+ * Remote build caches that are allowed to use untrusted certificates are not probed, since the probe verifies
+ * certificates like any other connection made by the JVM and would report such a cache as unreachable.
+ * <p>
+ * With the configuration cache, the resulting build cache configuration is stored in the configuration cache entry,
+ * so the remote build cache is only probed again once the entry is invalidated.
+ */
+final class RemoteBuildCacheProbe {
+
+    private static final Logger logger = Logging.getLogger(RemoteBuildCacheProbe.class);
+
+    static final String PROBE_ENABLED = "ccud.remoteCache.probe.enabled";
+    static final String PROBE_TIMEOUT = "ccud.remoteCache.probe.timeout";
+    static final String PROBE_TTL = "ccud.remoteCache.probe.ttl";
+    static final String MAX_LATENCY = "ccud.remoteCache.probe.maxLatency";
+    static final String MAX_PUSH_LATENCY = "ccud.remoteCache.probe.maxPushLatency";
+    static final String MIN_THROUGHPUT_MBPS = "ccud.remoteCache.probe.minThroughputMbps";
+
+    static final Duration DEFAULT_PROBE_TIMEOUT = Duration.ofSeconds(2);
+    static final Duration DEFAULT_PROBE_TTL = Duration.ofMinutes(15);
+    static final Duration DEFAULT_MAX_LATENCY = Duration.ofMillis(500);
+    static final Duration DEFAULT_MAX_PUSH_LATENCY = Duration.ofMillis(150);
+    static final double DEFAULT_MIN_THROUGHPUT_MBPS = 10;
+
+    static final String CUSTOM_VALUE_NAME = "Remote build cache probe";
+
+    private static final int SAMPLES = 3;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    // smaller responses are dominated by latency and say nothing about throughput
+    private static final int MIN_THROUGHPUT_BODY_BYTES = 64 * 1024;
+    private static final String DEFAULT_PATH = "/cache/";
+
+    private final Duration timeout;
+    private final Duration ttl;
+    private final Duration maxLatency;
+    private final Duration maxPushLatency;
+    private final double minThroughputMbps;
+    private final File cacheDir;
+    private final LongSupplier clock;
+
+    RemoteBuildCacheProbe(Duration timeout, Duration ttl, Duration maxLatency, Duration maxPushLatency, double minThroughputMbps, File cacheDir, LongSupplier clock) {
+        this.timeout = timeout;
+        this.ttl = ttl;
+        this.maxLatency = maxLatency;
+        this.maxPushLatency = maxPushLatency;
+        this.minThroughputMbps = minThroughputMbps;
+        this.cacheDir = cacheDir;
+        this.clock = clock;
+    }
+
+    static Optional<RemoteBuildCacheProbe> fromSettings(ProviderFactory providers, File gradleUserHome) {
+        if (!Overrides.booleanSysPropertyOrEnvVariable(PROBE_ENABLED, providers).orElse(false)) {
+            return Optional.empty();
+        }
+        return Optional.of(new RemoteBuildCacheProbe(
+            Overrides.durationSysPropertyOrEnvVariable(PROBE_TIMEOUT, providers).orElse(DEFAULT_PROBE_TIMEOUT),
+            Overrides.durationSysPropertyOrEnvVariable(PROBE_TTL, providers).orElse(DEFAULT_PROBE_TTL),
+            Overrides.durationSysPropertyOrEnvVariable(MAX_LATENCY, providers).orElse(DEFAULT_MAX_LATENCY),
+            Overrides.durationSysPropertyOrEnvVariable(MAX_PUSH_LATENCY, providers).orElse(DEFAULT_MAX_PUSH_LATENCY),
+            Overrides.sysPropertyOrEnvVariable(MIN_THROUGHPUT_MBPS, providers).map(Double::parseDouble).orElse(DEFAULT_MIN_THROUGHPUT_MBPS),
+            new File(gradleUserHome, "caches/common-custom-user-data/remote-cache-probe"),
+            System::currentTimeMillis
+        ));
+    }
+
+    /**
+     * Probes the enabled remote build cache, disables it or pushing to it if it is too slow, and records the
+     * measurement and the reason for disabling it in the build scan.
+     */
+    void configure(RemoteBuildCacheAdapter remote, DevelocityAdapter develocity) {
+        if (!remote.isEnabled()) {
+            return;
+        }
+        Optional<URI> url = url(remote, develocity);
+        if (!url.isPresent()) {
+            logger.debug("Remote build cache URL is unknown, not probing it");
+            return;
+        }
+        if (allowsUntrustedServer(remote, develocity)) {
+            logger.debug("Remote build cache {} is allowed to be untrusted, not probing it", url.get());
+            return;
+        }
+
+        Measurement measurement = measure(url.get());
+        develocity.getBuildScan().value(CUSTOM_VALUE_NAME, measurement.toString());
+
+        Optional<String> disableReason = measurement.latencyMillis < 0 ? Optional.of("unreachable")
+            : measurement.latencyMillis > maxLatency.toMillis() ? Optional.of("high latency")
+            : measurement.throughputMbps >= 0 && measurement.throughputMbps < minThroughputMbps ? Optional.of("low throughput")
+            : Optional.empty();
+        if (disableReason.isPresent()) {
+            logger.info("Disabling the remote build cache {}: {}", url.get(), measurement);
+            remote.setEnabled(false);
+            develocity.getBuildScan().tag("Remote cache disabled: " + disableReason.get());
+        } else if (remote.isPush() && measurement.latencyMillis > maxPushLatency.toMillis()) {
+            logger.info("Disabling pushing to the remote build cache {}: {}", url.get(), measurement);
+            remote.setPush(false);
+            develocity.getBuildScan().tag("Remote cache push disabled: high latency");
+        }
+    }
+
+    private static Optional<URI> url(RemoteBuildCacheAdapter remote, DevelocityAdapter develocity) {
+        try {
+            if (remote.getUrl() != null) {
+                return Optional.of(remote.getUrl());
+            }
+            String server = remote.getServer() != null ? remote.getServer() : develocity.getServer();
+            if (server == null) {
+                return Optional.empty();
+            }
+            String path = remote.getPath() != null ? remote.getPath() : DEFAULT_PATH;
+            return Optional.of(URI.create(appendIfMissing(server, '/')).resolve(path.startsWith("/") ? path.substring(1) : path));
+        } catch (RuntimeException e) {
+            logger.debug("Unable to determine the remote build cache URL", e);
+            return Optional.empty();
+        }
+    }
+
+    // without its own server or URL, the remote build cache connects to the Develocity server
+    private static boolean allowsUntrustedServer(RemoteBuildCacheAdapter remote, DevelocityAdapter develocity) {
+        if (remote.getAllowUntrustedServer()) {
+            return true;
+        }
+        return remote.getUrl() == null && remote.getServer() == null && develocity.getAllowUntrustedServer();
+    }
+
+    /**
+     * Returns the cached measurement for the URL on the current network, or measures it.
+     */
+    Measurement measure(URI url) {
+        Path entry = cacheDir.toPath().resolve(GitMetadataCache.sha256(url + "\n" + networkKey()) + ".properties");
+        Optional<Measurement> cached = load(entry);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        Measurement measurement = probe(url);
+        // a failure may be transient, so the next build measures again
+        if (measurement.latencyMillis >= 0) {
+            store(entry, measurement);
+        }
+        return measurement;
+    }
+
+    private Measurement probe(URI url) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long latencyNanos = Long.MAX_VALUE;
+        double throughputMbps = -1;
+        for (int i = 0; i < SAMPLES; i++) {
+            int remainingMillis = (int) Math.min(Integer.MAX_VALUE, (deadline - System.nanoTime()) / 1_000_000);
+            if (remainingMillis <= 0) {
+                break;
+            }
+            try {
+                Sample sample = sample(url, remainingMillis);
+                latencyNanos = Math.min(latencyNanos, sample.latencyNanos);
+                if (sample.bodyBytes >= MIN_THROUGHPUT_BODY_BYTES && sample.transferNanos > 0) {
+                    throughputMbps = Math.max(throughputMbps, sample.bodyBytes * 8 * 1000.0 / sample.transferNanos);
+                }
+            } catch (IOException e) {
+                logger.debug("Failed to probe the remote build cache {}", url, e);
+                break;
+            }
+        }
+        long latencyMillis = latencyNanos == Long.MAX_VALUE ? -1 : latencyNanos / 1_000_000;
+        return new Measurement(clock.getAsLong(), latencyMillis, throughputMbps);
+    }
+
+    private static Sample sample(URI url, int timeoutMillis) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.toURL().openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        long start = System.nanoTime();
+        int status = connection.getResponseCode();
+        long firstByte = System.nanoTime();
+
+        // read the body even for error responses, so that the connection can be reused by the next sample
+        int bodyBytes = 0;
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while (bodyBytes < MAX_BODY_BYTES && (read = body.read(buffer)) >= 0) {
+                    bodyBytes += read;
+                }
+            }
+        }
+        return new Sample(firstByte - start, bodyBytes, System.nanoTime() - firstByte);
+    }
+
+    // the addresses of the network interfaces that are up, which change when connecting to a VPN or another network
+    private static String networkKey() {
+        List<String> addresses = new ArrayList<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (networkInterface.isUp() && !networkInterface.isLoopback()) {
+                    for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                        addresses.add(networkInterface.getName() + "=" + address.getHostAddress());
+                    }
+                }
+            }
+        } catch (SocketException | RuntimeException e) {
+            logger.debug("Unable to list the network interfaces", e);
+        }
+        Collections.sort(addresses);
+        return String.join(",", addresses);
+    }
+
+    private Optional<Measurement> load(Path entry) {
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(entry)) {
+            properties.load(input);
+            Measurement measurement = new Measurement(
+                Long.parseLong(properties.getProperty("measuredAt")),
+                Long.parseLong(properties.getProperty("latencyMillis")),
+                Double.parseDouble(properties.getProperty("throughputMbps"))
+            );
+            long age = clock.getAsLong() - measurement.measuredAt;
+            return age >= 0 && age < ttl.toMillis() ? Optional.of(measurement) : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void store(Path entry, Measurement measurement) {
+        Properties properties = new Properties();
+        properties.setProperty("measuredAt", String.valueOf(measurement.measuredAt));
+        properties.setProperty("latencyMillis", String.valueOf(measurement.latencyMillis));
+        properties.setProperty("throughputMbps", String.valueOf(measurement.throughputMbps));
+
+        Path tempFile = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            tempFile = Files.createTempFile(entry.getParent(), "entry", ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, null);
+            }
+            try {
+                Files.move(tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // caching is best effort
+            logger.debug("Unable to cache the remote build cache probe", e);
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // left behind
+                }
+            }
+        }
+    }
+
+    private static final class Sample {
+
+        private final long latencyNanos;
+        private final int bodyBytes;
+        private final long transferNanos;
+
+        private Sample(long latencyNanos, int bodyBytes, long transferNanos) {
+            this.latencyNanos = latencyNanos;
+            this.bodyBytes = bodyBytes;
+            this.transferNanos = transferNanos;
+        }
+
+    }
+
+    /**
+     * The lowest latency and highest throughput measured, negative if they could not be measured.
+     */
+    static final class Measurement {
+
+        final long measuredAt;
+        final long latencyMillis;
+        final double throughputMbps;
+
+        Measurement(long measuredAt, long latencyMillis, double throughputMbps) {
+            this.measuredAt = measuredAt;
+            this.latencyMillis = latencyMillis;
+            this.throughputMbps = throughputMbps;
+        }
+
+        @Override
+        public String toString() {
+            if (latencyMillis < 0) {
+                return "unreachable";
+            }
+            return "latency " + latencyMillis + " ms" + (throughputMbps < 0 ? "" : String.format(Locale.ROOT, ", throughput %.1f Mbit/s", throughputMbps));
+        }
+
+    }
+
+}
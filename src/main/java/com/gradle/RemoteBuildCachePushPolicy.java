@@ -0,0 +1,93 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.RemoteBuildCacheAdapter;
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.gradle.Utils.envVariable;
+
+/**
+ * Only pushes to the remote build cache from CI builds of trusted branches, as builds of pull requests and feature
+ * branches mostly produce entries that are rarely used by other builds.
+ * <p>
+ * The branch patterns are matched against the name of the branch being built, where <code>*</code> matches any
+ * sequence of characters.
+ */
+final class RemoteBuildCachePushPolicy {
+
+    // comma-separated list of patterns of the branches whose CI builds push to the remote build cache
+    static final String PUSH_BRANCHES = "ccud.remoteCache.pushBranches";
+
+    static final String CUSTOM_VALUE_NAME = "Remote build cache push";
+
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    private final List<Pattern> branchPatterns;
+
+    RemoteBuildCachePushPolicy(List<String> branchPatterns) {
+        this.branchPatterns = branchPatterns.stream().map(RemoteBuildCachePushPolicy::toPattern).collect(Collectors.toList());
+    }
+
+    static Optional<RemoteBuildCachePushPolicy> fromSettings(ProviderFactory providers) {
+        return Overrides.sysPropertyOrEnvVariable(PUSH_BRANCHES, providers).map(patterns -> new RemoteBuildCachePushPolicy(
+            Arrays.stream(patterns.split(",")).map(String::trim).filter(Utils::isNotEmpty).collect(Collectors.toList())
+        ));
+    }
+
+    /**
+     * Disables pushing to the remote build cache unless the build is a CI build of a matching branch that does not
+     * build a pull request, and records the decision in the build scan. Pushing is never enabled if the build
+     * configuration disabled it.
+     */
+    void configure(RemoteBuildCacheAdapter remote, BuildScanAdapter buildScan, CiEnvironment ciEnvironment, ProviderFactory providers, File projectDir) {
+        configure(remote, buildScan, ciEnvironment, name -> envVariable(name, providers), projectDir);
+    }
+
+    /**
+     * @param env looks up environment variables.
+     */
+    void configure(RemoteBuildCacheAdapter remote, BuildScanAdapter buildScan, CiEnvironment ciEnvironment, Function<String, Optional<String>> env, File projectDir) {
+        String decision = decide(ciEnvironment, env, projectDir);
+        boolean allowed = decision.equals("enabled");
+        remote.setPush(remote.isPush() && allowed);
+        buildScan.value(CUSTOM_VALUE_NAME, decision);
+    }
+
+    private String decide(CiEnvironment ciEnvironment, Function<String, Optional<String>> env, File projectDir) {
+        if (!ciEnvironment.isCi()) {
+            return "disabled (local build)";
+        }
+        if (ciEnvironment.isPullRequest(env)) {
+            return "disabled (pull request)";
+        }
+
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+        GitMetadata git = GitMetadataReader.read(projectDir)
+            .orElseGet(() -> GitCommandMetadataReader.read(executor, projectDir)
+                .orElse(new GitMetadata(null, null, null, null, null)));
+        String branch = GitBranchName.detect(ciEnvironment, env, executor, projectDir, git);
+        if (branch == null) {
+            return "disabled (unknown branch)";
+        }
+        return matches(branch) ? "enabled" : "disabled (branch " + branch + ")";
+    }
+
+    boolean matches(String branch) {
+        String branchName = branch.startsWith(BRANCH_REF_PREFIX) ? branch.substring(BRANCH_REF_PREFIX.length()) : branch;
+        return branchPatterns.stream().anyMatch(pattern -> pattern.matcher(branchName).matches());
+    }
+
+    private static Pattern toPattern(String glob) {
+        String[] literals = glob.split("\\*", -1);
+        return Pattern.compile(Arrays.stream(literals).map(literal -> literal.isEmpty() ? "" : Pattern.quote(literal)).collect(Collectors.joining(".*")));
+    }
+
+}
@@ -4,34 +4,27 @@ import org.gradle.api.file.Directory;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.provider.ProviderFactory;
-import org.gradle.util.GradleVersion;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public final class Utils {
 
-    private static final Pattern GIT_REPO_URI_PATTERN = Pattern.compile("^(?:(?:https://|git://)(?:.+:.+@)?|(?:ssh)?.*?@)(.*?(?:github|gitlab).*?)(?:/|:[0-9]*?/|:)(.*?)(?:\\.git)?$");
+    private static final String[] GIT_HOSTING_NAMES = {"github", "gitlab"};
+    private static final int GIT_HOSTING_NAME_LENGTH = 6;
+    private static final String GIT_SUFFIX = ".git";
+    private static final String MERGE_REF_SUFFIX = "/merge";
 
     static Optional<String> sysPropertyOrEnvVariable(String sysPropertyName, String envVarName, ProviderFactory providers) {
         Optional<String> sysProperty = sysProperty(sysPropertyName, providers);
@@ -49,8 +42,8 @@ public final class Utils {
     }
 
     static Optional<String> envVariable(String name, ProviderFactory providers) {
-        if (isGradle65OrNewer() && !isGradle74OrNewer()) {
-            Provider<String> variable = forUseAtConfigurationTime(providers.environmentVariable(name));
+        if (GradleCompatibility.REQUIRES_CONFIGURATION_TIME_PROVIDERS) {
+            Provider<String> variable = GradleCompatibility.forUseAtConfigurationTime(providers.environmentVariable(name));
             return Optional.ofNullable(variable.getOrNull());
         }
         return Optional.ofNullable(System.getenv(name));
@@ -65,8 +58,8 @@ public final class Utils {
     }
 
     static Optional<String> sysProperty(String name, ProviderFactory providers) {
-        if (isGradle65OrNewer() && !isGradle74OrNewer()) {
-            Provider<String> property = forUseAtConfigurationTime(providers.systemProperty(name));
+        if (GradleCompatibility.REQUIRES_CONFIGURATION_TIME_PROVIDERS) {
+            Provider<String> property = GradleCompatibility.forUseAtConfigurationTime(providers.systemProperty(name));
             return Optional.ofNullable(property.getOrNull());
         }
         return Optional.ofNullable(System.getProperty(name));
@@ -136,108 +129,44 @@ public final class Utils {
         return new FileInputStream(name);
     }
 
-    static boolean execAndCheckSuccess(String... args) {
-        Runtime runtime = Runtime.getRuntime();
-        Process process = null;
-        try {
-            process = runtime.exec(args);
-            boolean finished = process.waitFor(10, TimeUnit.SECONDS);
-            return finished && process.exitValue() == 0;
-        } catch (IOException | InterruptedException ignored) {
-            return false;
-        } finally {
-            if (process != null) {
-                process.destroyForcibly();
-            }
-        }
-    }
-
-    /**
-     * Executes a command and returns the standard output as a string.
-     * @param dir the working directory of the subprocess, or null if the subprocess should inherit the working directory of the current process.
-     * @param args array containing the command to call and its arguments.
-     * @return the standard output of the command, or null if the command failed.
-     */
-    static String execAndGetStdOut(File dir, String... args) {
-        Runtime runtime = Runtime.getRuntime();
-        Process process;
-        try {
-            process = runtime.exec(args, null, dir);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        try (Reader standard = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()))) {
-            try (Reader error = new BufferedReader(new InputStreamReader(process.getErrorStream(), Charset.defaultCharset()))) {
-                String standardText = readFully(standard);
-                String ignore = readFully(error);
-
-                boolean finished = process.waitFor(10, TimeUnit.SECONDS);
-                return finished && process.exitValue() == 0 ? trimAtEnd(standardText) : null;
-            }
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            process.destroyForcibly();
-        }
-    }
-
-    private static String readFully(Reader reader) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        char[] buf = new char[1024];
-        int nRead;
-        while ((nRead = reader.read(buf)) != -1) {
-            sb.append(buf, 0, nRead);
-        }
-        return sb.toString();
-    }
-
-    private static String trimAtEnd(String str) {
-        return ('x' + str).trim().substring(1);
-    }
-
     static boolean isGradle4OrNewer() {
-        return isGradleNewerThan("4.0");
+        return GradleCompatibility.GRADLE_4_0;
     }
 
     public static boolean isGradle43rNewer() {
-        return isGradleNewerThan("4.3");
+        return GradleCompatibility.GRADLE_4_3;
     }
 
     public static boolean isGradle5OrNewer() {
-        return isGradleNewerThan("5.0");
+        return GradleCompatibility.GRADLE_5_0;
     }
 
     static boolean isGradle56OrNewer() {
-        return isGradleNewerThan("5.6");
+        return GradleCompatibility.GRADLE_5_6;
     }
 
     static boolean isGradle6OrNewer() {
-        return isGradleNewerThan("6.0");
+        return GradleCompatibility.GRADLE_6_0;
     }
 
     static boolean isGradle61OrNewer() {
-        return isGradleNewerThan("6.1");
+        return GradleCompatibility.GRADLE_6_1;
     }
 
     static boolean isGradle62OrNewer() {
-        return isGradleNewerThan("6.2");
+        return GradleCompatibility.GRADLE_6_2;
     }
 
     static boolean isGradle65OrNewer() {
-        return isGradleNewerThan("6.5");
+        return GradleCompatibility.GRADLE_6_5;
     }
 
     static boolean isGradle74OrNewer() {
-        return isGradleNewerThan("7.4");
+        return GradleCompatibility.GRADLE_7_4;
     }
 
     static boolean isGradle9OrNewer() {
-        return isGradleNewerThan("9.0");
-    }
-
-    private static boolean isGradleNewerThan(String version) {
-        return GradleVersion.current().compareTo(GradleVersion.version(version)) >= 0;
+        return GradleCompatibility.GRADLE_9_0;
     }
 
     /**
@@ -248,15 +177,116 @@ public final class Utils {
      * The scheme can be any of <code>git://</code>, <code>https://</code>, or <code>ssh</code>.
      */
     static Optional<URI> toWebRepoUri(String gitRepoUri) {
-        Matcher matcher = GIT_REPO_URI_PATTERN.matcher(gitRepoUri);
-        if (matcher.matches()) {
-            String scheme = "https";
-            String host = matcher.group(1);
-            String path = matcher.group(2).startsWith("/") ? matcher.group(2) : "/" + matcher.group(2);
-            return toUri(scheme, host, path);
-        } else {
+        // the URL is parsed in linear time with the same results as the regular expression
+        // ^(?:(?:https://|git://)(?:.+:.+@)?|(?:ssh)?.*?@)(.*?(?:github|gitlab).*?)(?:/|:[0-9]*?/|:)(.*?)(?:\.git)?$
+        // that is, the host is followed by the first slash or colon after the first 'github' or 'gitlab' in it
+        int hostStart = findHostStart(gitRepoUri);
+        if (hostStart < 0) {
+            return Optional.empty();
+        }
+
+        int hostingName = indexOfGitHostingName(gitRepoUri, hostStart);
+        int hostEnd = indexOfHostSeparator(gitRepoUri, hostingName + GIT_HOSTING_NAME_LENGTH);
+        int pathStart = hostEnd + 1;
+        if (gitRepoUri.charAt(hostEnd) == ':') {
+            // a port is only skipped if it is followed by a slash
+            int portEnd = pathStart;
+            while (portEnd < gitRepoUri.length() && isAsciiDigit(gitRepoUri.charAt(portEnd))) {
+                portEnd++;
+            }
+            if (portEnd < gitRepoUri.length() && gitRepoUri.charAt(portEnd) == '/') {
+                pathStart = portEnd + 1;
+            }
+        }
+        int pathEnd = gitRepoUri.endsWith(GIT_SUFFIX) && gitRepoUri.length() - GIT_SUFFIX.length() >= pathStart
+            ? gitRepoUri.length() - GIT_SUFFIX.length()
+            : gitRepoUri.length();
+
+        String host = gitRepoUri.substring(hostStart, hostEnd);
+        String path = gitRepoUri.substring(pathStart, pathEnd);
+        return toUri("https", host, path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * Returns the start of the host of the given git URL, or -1 if the URL does not contain a GitHub or GitLab host.
+     */
+    private static int findHostStart(String gitRepoUri) {
+        for (int i = 0; i < gitRepoUri.length(); i++) {
+            if (isLineTerminator(gitRepoUri.charAt(i))) {
+                return -1;
+            }
+        }
+
+        // the host can start at the latest before the last 'github' or 'gitlab' that is followed by a slash or colon
+        int lastSeparator = Math.max(gitRepoUri.lastIndexOf('/'), gitRepoUri.lastIndexOf(':'));
+        int latestHostStart = -1;
+        for (String name : GIT_HOSTING_NAMES) {
+            latestHostStart = Math.max(latestHostStart, gitRepoUri.lastIndexOf(name, lastSeparator - GIT_HOSTING_NAME_LENGTH));
+        }
+        if (latestHostStart < 0) {
+            return -1;
+        }
+
+        int schemeEnd = gitRepoUri.startsWith("https://") ? "https://".length() : gitRepoUri.startsWith("git://") ? "git://".length() : -1;
+        if (schemeEnd >= 0) {
+            // user info of the form user:password@, taking the last possible '@' and the last ':' before it
+            int userInfoEnd = gitRepoUri.lastIndexOf('@', latestHostStart - 1);
+            if (userInfoEnd >= 0 && gitRepoUri.lastIndexOf(':', userInfoEnd - 2) > schemeEnd) {
+                return userInfoEnd + 1;
+            }
+            if (schemeEnd <= latestHostStart) {
+                return schemeEnd;
+            }
+        }
+
+        // scp-like and ssh URLs, the host follows the first '@'
+        int userEnd = gitRepoUri.indexOf('@');
+        return userEnd >= 0 && userEnd < latestHostStart ? userEnd + 1 : -1;
+    }
+
+    private static int indexOfGitHostingName(String gitRepoUri, int fromIndex) {
+        int index = -1;
+        for (String name : GIT_HOSTING_NAMES) {
+            int nameIndex = gitRepoUri.indexOf(name, fromIndex);
+            if (nameIndex >= 0 && (index < 0 || nameIndex < index)) {
+                index = nameIndex;
+            }
+        }
+        return index;
+    }
+
+    private static int indexOfHostSeparator(String gitRepoUri, int fromIndex) {
+        for (int i = fromIndex; i < gitRepoUri.length(); i++) {
+            char c = gitRepoUri.charAt(i);
+            if (c == '/' || c == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Returns the number of the pull request of a GitHub merge ref name of the form <code>&lt;number&gt;/merge</code>.
+     */
+    static Optional<String> toPullRequestNumber(String refName) {
+        int numberEnd = refName.length() - MERGE_REF_SUFFIX.length();
+        if (numberEnd <= 0 || !refName.endsWith(MERGE_REF_SUFFIX)) {
             return Optional.empty();
         }
+        for (int i = 0; i < numberEnd; i++) {
+            if (!isAsciiDigit(refName.charAt(i))) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(refName.substring(0, numberEnd));
     }
 
     private static Optional<URI> toUri(String scheme, String host, String path) {
@@ -267,20 +297,6 @@ public final class Utils {
         }
     }
 
-    private static Provider<String> forUseAtConfigurationTime(Provider<String> provider) {
-        if (isGradle65OrNewer() && !isGradle74OrNewer()) {
-            try {
-                // Use reflection to access the forUseAtConfigurationTime method as it was removed in Gradle 9.
-                Method method = Provider.class.getMethod("forUseAtConfigurationTime");
-                return (Provider<String>) method.invoke(provider);
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to invoke forUseAtConfigurationTime via reflection", e);
-            }
-        } else {
-            return provider;
-        }
-    }
-
     private Utils() {
     }
 
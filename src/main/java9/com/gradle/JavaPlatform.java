@@ -0,0 +1,43 @@
+package com.gradle;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Operations with a faster implementation on newer Java versions.
+ * <p>
+ * This is the Java 9 implementation, see the Java 8 implementation in <code>src/main/java</code>.
+ */
+final class JavaPlatform {
+
+    // only the method names are needed, so the walker does not need to resolve the declaring classes
+    private static final StackWalker stackWalker = StackWalker.getInstance();
+
+    private JavaPlatform() {
+    }
+
+    /**
+     * Returns whether a method whose name contains the given string is on the stack of the current thread. The stack
+     * is walked lazily and the walk stops at the first match.
+     */
+    static boolean isOnStack(String methodName) {
+        return stackWalker.walk(frames -> frames.anyMatch(frame -> frame.getMethodName().contains(methodName)));
+    }
+
+    /**
+     * Forcibly destroys the given process and the processes it started, for example the ssh process of a git fetch,
+     * which would otherwise keep the output streams of the process open.
+     */
+    static void destroyForcibly(Process process) {
+        if (!process.isAlive()) {
+            // looking up the descendants requires a scan of all processes, and those of an exited process are orphaned
+            return;
+        }
+
+        // the descendants must be looked up before the process is destroyed, since orphaned processes are reparented
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+}
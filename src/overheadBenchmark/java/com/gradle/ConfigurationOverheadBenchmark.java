@@ -0,0 +1,415 @@
+package com.gradle;
+
+import org.gradle.testkit.runner.GradleRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the time the plugin adds to the configuration of a build, and to storing and loading the configuration
+ * cache, across Gradle versions.
+ * <p>
+ * Each Gradle version builds a generated project with TestKit, once with only a stub of the Develocity plugin applied
+ * and once with the stub and this plugin applied, so that the difference is the overhead of this plugin. The stub does
+ * no work and never accesses the network. Builds run in a warm daemon that has already run the same build, and in a
+ * cold daemon that is started for each build. The configuration cache is only measured with Gradle 7.4 and newer.
+ * <p>
+ * The settings are read from system properties:
+ * <ul>
+ *     <li><code>benchmark.pluginJar</code>, <code>benchmark.stubJar</code>: the plugin and the Develocity stub</li>
+ *     <li><code>benchmark.gradleVersions</code>: comma-separated Gradle versions</li>
+ *     <li><code>benchmark.gradleDistributions</code>: a directory with Gradle distributions named
+ *     <code>gradle-&lt;version&gt;-bin.zip</code>, to use instead of downloading them (optional)</li>
+ *     <li><code>benchmark.javaHome.&lt;major version&gt;</code>: the Java installations to run each Gradle version with,
+ *     the current Java installation is used if missing</li>
+ *     <li><code>benchmark.samples</code>, <code>benchmark.warmups</code>: the number of measured and warm-up builds</li>
+ *     <li><code>benchmark.subprojects</code>: the number of subprojects of the generated project</li>
+ *     <li><code>benchmark.report</code>: the JSON report to write</li>
+ * </ul>
+ */
+public final class ConfigurationOverheadBenchmark {
+
+    private static final String PLUGIN_ID = "com.gradle.common-custom-user-data-gradle-plugin";
+
+    private final File pluginJar;
+    private final File stubJar;
+    private final File distributions;
+    private final int samples;
+    private final int warmups;
+    private final int subprojects;
+    private final Path workDir;
+
+    private ConfigurationOverheadBenchmark(File pluginJar, File stubJar, File distributions, int samples, int warmups, int subprojects, Path workDir) {
+        this.pluginJar = pluginJar;
+        this.stubJar = stubJar;
+        this.distributions = distributions;
+        this.samples = samples;
+        this.warmups = warmups;
+        this.subprojects = subprojects;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> gradleVersions = Arrays.stream(requiredProperty("benchmark.gradleVersions").split(","))
+            .map(String::trim).filter(version -> !version.isEmpty()).collect(Collectors.toList());
+        Path report = Paths.get(requiredProperty("benchmark.report"));
+        Path workDir = Files.createTempDirectory("ccud-overhead-benchmark");
+        ConfigurationOverheadBenchmark benchmark = new ConfigurationOverheadBenchmark(
+            new File(requiredProperty("benchmark.pluginJar")),
+            new File(requiredProperty("benchmark.stubJar")),
+            System.getProperty("benchmark.gradleDistributions") != null ? new File(System.getProperty("benchmark.gradleDistributions")) : null,
+            Integer.getInteger("benchmark.samples", 5),
+            Integer.getInteger("benchmark.warmups", 3),
+            Integer.getInteger("benchmark.subprojects", 10),
+            workDir
+        );
+
+        Report results = new Report(benchmark.samples);
+        for (String gradleVersion : gradleVersions) {
+            try {
+                benchmark.run(gradleVersion, results);
+            } catch (RuntimeException e) {
+                // an unavailable Gradle or Java version does not prevent measuring the others
+                System.err.println("Failed to benchmark Gradle " + gradleVersion + ": " + e);
+                results.failure(gradleVersion, e);
+            }
+        }
+
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.write(report, results.toJson().getBytes(StandardCharsets.UTF_8));
+        System.out.println(results.summary());
+        System.out.println("Report written to " + report);
+        deleteRecursively(workDir);
+    }
+
+    private void run(String gradleVersion, Report report) {
+        TargetVersion version = TargetVersion.parse(gradleVersion);
+        String javaHome = System.getProperty("benchmark.javaHome." + version.requiredJavaVersion());
+        if (javaHome == null) {
+            System.err.println("No Java " + version.requiredJavaVersion() + " installation configured for Gradle " + gradleVersion + ", using the current Java installation");
+        }
+        // all builds of a version share the directory of the downloaded distribution
+        File testKitDir = workDir.resolve("testkit-" + gradleVersion).toFile();
+
+        for (boolean applied : new boolean[]{false, true}) {
+            Path projectDir = workDir.resolve(gradleVersion + (applied ? "-applied" : "-not-applied"));
+            writeProject(projectDir, version, applied);
+
+            for (Daemon daemon : Daemon.values()) {
+                System.out.println("Benchmarking Gradle " + gradleVersion + ", plugin " + (applied ? "applied" : "not applied") + ", " + daemon.label + " daemon");
+                Builds builds = new Builds(version, projectDir, testKitDir, javaHome, daemon);
+                for (int i = 0; i < (daemon == Daemon.WARM ? warmups : 0); i++) {
+                    builds.configuration();
+                    if (version.supportsConfigurationCache()) {
+                        builds.configurationCacheStore();
+                        builds.configurationCacheLoad();
+                    }
+                }
+
+                List<Double> configuration = new ArrayList<>();
+                List<Double> cacheStore = new ArrayList<>();
+                List<Double> cacheLoad = new ArrayList<>();
+                for (int i = 0; i < samples; i++) {
+                    configuration.add(builds.configuration());
+                    if (version.supportsConfigurationCache()) {
+                        cacheStore.add(builds.configurationCacheStore());
+                        cacheLoad.add(builds.configurationCacheLoad());
+                    }
+                }
+
+                report.add(gradleVersion, applied, daemon, "configuration", configuration);
+                if (version.supportsConfigurationCache()) {
+                    report.add(gradleVersion, applied, daemon, "configuration cache store", cacheStore);
+                    report.add(gradleVersion, applied, daemon, "configuration cache load", cacheLoad);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the builds of a scenario, each build in a new daemon for a cold daemon.
+     */
+    private final class Builds {
+
+        private final TargetVersion version;
+        private final Path projectDir;
+        private final File testKitDir;
+        private final String javaHome;
+        private final Daemon daemon;
+
+        private Builds(TargetVersion version, Path projectDir, File testKitDir, String javaHome, Daemon daemon) {
+            this.version = version;
+            this.projectDir = projectDir;
+            this.testKitDir = testKitDir;
+            this.javaHome = javaHome;
+            this.daemon = daemon;
+            writeGradleProperties(projectDir, javaHome, daemon.label);
+        }
+
+        double configuration() {
+            return build(false);
+        }
+
+        double configurationCacheStore() {
+            deleteRecursively(projectDir.resolve(".gradle/configuration-cache"));
+            return build(true);
+        }
+
+        double configurationCacheLoad() {
+            return build(true);
+        }
+
+        private double build(boolean configurationCache) {
+            if (daemon == Daemon.COLD) {
+                // a daemon is only reused by builds with the same JVM arguments
+                writeGradleProperties(projectDir, javaHome, UUID.randomUUID().toString());
+            }
+            return ConfigurationOverheadBenchmark.this.build(version, projectDir, testKitDir, configurationCache);
+        }
+
+    }
+
+    /**
+     * Runs the <code>help</code> task and returns the time the build took, in milliseconds.
+     */
+    private double build(TargetVersion version, Path projectDir, File testKitDir, boolean configurationCache) {
+        List<String> arguments = new ArrayList<>(Arrays.asList("help", "--offline", "--quiet"));
+        if (configurationCache) {
+            arguments.add("--configuration-cache");
+        }
+        GradleRunner runner = GradleRunner.create()
+            .withProjectDir(projectDir.toFile())
+            .withTestKitDir(testKitDir)
+            .withArguments(arguments);
+        File distribution = distributions != null ? new File(distributions, "gradle-" + version.version + "-bin.zip") : null;
+        runner = distribution != null && distribution.isFile() ? runner.withGradleDistribution(distribution.toURI()) : runner.withGradleVersion(version.version);
+
+        long start = System.nanoTime();
+        runner.build();
+        return (System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private void writeProject(Path projectDir, TargetVersion version, boolean applied) {
+        StringBuilder buildscript = new StringBuilder()
+            .append("buildscript {\n")
+            .append("    dependencies {\n")
+            .append("        classpath files('").append(path(stubJar)).append("', '").append(path(pluginJar)).append("')\n")
+            .append("    }\n")
+            .append("}\n");
+        // before Gradle 6, both plugins are applied to the root project, and Gradle 4 requires the build scan plugin 1.x
+        String develocityPlugin = version.major < 5 ? "com.gradle.build-scan" : "com.gradle.develocity";
+        String plugins = "apply plugin: '" + develocityPlugin + "'\n" + (applied ? "apply plugin: '" + PLUGIN_ID + "'\n" : "");
+
+        StringBuilder settings = new StringBuilder();
+        if (version.major >= 6) {
+            settings.append(buildscript).append(plugins);
+        }
+        settings.append("rootProject.name = 'overhead-benchmark'\n");
+        for (int i = 0; i < subprojects; i++) {
+            settings.append("include 'project").append(i).append("'\n");
+        }
+
+        StringBuilder build = new StringBuilder();
+        if (version.major < 6) {
+            build.append(buildscript).append(plugins);
+        }
+        build.append("subprojects {\n")
+            .append("    apply plugin: 'java'\n")
+            .append("}\n");
+
+        try {
+            Files.createDirectories(projectDir);
+            Files.write(projectDir.resolve("settings.gradle"), settings.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(projectDir.resolve("build.gradle"), build.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        initGitRepository(projectDir);
+    }
+
+    private static void writeGradleProperties(Path projectDir, String javaHome, String daemonId) {
+        StringBuilder properties = new StringBuilder()
+            .append("org.gradle.jvmargs=-Xmx512m -Dccud.benchmark.daemon=").append(daemonId).append('\n');
+        if (javaHome != null) {
+            properties.append("org.gradle.java.home=").append(path(new File(javaHome))).append('\n');
+        }
+        try {
+            Files.write(projectDir.resolve("gradle.properties"), properties.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // the plugin captures git metadata, as for most real builds
+    private static void initGitRepository(Path projectDir) {
+        if (Files.isDirectory(projectDir.resolve(".git"))) {
+            return;
+        }
+        try {
+            git(projectDir, "init", "-q");
+            git(projectDir, "-c", "user.name=benchmark", "-c", "user.email=benchmark@example.com", "commit", "-q", "--allow-empty", "-m", "Initial commit");
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Unable to create a git repository in " + projectDir + ": " + e);
+        }
+    }
+
+    private static void git(Path projectDir, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(projectDir.toFile()).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (process.waitFor() != 0) {
+            throw new IOException("git " + String.join(" ", args) + " failed");
+        }
+    }
+
+    private static String path(File file) {
+        return file.getAbsolutePath().replace('\\', '/');
+    }
+
+    private static String requiredProperty(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing system property " + name);
+        }
+        return value;
+    }
+
+    private static void deleteRecursively(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    enum Daemon {
+        WARM("warm"), COLD("cold");
+
+        private final String label;
+
+        Daemon(String label) {
+            this.label = label;
+        }
+    }
+
+    static final class TargetVersion {
+
+        final String version;
+        final int major;
+        final int minor;
+
+        private TargetVersion(String version, int major, int minor) {
+            this.version = version;
+            this.major = major;
+            this.minor = minor;
+        }
+
+        static TargetVersion parse(String version) {
+            String[] parts = version.split("[.-]");
+            return new TargetVersion(version, Integer.parseInt(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+        }
+
+        boolean isAtLeast(int major, int minor) {
+            return this.major > major || this.major == major && this.minor >= minor;
+        }
+
+        /**
+         * The Java version to run this Gradle version with, the newest long-term support version it supports.
+         */
+        int requiredJavaVersion() {
+            return isAtLeast(8, 5) ? 21 : isAtLeast(7, 3) ? 17 : isAtLeast(6, 0) ? 11 : 8;
+        }
+
+        boolean supportsConfigurationCache() {
+            return isAtLeast(7, 4);
+        }
+
+    }
+
+    static final class Report {
+
+        private final int samples;
+        private final List<String> results = new ArrayList<>();
+        private final List<String> overheads = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+        private final List<String> summary = new ArrayList<>();
+        // the median of the last scenario without the plugin, to compute the overhead of the next scenario
+        private final List<Double> notAppliedMedians = new ArrayList<>();
+
+        Report(int samples) {
+            this.samples = samples;
+        }
+
+        void add(String gradleVersion, boolean applied, Daemon daemon, String phase, List<Double> samplesMs) {
+            List<Double> sorted = samplesMs.stream().sorted().collect(Collectors.toList());
+            double median = sorted.size() % 2 == 1 ? sorted.get(sorted.size() / 2) : (sorted.get(sorted.size() / 2 - 1) + sorted.get(sorted.size() / 2)) / 2;
+            results.add(String.format(Locale.ROOT,
+                "{\"gradleVersion\": %s, \"plugin\": %s, \"daemon\": %s, \"phase\": %s, \"medianMs\": %.1f, \"minMs\": %.1f, \"maxMs\": %.1f, \"samplesMs\": [%s]}",
+                quote(gradleVersion), quote(applied ? "applied" : "not applied"), quote(daemon.label), quote(phase), median, sorted.get(0), sorted.get(sorted.size() - 1),
+                samplesMs.stream().map(sample -> String.format(Locale.ROOT, "%.1f", sample)).collect(Collectors.joining(", "))));
+
+            // scenarios without the plugin are added first, in the same order
+            if (!applied) {
+                notAppliedMedians.add(median);
+            } else {
+                double overhead = median - notAppliedMedians.remove(0);
+                overheads.add(String.format(Locale.ROOT, "{\"gradleVersion\": %s, \"daemon\": %s, \"phase\": %s, \"medianOverheadMs\": %.1f}",
+                    quote(gradleVersion), quote(daemon.label), quote(phase), overhead));
+                summary.add(String.format(Locale.ROOT, "Gradle %-10s %-5s daemon %-26s %8.1f ms median, %+7.1f ms overhead", gradleVersion, daemon.label, phase, median, overhead));
+            }
+        }
+
+        void failure(String gradleVersion, Exception e) {
+            failures.add(String.format(Locale.ROOT, "{\"gradleVersion\": %s, \"error\": %s}", quote(gradleVersion), quote(String.valueOf(e))));
+            notAppliedMedians.clear();
+        }
+
+        String toJson() {
+            return "{\n"
+                + "  \"samples\": " + samples + ",\n"
+                + "  \"results\": [\n    " + String.join(",\n    ", results) + "\n  ],\n"
+                + "  \"overhead\": [\n    " + String.join(",\n    ", overheads) + "\n  ],\n"
+                + "  \"failures\": [\n    " + String.join(",\n    ", failures) + "\n  ]\n"
+                + "}\n";
+        }
+
+        String summary() {
+            return String.join("\n", summary);
+        }
+
+        private static String quote(String value) {
+            StringBuilder quoted = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    quoted.append('\\').append(c);
+                } else if (c < 0x20) {
+                    quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    quoted.append(c);
+                }
+            }
+            return quoted.append('"').toString();
+        }
+
+    }
+
+}
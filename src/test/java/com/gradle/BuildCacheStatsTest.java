@@ -0,0 +1,60 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BuildCacheStatsTest {
+
+    @Test
+    public void summarizesTaskOutcomes() {
+        BuildCacheStats stats = new BuildCacheStats("summarizesTaskOutcomes");
+
+        stats.record(":a", BuildCacheStats.Outcome.FROM_CACHE, 10);
+        stats.record(":b", BuildCacheStats.Outcome.FROM_CACHE, 10);
+        stats.record(":c", BuildCacheStats.Outcome.FROM_CACHE, 10);
+        stats.record(":d", BuildCacheStats.Outcome.EXECUTED, 100);
+        stats.record(":e", BuildCacheStats.Outcome.UP_TO_DATE, 1);
+        stats.record(":f", BuildCacheStats.Outcome.SKIPPED, 0);
+
+        assertEquals("3 from cache, 1 up-to-date, 1 executed, 1 skipped, 0 failed", stats.getTaskSummary());
+        assertEquals("75% of 4 executed or loaded tasks", stats.getHitRateSummary());
+    }
+
+    @Test
+    public void estimatesTimeSavedFromPreviousExecutions() {
+        BuildCacheStats firstBuild = new BuildCacheStats("estimatesTimeSavedFromPreviousExecutions");
+        firstBuild.record(":compileJava", BuildCacheStats.Outcome.EXECUTED, 5000);
+
+        BuildCacheStats secondBuild = new BuildCacheStats("estimatesTimeSavedFromPreviousExecutions");
+        secondBuild.record(":compileJava", BuildCacheStats.Outcome.FROM_CACHE, 200);
+        secondBuild.record(":test", BuildCacheStats.Outcome.FROM_CACHE, 100);
+
+        assertEquals("4.8s estimated for 1 of 2 tasks from cache", secondBuild.getTimeSavedSummary());
+    }
+
+    @Test
+    public void countsConcurrentlyCompletingTasks() throws InterruptedException {
+        BuildCacheStats stats = new BuildCacheStats("countsConcurrentlyCompletingTasks");
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int worker = t;
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    stats.record(":w" + worker + "t" + i, i % 2 == 0 ? BuildCacheStats.Outcome.FROM_CACHE : BuildCacheStats.Outcome.EXECUTED, 1);
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(4000, stats.getFromCache());
+        assertEquals(4000, stats.getExecuted());
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BuildScanBufferTest {
+
+    @Test
+    public void addsDuplicateEntriesOnce() {
+        RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter("https://ge.example.com");
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(10, 100));
+
+        buffer.tag("AI");
+        buffer.value("AI agent", "Codex");
+        buffer.tag("AI");
+        buffer.value("AI agent", "Codex");
+        buffer.value("AI agent", "Cursor");
+        buffer.link("Jenkins build", "https://jenkins/1");
+        buffer.link("Jenkins build", "https://jenkins/1");
+        buffer.flush();
+
+        assertEquals(Arrays.asList("tag AI", "value AI agent=Codex", "value AI agent=Cursor", "link Jenkins build=https://jenkins/1"), develocity.getEntries());
+    }
+
+    @Test
+    public void rendersSearchLinksWithServerLookedUpOnce() {
+        RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter("https://ge.example.com");
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(10, 100));
+
+        buffer.addCustomValueAndSearchLink("CI job", "build");
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("CI run", "5");
+        values.put("CI attempt", "2");
+        buffer.addSearchLink("CI run", values);
+        buffer.flush();
+
+        assertEquals(Arrays.asList(
+            "value CI job=build",
+            "link CI job build scans=https://ge.example.com/scans?search.names=CI+job&search.values=build#selection.buildScanB=%7BSCAN_ID%7D",
+            "link CI run build scans=https://ge.example.com/scans?search.names=CI+attempt%2CCI+run&search.values=2%2C5#selection.buildScanB=%7BSCAN_ID%7D"
+        ), develocity.getEntries());
+        assertEquals(1, develocity.getServerLookups());
+    }
+
+    @Test
+    public void omitsSearchLinksWithoutServer() {
+        RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(10, 100));
+
+        buffer.addCustomValueAndSearchLink("CI job", "build");
+        buffer.flush();
+
+        assertEquals(Arrays.asList("value CI job=build"), develocity.getEntries());
+    }
+
+    @Test
+    public void boundsNumberAndLengthOfValues() {
+        RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(2, 8));
+
+        buffer.value("Git status", "M a.txt\nM b.txt");
+        buffer.value("Git branch", "main");
+        buffer.value("Git commit id", "abc");
+        buffer.flush();
+
+        assertEquals(Arrays.asList("value Git status=M a.t...", "value Git branch=main"), develocity.getEntries());
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import static com.gradle.GitFixtures.write;
+import static com.gradle.Utils.urlEncode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that the bundled providers capture the same metadata as the hand-written capturing that preceded them.
+ */
+public class CiMetadataTest {
+
+    private static final String SERVER = "https://ge.example.com";
+
+    @TempDir
+    File tempDir;
+
+    private final Map<String, String> env = new HashMap<>();
+
+    @Test
+    public void capturesJenkinsMetadata() {
+        env.put("JENKINS_URL", "https://jenkins.example.com/");
+        // Jenkins also sets the variables of Hudson
+        env.put("HUDSON_URL", "https://jenkins.example.com/");
+        env.put("BUILD_URL", "https://jenkins.example.com/job/app/42/");
+        env.put("BUILD_NUMBER", "42");
+        env.put("NODE_NAME", "agent-1");
+        env.put("JOB_NAME", "app");
+        env.put("STAGE_NAME", "Build");
+
+        assertCaptured(
+            "value CI provider=Jenkins",
+            "link Jenkins build=https://jenkins.example.com/job/app/42/",
+            "value CI build number=42",
+            "value CI node=agent-1", searchLink("CI node", "CI node", "agent-1"),
+            "value CI job=app", searchLink("CI job", "CI job", "app"),
+            "value CI stage=Build", searchLink("CI stage", "CI stage", "Build"),
+            "value CI controller=https://jenkins.example.com/",
+            searchLink("CI pipeline", "CI build number,CI job", "42,app")
+        );
+    }
+
+    @Test
+    public void capturesTeamCityMetadata() throws IOException {
+        File configProperties = new File(tempDir, "config.properties");
+        write(configProperties, "teamcity.serverUrl=https://teamcity.example.com\n");
+        File buildProperties = new File(tempDir, "build.properties");
+        write(buildProperties, "teamcity.build.id=17\n"
+            + "teamcity.configuration.properties.file=" + configProperties.getAbsolutePath() + "\n"
+            + "build.number=5\n"
+            + "teamcity.buildType.id=App_Build\n"
+            + "agent.name=Agent 1\n");
+        env.put("TEAMCITY_VERSION", "2024.12");
+        env.put("TEAMCITY_BUILD_PROPERTIES_FILE", buildProperties.getAbsolutePath());
+
+        assertCaptured(
+            "value CI provider=TeamCity",
+            "link TeamCity build=https://teamcity.example.com/viewLog.html?buildId=17",
+            "value CI build number=5",
+            "value CI build config=App_Build", searchLink("CI build config", "CI build config", "App_Build"),
+            "value CI agent=Agent 1", searchLink("CI agent", "CI agent", "Agent 1")
+        );
+    }
+
+    @Test
+    public void capturesGitHubActionsPullRequestMetadata() {
+        env.put("GITHUB_ACTIONS", "true");
+        env.put("GITHUB_WORKFLOW", "CI");
+        env.put("GITHUB_JOB", "build");
+        env.put("GITHUB_ACTION", "run");
+        env.put("GITHUB_RUN_ID", "100");
+        env.put("GITHUB_RUN_ATTEMPT", "2");
+        env.put("GITHUB_RUN_NUMBER", "7");
+        env.put("GITHUB_HEAD_REF", "feature");
+        env.put("GITHUB_BASE_REF", "main");
+        env.put("GITHUB_SERVER_URL", "https://github.com");
+        env.put("GITHUB_REPOSITORY", "acme-inc/app");
+        env.put("GITHUB_REF_NAME", "12/merge");
+
+        assertCaptured(
+            "value CI provider=GitHub Actions",
+            "value CI workflow=CI", searchLink("CI workflow", "CI workflow", "CI"),
+            "value CI job=build", searchLink("CI job", "CI job", "build"),
+            "value CI step=run", searchLink("CI step", "CI step", "run"),
+            "value CI run=100",
+            "value CI run attempt=2",
+            "value CI run number=7",
+            "value PR branch=feature",
+            "value PR base branch=main",
+            "link GitHub Actions build=https://github.com/acme-inc/app/actions/runs/100/attempts/2",
+            "link GitHub pull request=https://github.com/acme-inc/app/pull/12",
+            searchLink("CI run", "CI run,CI run attempt", "100,2")
+        );
+    }
+
+    @Test
+    public void capturesGitHubActionsMetadataWithoutRunAttempt() {
+        env.put("GITHUB_ACTIONS", "true");
+        env.put("GITHUB_RUN_ID", "100");
+        env.put("GITHUB_HEAD_REF", "");
+        env.put("GITHUB_BASE_REF", "");
+        env.put("GITHUB_SERVER_URL", "https://github.com");
+        env.put("GITHUB_REPOSITORY", "acme-inc/app");
+        env.put("GITHUB_REF_NAME", "main");
+
+        assertCaptured(
+            "value CI provider=GitHub Actions",
+            "value CI run=100",
+            "link GitHub Actions build=https://github.com/acme-inc/app/actions/runs/100",
+            searchLink("CI run", "CI run", "100")
+        );
+    }
+
+    @Test
+    public void capturesGitLabMetadata() {
+        env.put("GITLAB_CI", "true");
+        env.put("CI_JOB_URL", "https://gitlab.com/acme-inc/app/-/jobs/3");
+        env.put("CI_PIPELINE_URL", "https://gitlab.com/acme-inc/app/-/pipelines/2");
+        env.put("CI_JOB_NAME", "test");
+        env.put("CI_JOB_STAGE", "verify");
+
+        assertCaptured(
+            "value CI provider=GitLab",
+            "link GitLab build=https://gitlab.com/acme-inc/app/-/jobs/3",
+            "link GitLab pipeline=https://gitlab.com/acme-inc/app/-/pipelines/2",
+            "value CI job=test", searchLink("CI job", "CI job", "test"),
+            "value CI stage=verify", searchLink("CI stage", "CI stage", "verify")
+        );
+    }
+
+    @Test
+    public void capturesBuildkiteMetadata() {
+        env.put("BUILDKITE", "true");
+        env.put("BUILDKITE_BUILD_URL", "https://buildkite.com/acme-inc/app/builds/9");
+        env.put("BUILDKITE_COMMAND", "./gradlew build");
+        env.put("BUILDKITE_BUILD_ID", "0190");
+        env.put("BUILDKITE_PULL_REQUEST_REPO", "git@github.com:acme-inc/app.git");
+        env.put("BUILDKITE_PULL_REQUEST", "12");
+
+        assertCaptured(
+            "value CI provider=Buildkite",
+            "link Buildkite build=https://buildkite.com/acme-inc/app/builds/9",
+            "value CI command=./gradlew build", searchLink("CI command", "CI command", "./gradlew build"),
+            "value CI build ID=0190",
+            "link PR source=https://github.com/acme-inc/app/pull/12"
+        );
+    }
+
+    private void assertCaptured(String... expected) {
+        RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter(SERVER);
+        CiEnvironment ciEnvironment = CiEnvironment.detect(CiProviders.loadBundled(), env::containsKey, false);
+        BuildScanBuffer buildScan = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(100, 1000));
+
+        CiMetadata.capture(buildScan, ciEnvironment.getDetectedProviders(), name -> Optional.ofNullable(env.get(name)), CiMetadataTest::readProperties);
+        buildScan.flush();
+
+        // the order of the entries is not significant
+        List<String> expectedEntries = new ArrayList<>(Arrays.asList(expected));
+        List<String> actualEntries = develocity.getEntries();
+        Collections.sort(expectedEntries);
+        Collections.sort(actualEntries);
+        assertEquals(expectedEntries, actualEntries);
+    }
+
+    private static String searchLink(String label, String names, String values) {
+        return "link " + label + " build scans=" + SERVER + "/scans?search.names=" + urlEncode(names) + "&search.values=" + urlEncode(values) + "#selection.buildScanB=" + urlEncode("{SCAN_ID}");
+    }
+
+    private static Properties readProperties(String path) {
+        try (InputStream input = Files.newInputStream(Paths.get(path))) {
+            Properties properties = new Properties();
+            properties.load(input);
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
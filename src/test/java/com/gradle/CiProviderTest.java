@@ -0,0 +1,103 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CiProviderTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void loadsBundledProviders() {
+        List<String> ids = CiProviders.loadBundled().stream().map(CiProvider::getId).collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("azure", "bamboo", "bitrise", "buildkite", "circleci", "github", "gitlab", "gocd", "hudson", "jenkins", "teamcity", "travis"), ids);
+    }
+
+    @Test
+    public void resolvesTemplatesOnlyIfAllVariablesAreSet() {
+        CiProvider.Template template = CiProvider.Template.parse("${SERVER}/builds/${BUILD_ID}");
+        Map<String, String> env = new HashMap<>();
+        env.put("SERVER", "https://ci.example.com");
+
+        assertEquals(Optional.empty(), template.resolve(name -> Optional.ofNullable(env.get(name))));
+
+        env.put("BUILD_ID", "");
+        assertEquals(Optional.empty(), template.resolve(name -> Optional.ofNullable(env.get(name))));
+
+        env.put("BUILD_ID", "42");
+        assertEquals(Optional.of("https://ci.example.com/builds/42"), template.resolve(name -> Optional.ofNullable(env.get(name))));
+    }
+
+    @Test
+    public void detectsPullRequestBuilds() {
+        CiProvider github = CiProviders.loadBundled().stream().filter(p -> p.getId().equals("github")).findFirst().orElseThrow(AssertionError::new);
+        Map<String, String> env = new HashMap<>();
+        env.put("GITHUB_BASE_REF", "");
+
+        assertEquals(Optional.empty(), github.getPullRequest().resolve(name -> Optional.ofNullable(env.get(name))));
+
+        env.put("GITHUB_BASE_REF", "main");
+        assertEquals(Optional.of("main"), github.getPullRequest().resolve(name -> Optional.ofNullable(env.get(name))));
+    }
+
+    @Test
+    public void addsAndReplacesProvidersFromFile() throws IOException {
+        File file = new File(tempDir, "ci-providers.properties");
+        String content = "acme.name=Acme CI\n"
+            + "acme.detect=ACME_BUILD_URL\n"
+            + "acme.link.Acme\\ build=${ACME_BUILD_URL}\n"
+            + "acme.searchValue.CI\\ job=${ACME_JOB}\n"
+            + "travis.name=Travis CI\n"
+            + "travis.detect=TRAVIS\n";
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        List<File> readFiles = new ArrayList<>();
+        Map<String, CiProvider> providers = CiProviders.load(file, FileContentsProviders.recordingReadsTo(readFiles)).stream().collect(Collectors.toMap(CiProvider::getId, p -> p));
+
+        assertEquals(13, providers.size());
+        assertEquals("ACME_BUILD_URL", providers.get("acme").getDetectionVariable());
+        assertEquals(Arrays.asList("Acme build"), Arrays.asList(providers.get("acme").getLinks().keySet().toArray()));
+        assertEquals(Arrays.asList("CI job"), Arrays.asList(providers.get("acme").getSearchValues().keySet().toArray()));
+        assertEquals("Travis CI", providers.get("travis").getName());
+        assertEquals(0, providers.get("travis").getLinks().size());
+        // read as a configuration cache input
+        assertEquals(Collections.singletonList(file), readFiles);
+    }
+
+    @Test
+    public void fallsBackToBundledProvidersIfFileCannotBeRead() throws IOException {
+        File invalid = new File(tempDir, "invalid.properties");
+        Files.write(invalid.toPath(), "acme.name=Acme CI\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(CiProviders.loadBundled(), CiProviders.load(new File(tempDir, "missing.properties"), FileContentsProviders.recordingReadsTo(new ArrayList<>())));
+        assertEquals(CiProviders.loadBundled(), CiProviders.load(invalid, FileContentsProviders.recordingReadsTo(new ArrayList<>())));
+    }
+
+    @Test
+    public void rejectsProviderWithoutDetectionVariable() {
+        Properties properties = new Properties();
+        properties.setProperty("acme.name", "Acme CI");
+
+        assertThrows(IllegalArgumentException.class, () -> CiProvider.parse(properties));
+    }
+
+}
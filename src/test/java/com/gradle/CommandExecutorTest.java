@@ -0,0 +1,86 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandExecutorTest {
+
+    @Test
+    public void drainsStandardErrorWhileReadingStandardOutput() {
+        // writes more to stderr than fits into a pipe buffer before writing to stdout
+        String script = "head -c 1000000 /dev/zero >&2; echo done";
+
+        String output = new CommandExecutor(Duration.ofSeconds(5), null).execAndGetStdOut(null, "sh", "-c", script);
+
+        assertEquals("done", output);
+    }
+
+    @Test
+    public void capsStandardOutput() {
+        String script = "head -c " + (CommandExecutor.MAX_OUTPUT_BYTES * 2) + " /dev/zero";
+
+        CommandExecutor.Execution execution = CommandExecutor.withDefaultTimeout().execute(null, "sh", "-c", script);
+
+        assertTrue(execution.isSuccessful());
+        assertTrue(execution.isTruncated());
+        assertEquals(CommandExecutor.MAX_OUTPUT_BYTES, execution.getStdOut().length());
+    }
+
+    @Test
+    public void stopsCommandOnceEnoughOutputHasBeenRead() {
+        AtomicInteger lines = new AtomicInteger();
+
+        CommandExecutor.Execution execution = CommandExecutor.withDefaultTimeout().executeAndStreamLinesWhile(null, line -> lines.incrementAndGet() < 3, "yes");
+
+        assertEquals(CommandExecutor.Execution.Outcome.STOPPED, execution.getOutcome());
+        assertEquals(3, lines.get());
+    }
+
+    @Test
+    public void stopsCommandAfterTimeout() {
+        CommandExecutor executor = new CommandExecutor(Duration.ofMillis(200), null);
+
+        CommandExecutor.Execution execution = executor.execute(null, "sleep", "10");
+
+        assertEquals(CommandExecutor.Execution.Outcome.TIMED_OUT, execution.getOutcome());
+        assertTrue(execution.getDuration().compareTo(Duration.ofSeconds(5)) < 0);
+    }
+
+    @Test
+    public void failsCommandWhoseOutputIsKeptOpenByChildProcess() {
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+
+        String output = executor.execAndGetStdOut(null, "sh", "-c", "sleep 3 & echo partial");
+
+        assertNull(output);
+        assertEquals(CommandExecutor.Execution.Outcome.FAILED, executor.getExecutions().get(0).getOutcome());
+    }
+
+    @Test
+    public void doesNotStartCommandsAfterOverallDeadline() {
+        CommandExecutor executor = new CommandExecutor(Duration.ofSeconds(10), Duration.ofMillis(200));
+
+        executor.execute(null, "sleep", "10");
+        CommandExecutor.Execution execution = executor.execute(null, "echo", "too late");
+
+        assertEquals(CommandExecutor.Execution.Outcome.NOT_STARTED, execution.getOutcome());
+        assertEquals(2, executor.getExecutions().size());
+    }
+
+    @Test
+    public void reportsCommandsThatCannotBeStarted() {
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+
+        assertNull(executor.execAndGetStdOut(null, "ccud-command-that-does-not-exist"));
+        assertFalse(executor.execAndCheckSuccess(null, "ccud-command-that-does-not-exist"));
+        assertEquals(CommandExecutor.Execution.Outcome.NOT_STARTED, executor.getExecutions().get(0).getOutcome());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DaemonCacheTest {
+
+    @Test
+    public void computesAgainOnlyWhenKeyChanges() {
+        DaemonCache<String, String> cache = new DaemonCache<>(10);
+        AtomicInteger computations = new AtomicInteger();
+
+        assertEquals("value-1", cache.computeIfAbsent("repo", "key-1", counting(computations)));
+        assertEquals("value-1", cache.computeIfAbsent("repo", "key-1", counting(computations)));
+        assertEquals("value-2", cache.computeIfAbsent("repo", "key-2", counting(computations)));
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void doesNotCacheNullValues() {
+        DaemonCache<String, String> cache = new DaemonCache<>(10);
+        AtomicInteger computations = new AtomicInteger();
+        Supplier<String> failing = () -> {
+            computations.incrementAndGet();
+            return null;
+        };
+
+        assertNull(cache.computeIfAbsent("repo", "key", failing));
+        assertNull(cache.computeIfAbsent("repo", "key", failing));
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsedValues() {
+        DaemonCache<String, String> cache = new DaemonCache<>(2);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.computeIfAbsent("a", "key", counting(computations));
+        cache.computeIfAbsent("b", "key", counting(computations));
+        cache.computeIfAbsent("a", "key", counting(computations));
+        cache.computeIfAbsent("c", "key", counting(computations));
+        assertEquals(3, computations.get());
+
+        // b was used least recently and has been dropped, a is still cached
+        cache.computeIfAbsent("a", "key", counting(computations));
+        assertEquals(3, computations.get());
+        cache.computeIfAbsent("b", "key", counting(computations));
+        assertEquals(4, computations.get());
+    }
+
+    @Test
+    public void dropsIdleValues() {
+        AtomicLong now = new AtomicLong(0);
+        DaemonCache<String, String> cache = new DaemonCache<>(10, now::get);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.computeIfAbsent("repo", "key", counting(computations));
+        now.addAndGet(DaemonCache.IDLE_TIMEOUT_MILLIS);
+        cache.computeIfAbsent("repo", "key", counting(computations));
+        assertEquals(1, computations.get());
+
+        now.addAndGet(DaemonCache.IDLE_TIMEOUT_MILLIS + 1);
+        cache.computeIfAbsent("repo", "key", counting(computations));
+        assertEquals(2, computations.get());
+    }
+
+    private static Supplier<String> counting(AtomicInteger computations) {
+        return () -> "value-" + computations.incrementAndGet();
+    }
+
+}
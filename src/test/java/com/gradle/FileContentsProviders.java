@@ -0,0 +1,50 @@
+package com.gradle;
+
+import org.gradle.api.file.FileContents;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static com.gradle.RecordingDevelocityAdapter.proxy;
+
+/**
+ * A provider factory that only reads files, recording which ones have been read as configuration cache inputs.
+ */
+final class FileContentsProviders {
+
+    private FileContentsProviders() {
+    }
+
+    // the system properties and environment variables are read directly as of Gradle 7.4
+    static ProviderFactory recordingReadsTo(List<File> readFiles) {
+        return proxy(ProviderFactory.class, (method, args) -> {
+            if (!method.equals("fileContents")) {
+                throw new UnsupportedOperationException(method);
+            }
+            File file = ((RegularFile) args[0]).getAsFile();
+            readFiles.add(file);
+            return proxy(FileContents.class, (contentsMethod, contentsArgs) -> {
+                if (!contentsMethod.equals("getAsBytes")) {
+                    throw new UnsupportedOperationException(contentsMethod);
+                }
+                return proxy(Provider.class, (providerMethod, providerArgs) -> {
+                    if (!providerMethod.equals("getOrNull")) {
+                        throw new UnsupportedOperationException(providerMethod);
+                    }
+                    try {
+                        return file.exists() ? Files.readAllBytes(file.toPath()) : null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            });
+        });
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import static com.gradle.GitFixtures.commit;
+import static com.gradle.GitFixtures.git;
+import static com.gradle.GitFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitChangeSetTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void countsChangesSinceMergeBase() throws IOException {
+        File repo = initRepo();
+        git(repo, "checkout", "-b", "feature");
+        write(new File(repo, "a.txt"), "1\n2\n3\n");
+        write(new File(repo, "b.txt"), "1\n");
+        commit(repo, "commit");
+        git(repo, "checkout", "main");
+        write(new File(repo, "c.txt"), "changed on the base branch\n");
+        commit(repo, "commit");
+        git(repo, "checkout", "feature");
+
+        GitChangeSet changeSet = GitChangeSet.read(CommandExecutor.withDefaultTimeout(), repo, "main", GitChangeSet.DEFAULT_MAX_FILES).get();
+
+        assertEquals(2, changeSet.getFiles());
+        assertEquals(Optional.of(4L), changeSet.getLines());
+        assertFalse(changeSet.isLimitReached());
+    }
+
+    @Test
+    public void stopsCountingAtLimit() throws IOException {
+        File repo = initRepo();
+        git(repo, "checkout", "-b", "feature");
+        for (int i = 0; i < 50; i++) {
+            write(new File(repo, "file" + i + ".txt"), "content\n");
+        }
+        commit(repo, "commit");
+
+        GitChangeSet changeSet = GitChangeSet.read(CommandExecutor.withDefaultTimeout(), repo, "main", 10).get();
+
+        assertEquals(10, changeSet.getFiles());
+        assertEquals(Optional.empty(), changeSet.getLines());
+        assertTrue(changeSet.isLimitReached());
+    }
+
+    @Test
+    public void doesNotReportLimitForChangeOfExactlyMaxFiles() throws IOException {
+        File repo = initRepo();
+        git(repo, "checkout", "-b", "feature");
+        for (int i = 0; i < 10; i++) {
+            write(new File(repo, "file" + i + ".txt"), "content\n");
+        }
+        commit(repo, "commit");
+
+        GitChangeSet changeSet = GitChangeSet.read(CommandExecutor.withDefaultTimeout(), repo, "main", 10).get();
+
+        assertEquals(10, changeSet.getFiles());
+        assertEquals(Optional.of(10L), changeSet.getLines());
+        assertFalse(changeSet.isLimitReached());
+    }
+
+    @Test
+    public void ignoresUnknownBaseBranch() throws IOException {
+        File repo = initRepo();
+
+        assertFalse(GitChangeSet.read(CommandExecutor.withDefaultTimeout(), repo, "does-not-exist", GitChangeSet.DEFAULT_MAX_FILES).isPresent());
+    }
+
+    private File initRepo() throws IOException {
+        return GitFixtures.initRepo(tempDir, "repo");
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.gradle.GitFixtures.assertMatchesGit;
+import static com.gradle.GitFixtures.git;
+import static com.gradle.GitFixtures.initEmptyRepo;
+import static com.gradle.GitFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitCommandMetadataReaderTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void readsMetadataWithSingleRevParse() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+
+        GitMetadata metadata = GitCommandMetadataReader.read(CommandExecutor.withDefaultTimeout(), repo).get();
+
+        assertMatchesGit(repo, metadata);
+        assertEquals(Arrays.asList("origin"), metadata.getRemotes());
+    }
+
+    @Test
+    public void readsDetachedHeadFromSubdirectory() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "checkout", "--detach");
+        File subdir = new File(repo, "nested");
+        assertTrue(subdir.mkdirs());
+
+        GitMetadata metadata = GitCommandMetadataReader.read(CommandExecutor.withDefaultTimeout(), subdir).get();
+
+        assertMatchesGit(subdir, metadata);
+        assertEquals("HEAD", metadata.getBranchName());
+    }
+
+    @Test
+    public void readsWorktree() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://gitlab.com/acme-inc/my-project.git");
+        File worktree = new File(tempDir, "worktree");
+        git(repo, "worktree", "add", "-b", "feature", worktree.getAbsolutePath());
+
+        assertMatchesGit(worktree, GitCommandMetadataReader.read(CommandExecutor.withDefaultTimeout(), worktree).get());
+    }
+
+    @Test
+    public void readsRemoteFromGitIfConfigCannotBeParsed() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+        Files.write(new File(repo, ".git/config").toPath(), "[include]\n\tpath = other.config\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        GitMetadata metadata = GitCommandMetadataReader.read(CommandExecutor.withDefaultTimeout(), repo).get();
+
+        assertMatchesGit(repo, metadata);
+        assertNull(metadata.getRemotes());
+    }
+
+    @Test
+    public void readsRemoteOfRepositoryWithoutCommits() throws IOException {
+        File repo = initEmptyRepo(tempDir, "repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+
+        GitMetadata metadata = GitCommandMetadataReader.read(CommandExecutor.withDefaultTimeout(), repo).get();
+
+        assertEquals("https://github.com/acme-inc/my-project.git", metadata.getRepositoryUrl());
+        assertNull(metadata.getCommitId());
+        assertNull(metadata.getBranchName());
+    }
+
+    @Test
+    public void readsRemoteFromGitIfConfigIsOverriddenByEnvironment() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+        // git reports a different URL than the parsed config file, as when the environment adds config entries
+        File otherGitDir = new File(repo, "other");
+        assertTrue(otherGitDir.mkdirs());
+        write(new File(otherGitDir, "config"), "[remote \"origin\"]\n\turl = https://github.com/acme-inc/other-project.git\n");
+        String output = "other\nother\n" + git(repo, "rev-parse", "HEAD") + "\nmain";
+
+        GitMetadata fromConfigFile = GitCommandMetadataReader.parse(CommandExecutor.withDefaultTimeout(), repo, output, false);
+        GitMetadata fromGit = GitCommandMetadataReader.parse(CommandExecutor.withDefaultTimeout(), repo, output, true);
+
+        assertEquals("https://github.com/acme-inc/other-project.git", fromConfigFile.getRepositoryUrl());
+        assertEquals("https://github.com/acme-inc/my-project.git", fromGit.getRepositoryUrl());
+        assertNull(fromGit.getRemotes());
+    }
+
+    @Test
+    public void parsesRevParseOutput() {
+        String output = ".git\n.git\n0123456789abcdef0123456789abcdef01234567\nmain";
+
+        GitMetadata metadata = GitCommandMetadataReader.parse(CommandExecutor.withDefaultTimeout(), tempDir, output, false);
+
+        assertEquals("0123456789abcdef0123456789abcdef01234567", metadata.getCommitId());
+        assertEquals("01234567", metadata.getCommitShortId());
+        assertEquals("main", metadata.getBranchName());
+        assertNull(metadata.getRepositoryUrl());
+    }
+
+    private File initRepo(String name) throws IOException {
+        return GitFixtures.initRepo(tempDir, name);
+    }
+
+}
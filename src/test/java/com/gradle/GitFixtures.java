@@ -0,0 +1,88 @@
+package com.gradle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Creates git repositories for tests, independent of the git configuration of the machine running them.
+ */
+final class GitFixtures {
+
+    private GitFixtures() {
+    }
+
+    /**
+     * Creates a repository on the branch <code>main</code> with a single empty commit.
+     */
+    static File initRepo(File parentDir, String name) throws IOException {
+        File repo = initEmptyRepo(parentDir, name);
+        commit(repo, "initial commit");
+        return repo;
+    }
+
+    /**
+     * Creates a repository on the branch <code>main</code> without any commits.
+     */
+    static File initEmptyRepo(File parentDir, String name) throws IOException {
+        File repo = new File(parentDir, name);
+        git(parentDir, "init", "-b", "main", repo.getAbsolutePath());
+        return repo;
+    }
+
+    /**
+     * Commits all changes of the working tree, or creates an empty commit if there are none.
+     */
+    static void commit(File repo, String message) throws IOException {
+        git(repo, "add", "--all");
+        git(repo, "-c", "user.name=Test", "-c", "user.email=test@example.com", "-c", "commit.gpgsign=false", "commit", "--allow-empty", "-m", message);
+    }
+
+    static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Asserts that the metadata matches what the git commands of the baseline implementation return for the directory.
+     */
+    static void assertMatchesGit(File dir, GitMetadata metadata) throws IOException {
+        assertEquals(git(dir, "rev-parse", "--verify", "HEAD"), metadata.getCommitId());
+        assertEquals(git(dir, "rev-parse", "--short=8", "--verify", "HEAD"), metadata.getCommitShortId());
+        assertEquals(git(dir, "rev-parse", "--abbrev-ref", "HEAD"), metadata.getBranchName());
+        assertEquals(git(dir, "config", "--get", "remote.origin.url"), metadata.getRepositoryUrl());
+    }
+
+    /**
+     * Runs git and returns its trimmed standard output, or null if it failed.
+     */
+    static String git(File dir, String... args) throws IOException {
+        List<String> command = new ArrayList<>(Arrays.asList(args));
+        command.add(0, "git");
+        Process process = new ProcessBuilder(command).directory(dir).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            String output = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8).trim();
+            return process.waitFor() == 0 ? output : null;
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+}
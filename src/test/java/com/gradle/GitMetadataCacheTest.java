@@ -0,0 +1,105 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.gradle.GitFixtures.git;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitMetadataCacheTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void servesUnchangedRepositoryFromCache() throws IOException {
+        File repo = initRepo();
+        GitMetadataCache cache = new GitMetadataCache(new File(tempDir, "cache"));
+        AtomicInteger reads = new AtomicInteger();
+
+        Optional<GitMetadata> first = cache.computeIfAbsent(repo, countingReader(repo, reads));
+        Optional<GitMetadata> second = new GitMetadataCache(new File(tempDir, "cache")).computeIfAbsent(repo, countingReader(repo, reads));
+
+        assertEquals(1, reads.get());
+        assertEquals(first.map(GitMetadata::getCommitId), second.map(GitMetadata::getCommitId));
+        assertEquals(first.map(GitMetadata::getBranchName), second.map(GitMetadata::getBranchName));
+        assertEquals(first.map(GitMetadata::getRepositoryUrl), second.map(GitMetadata::getRepositoryUrl));
+        assertEquals(first.map(GitMetadata::getRemotes), second.map(GitMetadata::getRemotes));
+    }
+
+    @Test
+    public void readsAgainAfterCommit() throws IOException {
+        File repo = initRepo();
+        GitMetadataCache cache = new GitMetadataCache(new File(tempDir, "cache"));
+        AtomicInteger reads = new AtomicInteger();
+        Optional<GitMetadata> before = cache.computeIfAbsent(repo, countingReader(repo, reads));
+
+        commit(repo);
+        ageStateFiles(repo);
+        Optional<GitMetadata> after = cache.computeIfAbsent(repo, countingReader(repo, reads));
+
+        assertEquals(2, reads.get());
+        assertEquals(Optional.ofNullable(git(repo, "rev-parse", "HEAD")), after.map(GitMetadata::getCommitId));
+        assertNotEquals(before.map(GitMetadata::getCommitId), after.map(GitMetadata::getCommitId));
+    }
+
+    @Test
+    public void doesNotCacheRecentlyModifiedRepository() throws IOException {
+        File repo = initRepo();
+        commit(repo);
+        GitMetadataCache cache = new GitMetadataCache(new File(tempDir, "cache"));
+        AtomicInteger reads = new AtomicInteger();
+
+        cache.computeIfAbsent(repo, countingReader(repo, reads));
+        cache.computeIfAbsent(repo, countingReader(repo, reads));
+
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws IOException {
+        File repo = initRepo();
+        File cacheDir = new File(tempDir, "cache");
+        GitMetadataCache cache = new GitMetadataCache(cacheDir);
+        for (int i = 0; i < GitMetadataCache.MAX_ENTRIES + 10; i++) {
+            File projectDir = new File(repo, "project" + i);
+            assertTrue(projectDir.mkdir());
+            cache.computeIfAbsent(projectDir, () -> GitMetadataReader.read(projectDir));
+        }
+
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(".properties"));
+        assertEquals(GitMetadataCache.MAX_ENTRIES, entries != null ? entries.length : 0);
+    }
+
+    private File initRepo() throws IOException {
+        File repo = GitFixtures.initRepo(tempDir, "repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+        ageStateFiles(repo);
+        return repo;
+    }
+
+    private static void commit(File repo) throws IOException {
+        GitFixtures.commit(repo, "commit");
+    }
+
+    private static void ageStateFiles(File repo) {
+        long past = System.currentTimeMillis() - 60_000;
+        GitMetadataReader.stateFiles(repo).ifPresent(files -> files.forEach(f -> f.setLastModified(past)));
+    }
+
+    private static Supplier<Optional<GitMetadata>> countingReader(File repo, AtomicInteger reads) {
+        return () -> {
+            reads.incrementAndGet();
+            return GitMetadataReader.read(repo);
+        };
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.gradle.GitFixtures.assertMatchesGit;
+import static com.gradle.GitFixtures.commit;
+import static com.gradle.GitFixtures.git;
+import static com.gradle.GitFixtures.initEmptyRepo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitMetadataReaderTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void readsBranchCommitAndRemote() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://github.com/acme-inc/my-project.git");
+        git(repo, "remote", "add", "upstream", "git@github.com:acme-inc/my-project.git");
+
+        GitMetadata metadata = GitMetadataReader.read(repo).orElseThrow(AssertionError::new);
+
+        assertMatchesGit(repo, metadata);
+        assertEquals("https://github.com/acme-inc/my-project.git", metadata.getRepositoryUrl());
+        assertEquals(Arrays.asList("origin", "upstream"), metadata.getRemotes());
+    }
+
+    @Test
+    public void readsFromSubdirectory() throws IOException {
+        File repo = initRepo("repo");
+        File subdir = new File(repo, "nested/project");
+        assertTrue(subdir.mkdirs());
+
+        assertMatchesGit(subdir, GitMetadataReader.read(subdir).orElseThrow(AssertionError::new));
+    }
+
+    @Test
+    public void readsDetachedHead() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "checkout", "--detach");
+
+        GitMetadata metadata = GitMetadataReader.read(repo).orElseThrow(AssertionError::new);
+
+        assertMatchesGit(repo, metadata);
+        assertEquals("HEAD", metadata.getBranchName());
+    }
+
+    @Test
+    public void readsPackedRefs() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "pack-refs", "--all");
+        assertFalse(new File(repo, ".git/refs/heads/main").exists());
+
+        assertMatchesGit(repo, GitMetadataReader.read(repo).orElseThrow(AssertionError::new));
+    }
+
+    @Test
+    public void readsAmbiguousBranchName() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "tag", "main");
+
+        GitMetadata metadata = GitMetadataReader.read(repo).orElseThrow(AssertionError::new);
+
+        assertMatchesGit(repo, metadata);
+        assertEquals("heads/main", metadata.getBranchName());
+    }
+
+    @Test
+    public void readsWorktree() throws IOException {
+        File repo = initRepo("repo");
+        git(repo, "remote", "add", "origin", "https://gitlab.com/acme-inc/my-project.git");
+        File worktree = new File(tempDir, "worktree");
+        git(repo, "worktree", "add", "-b", "feature", worktree.getAbsolutePath());
+        commit(worktree, "feature commit");
+
+        GitMetadata metadata = GitMetadataReader.read(worktree).orElseThrow(AssertionError::new);
+
+        assertMatchesGit(worktree, metadata);
+        assertEquals("feature", metadata.getBranchName());
+        assertEquals("https://gitlab.com/acme-inc/my-project.git", metadata.getRepositoryUrl());
+    }
+
+    @Test
+    public void readsRepositoryWithoutCommits() throws IOException {
+        File repo = initEmptyRepo(tempDir, "repo");
+
+        GitMetadata metadata = GitMetadataReader.read(repo).orElseThrow(AssertionError::new);
+
+        assertNull(metadata.getCommitId());
+        assertNull(metadata.getCommitShortId());
+        assertNull(metadata.getBranchName());
+    }
+
+    @Test
+    public void readsQuotedAndCommentedConfigValues() throws IOException {
+        File repo = initRepo("repo");
+        appendToConfig(repo, "[remote \"origin\"] # comment\n\turl = \"https://github.com/acme-inc/my project.git\" ; comment\n");
+
+        assertEquals(git(repo, "config", "--get", "remote.origin.url"), GitMetadataReader.read(repo).map(GitMetadata::getRepositoryUrl).orElse(null));
+    }
+
+    @Test
+    public void fallsBackOnIncludedConfig() throws IOException {
+        File repo = initRepo("repo");
+        appendToConfig(repo, "[include]\n\tpath = other.config\n");
+
+        assertEquals(Optional.empty(), GitMetadataReader.read(repo));
+        assertEquals(Optional.empty(), GitMetadataReader.stateFiles(repo));
+    }
+
+    @Test
+    public void fallsBackOnUnsupportedRefStorage() throws IOException {
+        File repo = initRepo("repo");
+        appendToConfig(repo, "[extensions]\n\trefStorage = reftable\n");
+
+        assertEquals(Optional.empty(), GitMetadataReader.read(repo));
+        assertEquals(Optional.empty(), GitMetadataReader.stateFiles(repo));
+    }
+
+    @Test
+    public void doesNotCacheUnsupportedRefStorage() throws IOException {
+        // git versions without reftable support ignore the extension of repository format version 0
+        File repo = initRepo("repo");
+        appendToConfig(repo, "[extensions]\n\trefStorage = reftable\n");
+        GitMetadataCache cache = new GitMetadataCache(new File(tempDir, "cache"));
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+        Supplier<Optional<GitMetadata>> reader = () -> GitCommandMetadataReader.read(executor, repo);
+        // with the reftable ref storage, commits do not change any of the files of the files ref storage
+        File[] filesRefStorage = {new File(repo, ".git/HEAD"), new File(repo, ".git/refs/heads/main"), new File(repo, ".git/packed-refs"), new File(repo, ".git/config")};
+        long past = System.currentTimeMillis() - 60_000;
+        Arrays.stream(filesRefStorage).forEach(f -> f.setLastModified(past));
+        cache.computeIfAbsent(repo, reader);
+
+        commit(repo, "second commit");
+        Arrays.stream(filesRefStorage).forEach(f -> f.setLastModified(past));
+
+        assertEquals(Optional.ofNullable(git(repo, "rev-parse", "HEAD")), cache.computeIfAbsent(repo, reader).map(GitMetadata::getCommitId));
+    }
+
+    @Test
+    public void returnsEmptyOutsideOfRepository() {
+        assertEquals(Optional.empty(), GitMetadataReader.read(tempDir));
+    }
+
+    private File initRepo(String name) throws IOException {
+        return GitFixtures.initRepo(tempDir, name);
+    }
+
+    private static void appendToConfig(File repo, String content) throws IOException {
+        Files.write(new File(repo, ".git/config").toPath(), content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.gradle.GitFixtures.git;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitRepositoriesTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void findsSubmodulesAndRepositoriesOfIncludedBuilds() throws IOException {
+        File root = initRepo("root");
+        File library = initRepo("library");
+        git(root, "-c", "protocol.file.allow=always", "submodule", "add", library.getAbsolutePath(), "libs/library");
+        File plugins = initRepo("plugins");
+        File buildLogic = new File(root, "build-logic");
+        assertTrue(buildLogic.mkdirs());
+
+        Map<String, File> includedBuilds = new HashMap<>();
+        includedBuilds.put("plugins", plugins);
+        // included builds within the root repository or a submodule are not captured separately
+        includedBuilds.put("build-logic", buildLogic);
+        includedBuilds.put("library", new File(root, "libs/library"));
+
+        Map<String, File> repositories = GitRepositories.find(root, includedBuilds);
+
+        assertEquals(Arrays.asList("libs/library", "plugins"), new ArrayList<>(repositories.keySet()));
+        assertEquals(new File(root, "libs/library"), repositories.get("libs/library"));
+        assertEquals(plugins, repositories.get("plugins"));
+    }
+
+    private File initRepo(String name) throws IOException {
+        return GitFixtures.initRepo(tempDir, name);
+    }
+
+}
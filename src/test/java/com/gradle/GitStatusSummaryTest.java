@@ -0,0 +1,59 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.gradle.GitFixtures.initEmptyRepo;
+import static com.gradle.GitFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitStatusSummaryTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void countsChangesPerType() {
+        GitStatusSummary summary = GitStatusSummary.of(" M modified.txt\nM  staged.txt\nA  added.txt\n D deleted.txt\nR  old.txt -> new.txt\n?? untracked.txt", 10);
+
+        assertEquals(6, summary.getTotal());
+        assertEquals("3 modified, 1 added, 1 deleted, 1 untracked", summary.getCounts());
+    }
+
+    @Test
+    public void keepsOnlyFirstPaths() {
+        GitStatusSummary summary = GitStatusSummary.of("?? a.txt\n?? b.txt\n?? c.txt", 2);
+
+        assertEquals("?? a.txt\n?? b.txt\n... and 1 more", summary.getPaths());
+    }
+
+    @Test
+    public void hashesAllPaths() {
+        String hash = GitStatusSummary.of("?? a.txt\n?? b.txt\n?? c.txt", 1).getHash();
+
+        assertEquals(hash, GitStatusSummary.of("?? a.txt\n?? b.txt\n?? c.txt", 2).getHash());
+        assertNotEquals(hash, GitStatusSummary.of("?? a.txt\n?? b.txt\n?? d.txt", 1).getHash());
+    }
+
+    @Test
+    public void summarizesStreamedStatus() throws IOException {
+        File repo = initEmptyRepo(tempDir, "repo");
+        for (int i = 0; i < 1000; i++) {
+            write(new File(repo, "file" + i + ".txt"), "content");
+        }
+
+        GitStatusSummary summary = new GitStatusSummary(GitStatusSummary.DEFAULT_MAX_PATHS);
+        CommandExecutor.Execution execution = CommandExecutor.withDefaultTimeout().executeAndStreamLines(repo, summary, "git", "status", "--porcelain", "--untracked-files=all");
+
+        assertTrue(execution.isSuccessful());
+        assertEquals("0 modified, 0 added, 0 deleted, 1000 untracked", summary.getCounts());
+        assertEquals(GitStatusSummary.DEFAULT_MAX_PATHS + 1, summary.getPaths().split("\n").length);
+        assertEquals("", execution.getStdOut());
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static com.gradle.GitFixtures.commit;
+import static com.gradle.GitFixtures.git;
+import static com.gradle.GitFixtures.initEmptyRepo;
+import static com.gradle.GitFixtures.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GitStatusTrackerTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void reportsSameStatusAsGitImmediatelyAfterChanges() throws IOException {
+        File repo = initRepo();
+        String headCommitId = git(repo, "rev-parse", "HEAD");
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        write(new File(repo, "tracked.txt"), "modified");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        assertTrue(new File(repo, "build/classes").mkdirs());
+        write(new File(repo, "build/classes/output.bin"), "ignored");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        write(new File(repo, "untracked.txt"), "untracked");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        git(repo, "add", "untracked.txt");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+    }
+
+    @Test
+    public void doesNotRescanUnchangedWorkingTree() throws IOException {
+        File repo = initRepo();
+        String headCommitId = git(repo, "rev-parse", "HEAD");
+        assertTrue(new File(repo, "build").mkdirs());
+        write(new File(repo, "build/output.bin"), "ignored");
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+        // the first scan determines the ignored paths, the second one covers changes made before watching started
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        int scans = executor.getExecutions().size();
+
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        write(new File(repo, "build/output.bin"), "changed");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        assertEquals(scans, executor.getExecutions().size());
+    }
+
+    @Test
+    public void detectsChangesToDirectoriesNoLongerIgnored() throws IOException {
+        File repo = initRepo();
+        String headCommitId = git(repo, "rev-parse", "HEAD");
+        assertTrue(new File(repo, "build/generated").mkdirs());
+        write(new File(repo, "build/generated/source.txt"), "ignored");
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        write(new File(repo, ".gitignore"), "build/*\n!build/generated/\n");
+        git(repo, "add", "build/generated/source.txt");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        write(new File(repo, "build/generated/source.txt"), "no longer ignored");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+    }
+
+    @Test
+    public void detectsChangesToInfoExclude() throws IOException {
+        File repo = initRepo();
+        String headCommitId = git(repo, "rev-parse", "HEAD");
+        write(new File(repo, "local.txt"), "untracked");
+        CommandExecutor executor = CommandExecutor.withDefaultTimeout();
+        assertStatusMatchesGit(executor, repo, headCommitId);
+        assertStatusMatchesGit(executor, repo, headCommitId);
+
+        new File(repo, ".git/info").mkdirs();
+        write(new File(repo, ".git/info/exclude"), "local.txt\n");
+        assertStatusMatchesGit(executor, repo, headCommitId);
+    }
+
+    @Test
+    public void doesNotTrackWorkingTreeWithTooManyIgnoredPaths() throws IOException {
+        File repo = initRepo();
+        String headCommitId = git(repo, "rev-parse", "HEAD");
+        write(new File(repo, ".gitignore"), "*.bin\n");
+        String prefix = String.join("", Collections.nCopies(200, "x"));
+        for (int i = 0; i < CommandExecutor.MAX_OUTPUT_BYTES / 200; i++) {
+            write(new File(repo, prefix + i + ".bin"), "");
+        }
+
+        assertNull(GitStatusTracker.getStatus(CommandExecutor.withDefaultTimeout(), repo, headCommitId));
+    }
+
+    private File initRepo() throws IOException {
+        File repo = initEmptyRepo(tempDir, "repo");
+        write(new File(repo, ".gitignore"), "build/\n");
+        write(new File(repo, "tracked.txt"), "initial");
+        commit(repo, "initial commit");
+        return repo;
+    }
+
+    private static void assertStatusMatchesGit(CommandExecutor executor, File repo, String headCommitId) {
+        // without refreshing the index, which would be detected as a change
+        String expected = CommandExecutor.withDefaultTimeout().execAndGetStdOut(repo, "git", "--no-optional-locks", "status", "--porcelain");
+        assertEquals(expected, GitStatusTracker.getStatus(executor, repo, headCommitId));
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs against the Java 8 implementation as part of <code>test</code>, and against the Java 9 implementation as part of
+ * <code>testJava9</code>, which sets the <code>javaPlatform.java9</code> system property.
+ */
+public class JavaPlatformTest {
+
+    private static final boolean JAVA_9_IMPLEMENTATION = Boolean.getBoolean("javaPlatform.java9");
+
+    @Test
+    public void findsMethodOnStack() {
+        assertTrue(uniquelyNamedCaller());
+        assertFalse(JavaPlatform.isOnStack("uniquelyNamedCaller"));
+    }
+
+    private static boolean uniquelyNamedCaller() {
+        return JavaPlatform.isOnStack("uniquelyNamedCaller");
+    }
+
+    @Test
+    public void destroysProcess() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("sleep", "30").start();
+
+        JavaPlatform.destroyForcibly(process);
+
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void destroysDescendantsOnlyWithJava9Implementation() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("sh", "-c", "sleep 30 & echo $!; wait").start();
+        long childPid;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            childPid = Long.parseLong(output.readLine().trim());
+
+            JavaPlatform.destroyForcibly(process);
+        }
+
+        Optional<ProcessHandle> child = ProcessHandle.of(childPid);
+        try {
+            assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+            assertEquals(JAVA_9_IMPLEMENTATION, !isAliveAfter(child, 2000));
+        } finally {
+            child.ifPresent(ProcessHandle::destroyForcibly);
+        }
+    }
+
+    @Test
+    public void ignoresExitedProcess() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("true").start();
+        assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+
+        JavaPlatform.destroyForcibly(process);
+
+        assertEquals(0, process.exitValue());
+    }
+
+    private static boolean isAliveAfter(Optional<ProcessHandle> process, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (process.isPresent() && process.get().isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        return process.isPresent() && process.get().isAlive();
+    }
+
+}
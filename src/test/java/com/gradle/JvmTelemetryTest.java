@@ -0,0 +1,80 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JvmTelemetryTest {
+
+    private static final long GIB = 1024L * 1024 * 1024;
+
+    private final RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+
+    @Test
+    public void publishesGcTimeHeapUsageAndJitCompilation() {
+        JvmTelemetry.Snapshot start = snapshot("jvm", 1_000, 10, 500, 2_000, 0);
+        JvmTelemetry.Snapshot end = snapshot("jvm", 61_000, 25, 3_500, 5_000, 3 * GIB);
+
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(10, 100));
+        new JvmTelemetry(0.1).publish(start, end, buffer);
+        buffer.flush();
+
+        List<String> values = develocity.getValues();
+        assertTrue(values.contains("JVM GC=15 collections, 3.0s (5% of 60.0s)"), values.toString());
+        assertTrue(values.contains("JVM GC algorithm=G1 Young Generation, G1 Old Generation"), values.toString());
+        assertTrue(values.contains("JVM max heap=4.0 GiB"), values.toString());
+        assertTrue(values.contains("JVM peak heap=75% of max heap (3.0 GiB)"), values.toString());
+        assertTrue(values.contains("JVM JIT compilation=HotSpot 64-Bit Tiered Compilers, 3.0s during the build"), values.toString());
+        assertFalse(develocity.getTags().contains(JvmTelemetry.GC_PRESSURE_TAG), develocity.getTags().toString());
+    }
+
+    @Test
+    public void tagsBuildsSpendingMoreThanThresholdInGc() {
+        JvmTelemetry.Snapshot start = snapshot("jvm", 0, 0, 0, 0, 0);
+        JvmTelemetry.Snapshot end = snapshot("jvm", 10_000, 40, 2_000, 0, 4 * GIB);
+
+        BuildScanBuffer buffer = new BuildScanBuffer(develocity.adapter(), new BuildScanBuffer.Limits(10, 100));
+        new JvmTelemetry(0.1).publish(start, end, buffer);
+        buffer.flush();
+
+        assertTrue(develocity.getTags().contains(JvmTelemetry.GC_PRESSURE_TAG), develocity.getTags().toString());
+    }
+
+    @Test
+    public void measuresFromEndOfPreviousBuildWhenConfigurationCacheIsReused() {
+        String currentJvm = JvmTelemetry.Snapshot.take().jvmId;
+        JvmTelemetry.Snapshot configured = snapshot(currentJvm, 1_000, 0, 0, 0, 0);
+        JvmTelemetry.Snapshot previousBuildEnd = snapshot(currentJvm, 5_000, 0, 0, 0, 0);
+        JvmTelemetry.Snapshot nextConfigured = snapshot(currentJvm, 6_000, 0, 0, 0, 0);
+
+        assertSame(configured, JvmTelemetry.buildStart(configured, null));
+        assertSame(nextConfigured, JvmTelemetry.buildStart(nextConfigured, previousBuildEnd));
+        assertSame(previousBuildEnd, JvmTelemetry.buildStart(configured, previousBuildEnd));
+
+        // configured by another daemon, and no build has finished in this one
+        JvmTelemetry.Snapshot start = JvmTelemetry.buildStart(snapshot("other", 1_000, 0, 0, 0, 0), null);
+        assertEquals(currentJvm, start.jvmId);
+        assertEquals(0, start.gcCount);
+    }
+
+    @Test
+    public void capturesTelemetryOfRunningJvm() {
+        new JvmTelemetry(1.0).captureAction(develocity.adapter(), new BuildScanBuffer.Limits(10, 100)).execute(null);
+
+        List<String> values = develocity.getValues();
+        assertTrue(values.stream().anyMatch(entry -> entry.startsWith("JVM GC=")), values.toString());
+        assertTrue(values.stream().anyMatch(entry -> entry.startsWith("JVM max heap=")), values.toString());
+        assertTrue(values.stream().anyMatch(entry -> entry.startsWith("JVM peak heap=")), values.toString());
+    }
+
+    private static JvmTelemetry.Snapshot snapshot(String jvmId, long wallMillis, long gcCount, long gcMillis, long compilationMillis, long peakHeapBytes) {
+        return new JvmTelemetry.Snapshot(jvmId, wallMillis, gcCount, gcMillis, compilationMillis, "HotSpot 64-Bit Tiered Compilers",
+            "G1 Young Generation, G1 Old Generation", peakHeapBytes, 4 * GIB);
+    }
+
+}
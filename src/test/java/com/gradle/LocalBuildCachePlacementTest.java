@@ -0,0 +1,68 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class LocalBuildCachePlacementTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void prefersMemoryOverLocalOverNetworkFilesystems() throws IOException {
+        Path network = tempDir.resolve("network");
+        Path local = tempDir.resolve("local");
+        Path memory = tempDir.resolve("memory");
+        Path root = tempDir.toRealPath();
+        LocalBuildCachePlacement.MountTable mounts = LocalBuildCachePlacement.MountTable.parse(Arrays.asList(
+            "/dev/sda1 / ext4 rw,relatime 0 0",
+            "server:/export " + root.resolve("network") + " nfs4 rw 0 0",
+            "tmpfs " + root.resolve("memory") + " tmpfs rw 0 0"
+        ));
+
+        LocalBuildCachePlacement placement = new LocalBuildCachePlacement(Arrays.asList(network, local, memory), false, 0, mounts);
+
+        assertEquals(Optional.of(root.resolve("memory")), placement.select().map(c -> c.directory));
+        assertEquals(Optional.of(root.resolve("local")), new LocalBuildCachePlacement(Arrays.asList(network, local), false, 0, mounts).select().map(c -> c.directory));
+    }
+
+    @Test
+    public void skipsCandidatesWithoutEnoughFreeSpace() {
+        LocalBuildCachePlacement placement = new LocalBuildCachePlacement(Collections.singletonList(tempDir.resolve("cache")), false, Long.MAX_VALUE, LocalBuildCachePlacement.MountTable.parse(Collections.emptyList()));
+
+        assertFalse(placement.select().isPresent());
+    }
+
+    @Test
+    public void probesCandidates() {
+        LocalBuildCachePlacement placement = new LocalBuildCachePlacement(Collections.singletonList(tempDir.resolve("cache")), true, 0, LocalBuildCachePlacement.MountTable.parse(Collections.emptyList()));
+
+        LocalBuildCachePlacement.Candidate candidate = placement.select().orElseThrow(AssertionError::new);
+
+        assertEquals(0, candidate.directory.toFile().list().length);
+    }
+
+    @Test
+    public void findsFilesystemTypeOfLongestMountPoint() {
+        LocalBuildCachePlacement.MountTable mounts = LocalBuildCachePlacement.MountTable.parse(Arrays.asList(
+            "/dev/sda1 / ext4 rw 0 0",
+            "/dev/nvme0n1 /mnt/scratch\\040disk xfs rw 0 0",
+            "tmpfs /dev/shm tmpfs rw 0 0"
+        ));
+
+        assertEquals(Optional.of("xfs"), mounts.typeOf(Paths.get("/mnt/scratch disk/cache")));
+        assertEquals(Optional.of("tmpfs"), mounts.typeOf(Paths.get("/dev/shm")));
+        assertEquals(Optional.of("ext4"), mounts.typeOf(Paths.get("/mnt/scratch")));
+    }
+
+}
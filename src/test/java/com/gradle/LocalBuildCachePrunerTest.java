@@ -0,0 +1,106 @@
+package com.gradle;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalBuildCachePrunerTest {
+
+    private static final long NOW = Duration.ofDays(1000).toMillis();
+
+    @TempDir
+    File cacheDir;
+
+    private final AtomicLong now = new AtomicLong(NOW);
+
+    @Test
+    public void evictsLeastRecentlyUsedEntriesAboveMaximumSize() throws IOException {
+        Path oldest = entry("a", 100, Duration.ofHours(3));
+        Path older = entry("b", 100, Duration.ofHours(2));
+        Path newest = entry("c", 100, Duration.ofHours(1));
+
+        LocalBuildCachePruner.Result result = new LocalBuildCachePruner(cacheDir, 150, null, now::get).prune();
+
+        assertEquals(200, result.reclaimedBytes);
+        assertEquals(2, result.removedEntries);
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(newest));
+    }
+
+    @Test
+    public void evictsEntriesAboveMaximumAge() throws IOException {
+        Path old = entry("a", 100, Duration.ofDays(8));
+        Path recent = entry("b", 100, Duration.ofDays(6));
+
+        LocalBuildCachePruner.Result result = new LocalBuildCachePruner(cacheDir, -1, Duration.ofDays(7), now::get).prune();
+
+        assertEquals(1, result.removedEntries);
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    public void keepsFilesThatAreNoCacheEntries() throws IOException {
+        Path properties = cacheDir.toPath().resolve("gc.properties");
+        Files.write(properties, new byte[100]);
+        Files.setLastModifiedTime(properties, FileTime.fromMillis(0));
+
+        new LocalBuildCachePruner(cacheDir, 0, Duration.ZERO, now::get).prune();
+
+        assertTrue(Files.exists(properties));
+    }
+
+    @Test
+    public void prunesAtMostOncePerInterval() throws IOException {
+        LocalBuildCachePruner pruner = new LocalBuildCachePruner(cacheDir, 0, null, now::get);
+        entry("a", 100, Duration.ofHours(1));
+
+        assertEquals(Optional.of(100L), pruner.pruneIfDue().map(r -> r.reclaimedBytes));
+        entry("b", 100, Duration.ofHours(1));
+        assertFalse(pruner.pruneIfDue().isPresent());
+        assertEquals(Optional.of(100L), pruner.lastResult().map(r -> r.reclaimedBytes));
+
+        now.addAndGet(LocalBuildCachePruner.PRUNE_INTERVAL.toMillis());
+        assertEquals(Optional.of(100L), pruner.pruneIfDue().map(r -> r.reclaimedBytes));
+    }
+
+    @Test
+    public void skipsPruningWhileLocked() throws IOException {
+        Path entry = entry("a", 100, Duration.ofHours(1));
+        try (FileChannel channel = FileChannel.open(cacheDir.toPath().resolve(".ccud-prune.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            assertFalse(new LocalBuildCachePruner(cacheDir, 0, null, now::get).pruneIfDue().isPresent());
+        }
+        assertTrue(Files.exists(entry));
+    }
+
+    private Path entry(String prefix, int size, Duration unusedFor) throws IOException {
+        char[] name = new char[32];
+        Arrays.fill(name, prefix.charAt(0));
+        Path entry = cacheDir.toPath().resolve(new String(name));
+        Files.write(entry, new byte[size]);
+        FileTime lastUsed = FileTime.fromMillis(NOW - unusedFor.toMillis());
+        Files.setLastModifiedTime(entry, lastUsed);
+        Files.getFileAttributeView(entry, BasicFileAttributeView.class).setTimes(lastUsed, lastUsed, null);
+        return entry;
+    }
+
+}
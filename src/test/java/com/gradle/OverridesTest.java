@@ -0,0 +1,81 @@
+package com.gradle;
+
+import org.gradle.api.provider.ProviderFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OverridesTest {
+
+    @TempDir
+    Path rootDir;
+
+    private final List<File> readFiles = new ArrayList<>();
+
+    @AfterEach
+    public void clearSystemProperties() {
+        System.clearProperty(Overrides.OVERRIDES_FILE);
+        System.clearProperty(Overrides.REMOTE_CACHE_URL);
+    }
+
+    @Test
+    public void readsOverridesFromFileRelativeToRootDir() throws IOException {
+        writeOverridesFile("ci/overrides.properties",
+            "gradle.cache.remote.url=https://cache.example.com/cache/",
+            "gradle.cache.remote.push=true",
+            "gradle.cache.remote.unknown=ignored");
+        System.setProperty(Overrides.OVERRIDES_FILE, "ci/overrides.properties");
+
+        Overrides overrides = new Overrides(providers(), rootDir.toFile());
+
+        assertEquals(Optional.of("https://cache.example.com/cache/"), overrides.value(Overrides.REMOTE_CACHE_URL));
+        assertEquals(Optional.of(true), overrides.booleanValue(Overrides.REMOTE_CACHE_PUSH));
+        assertEquals(Optional.empty(), overrides.value("gradle.cache.remote.unknown"));
+        // read as a configuration cache input
+        assertEquals(Collections.singletonList(rootDir.resolve("ci/overrides.properties").toFile()), readFiles);
+    }
+
+    @Test
+    public void prefersSystemPropertiesOverFile() throws IOException {
+        writeOverridesFile("overrides.properties", "gradle.cache.remote.url=https://file.example.com/cache/");
+        System.setProperty(Overrides.OVERRIDES_FILE, rootDir.resolve("overrides.properties").toString());
+        System.setProperty(Overrides.REMOTE_CACHE_URL, "https://sysprop.example.com/cache/");
+
+        Overrides overrides = new Overrides(providers(), rootDir.toFile());
+
+        assertEquals(Optional.of("https://sysprop.example.com/cache/"), overrides.value(Overrides.REMOTE_CACHE_URL));
+    }
+
+    @Test
+    public void ignoresMissingFile() {
+        System.setProperty(Overrides.OVERRIDES_FILE, "missing.properties");
+
+        Overrides overrides = new Overrides(providers(), rootDir.toFile());
+
+        assertEquals(Optional.empty(), overrides.value(Overrides.REMOTE_CACHE_URL));
+    }
+
+    private ProviderFactory providers() {
+        return FileContentsProviders.recordingReadsTo(readFiles);
+    }
+
+    private void writeOverridesFile(String path, String... lines) throws IOException {
+        Path file = rootDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, Arrays.asList(lines), StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.gradle;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PluginOverheadTest {
+
+    private final RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+
+    @AfterEach
+    public void clearSystemProperties() {
+        System.clearProperty(PluginOverhead.ENABLED);
+    }
+
+    @Test
+    public void reportsTimingsOfPhasesAndActions() {
+        System.setProperty(PluginOverhead.ENABLED, "true");
+        PluginOverhead overhead = PluginOverhead.create(null);
+
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5);
+        start = overhead.record(PluginOverhead.Phase.CAPTURE_GIT, start);
+        overhead.record(PluginOverhead.Phase.SETTINGS_PLUGIN, start - TimeUnit.MILLISECONDS.toNanos(10));
+        overhead.timed(PluginOverhead.Phase.CI_ACTION, target -> sleep(2)).execute("build");
+        overhead.reportAction(develocity.adapter()).execute(null);
+
+        List<String> values = develocity.getValues();
+        assertEquals(1, values.size());
+        String report = values.get(0);
+        assertTrue(report.startsWith("CCUD overhead="), report);
+        assertTrue(report.contains("(plugin "), report);
+        assertTrue(report.contains(", Git "), report);
+        assertTrue(report.contains(", CI at build end "), report);
+        // the nested Git phase is part of the plugin phase and not added to the total
+        double total = Double.parseDouble(report.substring("CCUD overhead=".length(), report.indexOf(" ms")));
+        assertTrue(total >= 12 && total < 1000, report);
+    }
+
+    @Test
+    public void reportsOncePerBuild() {
+        System.setProperty(PluginOverhead.ENABLED, "true");
+        PluginOverhead overhead = PluginOverhead.create(null);
+
+        overhead.record(PluginOverhead.Phase.OVERRIDES, System.nanoTime());
+        overhead.reportAction(develocity.adapter()).execute(null);
+        overhead.reportAction(develocity.adapter()).execute(null);
+
+        assertEquals(1, develocity.getValues().size());
+    }
+
+    @Test
+    public void doesNotReportWhenDisabled() {
+        PluginOverhead overhead = PluginOverhead.create(null);
+
+        overhead.record(PluginOverhead.Phase.OVERRIDES, System.nanoTime());
+        overhead.reportAction(develocity.adapter()).execute(null);
+
+        assertEquals(0, develocity.getValues().size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
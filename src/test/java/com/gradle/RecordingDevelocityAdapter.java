@@ -0,0 +1,113 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildScanAdapter;
+import com.gradle.develocity.agent.gradle.adapters.DevelocityAdapter;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A fake {@link DevelocityAdapter} that records the tags, values and links added to its build scan, in order.
+ */
+final class RecordingDevelocityAdapter {
+
+    private final List<String> entries = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger serverLookups = new AtomicInteger();
+    private final DevelocityAdapter adapter;
+
+    RecordingDevelocityAdapter() {
+        this(null);
+    }
+
+    /**
+     * @param server the Develocity server, or null if none is configured.
+     */
+    RecordingDevelocityAdapter(String server) {
+        BuildScanAdapter buildScan = proxy(BuildScanAdapter.class, (method, args) -> {
+            switch (method) {
+                case "tag":
+                    entries.add("tag " + args[0]);
+                    return null;
+                case "value":
+                case "link":
+                    entries.add(method + " " + args[0] + "=" + args[1]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+        this.adapter = proxy(DevelocityAdapter.class, (method, args) -> {
+            switch (method) {
+                case "getBuildScan":
+                    return buildScan;
+                case "getServer":
+                    serverLookups.incrementAndGet();
+                    return server;
+                case "getAllowUntrustedServer":
+                    return false;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+    DevelocityAdapter adapter() {
+        return adapter;
+    }
+
+    /**
+     * Returns all entries, formatted as <code>tag name</code>, <code>value name=value</code> or <code>link name=url</code>.
+     */
+    List<String> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    List<String> getTags() {
+        return entriesOfType("tag ");
+    }
+
+    /**
+     * Returns the values, formatted as <code>name=value</code>.
+     */
+    List<String> getValues() {
+        return entriesOfType("value ");
+    }
+
+    /**
+     * Returns the links, formatted as <code>name=url</code>.
+     */
+    List<String> getLinks() {
+        return entriesOfType("link ");
+    }
+
+    int getServerLookups() {
+        return serverLookups.get();
+    }
+
+    private List<String> entriesOfType(String prefix) {
+        return getEntries().stream()
+            .filter(entry -> entry.startsWith(prefix))
+            .map(entry -> entry.substring(prefix.length()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates a fake of an adapter interface, which only needs to handle the methods used by the code under test.
+     */
+    static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> handler.handle(method.getName(), args)));
+    }
+
+    interface Handler {
+
+        Object handle(String method, Object[] args);
+
+    }
+
+}
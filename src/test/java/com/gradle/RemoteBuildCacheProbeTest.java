@@ -0,0 +1,174 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.RemoteBuildCacheAdapter;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.gradle.RecordingDevelocityAdapter.proxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RemoteBuildCacheProbeTest {
+
+    @TempDir
+    File cacheDir;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final Map<String, Object> remote = new HashMap<>();
+    private final RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+    private HttpServer server;
+
+    @AfterEach
+    public void stopServer() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void keepsFastRemoteCacheEnabled() throws IOException {
+        URI url = startServer(0, 256 * 1024);
+
+        probe(Duration.ofSeconds(2)).configure(remote(url), develocity.adapter());
+
+        assertEquals(true, remote.get("enabled"));
+        assertEquals(true, remote.get("push"));
+        assertEquals(0, develocity.getTags().size());
+    }
+
+    @Test
+    public void disablesSlowRemoteCache() throws IOException {
+        URI url = startServer(600, 0);
+
+        probe(Duration.ofSeconds(2)).configure(remote(url), develocity.adapter());
+
+        assertEquals(false, remote.get("enabled"));
+        assertEquals(Arrays.asList("Remote cache disabled: high latency"), develocity.getTags());
+    }
+
+    @Test
+    public void disablesPushToRemoteCacheWithModerateLatency() throws IOException {
+        URI url = startServer(250, 0);
+
+        probe(Duration.ofSeconds(2)).configure(remote(url), develocity.adapter());
+
+        assertEquals(true, remote.get("enabled"));
+        assertEquals(false, remote.get("push"));
+        assertEquals(Arrays.asList("Remote cache push disabled: high latency"), develocity.getTags());
+    }
+
+    @Test
+    public void disablesUnreachableRemoteCacheWithinTimeLimit() throws IOException {
+        URI url = startServer(5000, 0);
+
+        long start = System.nanoTime();
+        probe(Duration.ofMillis(300)).configure(remote(url), develocity.adapter());
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+        assertEquals(false, remote.get("enabled"));
+        assertEquals(Arrays.asList("Remote cache disabled: unreachable"), develocity.getTags());
+    }
+
+    @Test
+    public void doesNotProbeRemoteCacheAllowingUntrustedServer() throws IOException {
+        URI url = startServer(600, 0);
+        RemoteBuildCacheAdapter remote = remote(url);
+        this.remote.put("allowUntrustedServer", true);
+
+        probe(Duration.ofSeconds(2)).configure(remote, develocity.adapter());
+
+        assertEquals(0, requests.get());
+        assertEquals(true, this.remote.get("enabled"));
+        assertEquals(0, develocity.getEntries().size());
+    }
+
+    @Test
+    public void doesNotReuseFailedMeasurement() throws IOException {
+        URI url = startServer(0, 0);
+        server.stop(0);
+        server = null;
+
+        assertFalse(probe(Duration.ofSeconds(2)).measure(url).latencyMillis >= 0);
+
+        String[] entries = cacheDir.list();
+        assertTrue(entries == null || entries.length == 0);
+    }
+
+    @Test
+    public void reusesMeasurementUntilItExpires() throws IOException {
+        URI url = startServer(0, 0);
+        RemoteBuildCacheProbe probe = probe(Duration.ofSeconds(2));
+
+        probe.measure(url);
+        int requestsOfFirstMeasurement = requests.get();
+        probe.measure(url);
+        assertEquals(requestsOfFirstMeasurement, requests.get());
+
+        now.addAndGet(Duration.ofMinutes(15).toMillis());
+        probe.measure(url);
+        assertEquals(2 * requestsOfFirstMeasurement, requests.get());
+    }
+
+    private RemoteBuildCacheProbe probe(Duration timeout) {
+        return new RemoteBuildCacheProbe(timeout, Duration.ofMinutes(15), Duration.ofMillis(500), Duration.ofMillis(150), 1, cacheDir, now::get);
+    }
+
+    private URI startServer(long delayMillis, int bodyBytes) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/cache/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(bodyBytes == 0 ? 404 : 200, bodyBytes == 0 ? -1 : bodyBytes);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(new byte[bodyBytes]);
+            }
+        });
+        server.start();
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getAddress().getPort() + "/cache/");
+    }
+
+    private RemoteBuildCacheAdapter remote(URI url) {
+        remote.put("enabled", true);
+        remote.put("push", true);
+        return proxy(RemoteBuildCacheAdapter.class, (method, args) -> {
+            switch (method) {
+                case "getUrl":
+                    return url;
+                case "getAllowUntrustedServer":
+                    return remote.getOrDefault("allowUntrustedServer", false);
+                case "isEnabled":
+                    return remote.get("enabled");
+                case "isPush":
+                    return remote.get("push");
+                case "setEnabled":
+                    return remote.put("enabled", args[0]);
+                case "setPush":
+                    return remote.put("push", args[0]);
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+    }
+
+}
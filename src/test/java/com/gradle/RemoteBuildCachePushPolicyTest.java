@@ -0,0 +1,137 @@
+package com.gradle;
+
+import com.gradle.develocity.agent.gradle.adapters.BuildCacheConfigurationAdapter.RemoteBuildCacheAdapter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.gradle.GitFixtures.initRepo;
+import static com.gradle.RecordingDevelocityAdapter.proxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RemoteBuildCachePushPolicyTest {
+
+    @TempDir
+    File tempDir;
+
+    private final RemoteBuildCachePushPolicy policy = new RemoteBuildCachePushPolicy(Arrays.asList("main", "release/*"));
+    private final Map<String, String> env = new HashMap<>();
+    private final AtomicBoolean push = new AtomicBoolean(true);
+    private final RecordingDevelocityAdapter develocity = new RecordingDevelocityAdapter();
+
+    @Test
+    public void matchesBranchPatterns() {
+        assertTrue(policy.matches("main"));
+        assertTrue(policy.matches("release/1.0"));
+        assertTrue(policy.matches("release/"));
+        assertFalse(policy.matches("feature/main"));
+        assertFalse(policy.matches("mainline"));
+        assertFalse(policy.matches("releases/1.0"));
+    }
+
+    @Test
+    public void matchesFullBranchRefs() {
+        assertTrue(policy.matches("refs/heads/main"));
+        assertTrue(policy.matches("refs/heads/release/2.x"));
+        assertFalse(policy.matches("refs/pull/42/merge"));
+    }
+
+    @Test
+    public void quotesPatternCharacters() {
+        RemoteBuildCachePushPolicy policy = new RemoteBuildCachePushPolicy(Arrays.asList("v1.x", "*-stable"));
+
+        assertTrue(policy.matches("v1.x"));
+        assertFalse(policy.matches("v1-x"));
+        assertTrue(policy.matches("2024-stable"));
+    }
+
+    @Test
+    public void disablesPushForLocalBuild() {
+        configure(tempDir);
+
+        assertFalse(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=disabled (local build)"), develocity.getValues());
+    }
+
+    @Test
+    public void disablesPushForPullRequestBuild() {
+        env.put("GITHUB_ACTIONS", "true");
+        env.put("GITHUB_REF_NAME", "main");
+        env.put("GITHUB_BASE_REF", "main");
+
+        configure(tempDir);
+
+        assertFalse(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=disabled (pull request)"), develocity.getValues());
+    }
+
+    @Test
+    public void disablesPushForOtherBranch() {
+        env.put("GITLAB_CI", "true");
+        env.put("CI_COMMIT_REF_NAME", "feature/faster");
+
+        configure(tempDir);
+
+        assertFalse(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=disabled (branch feature/faster)"), develocity.getValues());
+    }
+
+    @Test
+    public void disablesPushForUnknownBranch() {
+        env.put("GITLAB_CI", "true");
+
+        configure(tempDir);
+
+        assertFalse(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=disabled (unknown branch)"), develocity.getValues());
+    }
+
+    @Test
+    public void fallsBackToCheckedOutBranch() throws IOException {
+        env.put("GITLAB_CI", "true");
+
+        configure(initRepo(tempDir, "repo"));
+
+        assertTrue(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=enabled"), develocity.getValues());
+    }
+
+    @Test
+    public void doesNotEnablePushDisabledByBuildConfiguration() {
+        env.put("GITLAB_CI", "true");
+        env.put("CI_COMMIT_REF_NAME", "main");
+        push.set(false);
+
+        configure(tempDir);
+
+        assertFalse(push.get());
+        assertEquals(Collections.singletonList("Remote build cache push=enabled"), develocity.getValues());
+    }
+
+    private void configure(File projectDir) {
+        CiEnvironment ciEnvironment = CiEnvironment.detect(CiProviders.loadBundled(), env::containsKey, false);
+        RemoteBuildCacheAdapter remote = proxy(RemoteBuildCacheAdapter.class, (method, args) -> {
+            switch (method) {
+                case "isPush":
+                    return push.get();
+                case "setPush":
+                    push.set((Boolean) args[0]);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method);
+            }
+        });
+        policy.configure(remote, develocity.adapter().getBuildScan(), ciEnvironment, name -> Optional.ofNullable(env.get(name)), projectDir);
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.gradle;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -7,13 +8,18 @@ import org.junit.jupiter.params.provider.ArgumentsProvider;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.gradle.Utils.toPullRequestNumber;
 import static com.gradle.Utils.toWebRepoUri;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -39,6 +45,72 @@ public class UtilsTest {
         assertEquals(expectedRedactedUrl, Utils.redactUserInfo(inputUrl).orElse(null));
     }
 
+    @Test
+    public void testToWebRepoUriMatchesRegularExpression() {
+        // the regular expression the parser replaced, with the same semantics on every input
+        Pattern pattern = Pattern.compile("^(?:(?:https://|git://)(?:.+:.+@)?|(?:ssh)?.*?@)(.*?(?:github|gitlab).*?)(?:/|:[0-9]*?/|:)(.*?)(?:\\.git)?$");
+        // well-formed URLs assembled from variations of their parts, and arbitrary sequences of URL fragments
+        String[][] parts = {
+            {"", "https://", "git://", "ssh://", "ssh", "http://"},
+            {"", "", "user:secret@", "git@", "a:b@c:d@", "@", "user@", ":@"},
+            {"github", "gitlab", "github.acme", "my-gitlab", "git", "acme"},
+            {".com", "", ".com:22", ".com:443", ":x", "@github"},
+            {"/", ":", "//", "", ":22/", ":/"},
+            {"acme-inc/my-project", "my project", "%1F", "a/b:c", "", "gitlab/x"},
+            {"", ".git", "/.git", ".git.git", "\n"}
+        };
+        String[] fragments = {"https://", "git://", "ssh://", "ssh", "git@", "@", ":", "/", "//", "github", "gitlab", "git", "hub",
+            ".com", ".git", ".", "22", "443", "user", "secret", "%1F", "%", "acme-inc", "my-project", "-", " ", "\n", "\r", "\u2028", "\u00e9"};
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder uri = new StringBuilder();
+            if (i % 2 == 0) {
+                for (String[] part : parts) {
+                    uri.append(part[random.nextInt(part.length)]);
+                }
+            } else {
+                int length = random.nextInt(12);
+                for (int j = 0; j < length; j++) {
+                    uri.append(fragments[random.nextInt(fragments.length)]);
+                }
+            }
+            assertEquals(toWebRepoUriWithPattern(pattern, uri.toString()), toWebRepoUri(uri.toString()), uri.toString());
+        }
+    }
+
+    private static Optional<URI> toWebRepoUriWithPattern(Pattern pattern, String gitRepoUri) {
+        Matcher matcher = pattern.matcher(gitRepoUri);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        String path = matcher.group(2).startsWith("/") ? matcher.group(2) : "/" + matcher.group(2);
+        try {
+            return Optional.of(new URI("https", matcher.group(1), path, null));
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Test
+    public void testToWebRepoUriOfLongMalformedUri() {
+        StringBuilder uri = new StringBuilder("https://");
+        for (int i = 0; i < 100_000; i++) {
+            uri.append("a:@/");
+        }
+        // many candidates for the user info, but no separator after the host
+        assertEquals(Optional.empty(), toWebRepoUri(uri.append("github.com").toString()));
+    }
+
+    @Test
+    public void testToPullRequestNumber() {
+        Pattern pattern = Pattern.compile("^(\\d+)/merge$");
+        String[] refNames = {"12/merge", "1/merge", "/merge", "12/merge/", "12/head", "a12/merge", "12a/merge", "main", "", "0042/merge", "12/merge\n", "\u0661\u0662/merge"};
+        for (String refName : refNames) {
+            Matcher matcher = pattern.matcher(refName);
+            assertEquals(matcher.matches() ? Optional.of(matcher.group(1)) : Optional.empty(), toPullRequestNumber(refName), refName);
+        }
+    }
+
     private static class WebRepoUriArgumentsProvider implements ArgumentsProvider {
 
         @Override